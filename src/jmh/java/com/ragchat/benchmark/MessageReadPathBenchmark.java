@@ -0,0 +1,133 @@
+package com.ragchat.benchmark;
+
+import com.ragchat.RagChatStorageApplication;
+import com.ragchat.dto.CreateMessageRequest;
+import com.ragchat.dto.CreateSessionRequest;
+import com.ragchat.dto.MessageResponse;
+import com.ragchat.dto.SessionMessageBatch;
+import com.ragchat.entity.ChatMessage;
+import com.ragchat.repository.ChatMessageRepository;
+import com.ragchat.repository.ChatMessageRepository.MessageRow;
+import com.ragchat.service.ChatMessageService;
+import com.ragchat.service.ChatSessionService;
+import com.ragchat.service.ContextStoreService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading one session's history as managed entities mapped with
+ * {@link MessageResponse#fromEntity}, against reading it straight into {@link MessageRow}
+ * constructor projections. Started by {@link MessageReadPathBenchmarkTest}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageReadPathBenchmark {
+
+    private static final String JDBC_URL = System.getProperty("benchmark.jdbc.url", "jdbc:h2:mem:readbench;DB_CLOSE_DELAY=-1");
+    private static final String JDBC_USER = System.getProperty("benchmark.jdbc.user", "sa");
+    private static final String JDBC_PASSWORD = System.getProperty("benchmark.jdbc.password", "");
+
+    @Param("200")
+    public int messages;
+
+    private ConfigurableApplicationContext context;
+    private ChatMessageRepository messageRepository;
+    private ContextStoreService contextStore;
+    private TransactionTemplate readOnly;
+    private UUID sessionId;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(RagChatStorageApplication.class)
+                .profiles("test")
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=" + JDBC_URL,
+                        "spring.datasource.username=" + JDBC_USER,
+                        "spring.datasource.password=" + JDBC_PASSWORD,
+                        "spring.flyway.enabled=false",
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "logging.level.root=WARN",
+                        "logging.level.com.ragchat=WARN")
+                .run();
+        messageRepository = context.getBean(ChatMessageRepository.class);
+        contextStore = context.getBean(ContextStoreService.class);
+        readOnly = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnly.setReadOnly(true);
+        sessionId = seed(context.getBean(ChatSessionService.class), context.getBean(ChatMessageService.class));
+
+        if (!entities().equals(rows())) {
+            throw new IllegalStateException("The read paths return different messages");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MessageResponse> entities() {
+        return readOnly.execute(status -> {
+            List<ChatMessage> page = messageRepository.findBySessionIdOrderByCreatedAtAscIdAsc(sessionId, Limit.of(messages));
+            contextStore.prefetch(page);
+            return page.stream()
+                    .map(message -> MessageResponse.fromEntity(message, contextStore.resolve(message)))
+                    .toList();
+        });
+    }
+
+    @Benchmark
+    public List<MessageResponse> rows() {
+        return readOnly.execute(status -> messageRepository
+                .findBySessionIdOrderByCreatedAtAscIdAsc(sessionId, Limit.of(messages), MessageRow.class).stream()
+                .map(row -> MessageResponse.fromRow(sessionId, row, row.inlineContext()))
+                .toList());
+    }
+
+    private UUID seed(ChatSessionService sessionService, ChatMessageService messageService) {
+        UUID id = sessionService.createSession(
+                CreateSessionRequest.builder().userId("benchmark").title("Read path").build()).getId();
+        List<CreateMessageRequest> requests = new ArrayList<>();
+        for (int i = 0; i < messages; i++) {
+            requests.add(CreateMessageRequest.builder()
+                    .sender(i % 2 == 0 ? ChatMessage.SenderType.USER : ChatMessage.SenderType.ASSISTANT)
+                    .content("Message " + i + " about retrieval augmented generation")
+                    .context(i % 2 == 0 ? null : "Retrieved passage " + i + " about vector search. ".repeat(8))
+                    .build());
+        }
+        for (int from = 0; from < messages; from += 100) {
+            messageService.addMessagesBatch(List.of(SessionMessageBatch.builder()
+                    .sessionId(id)
+                    .messages(requests.subList(from, Math.min(from + 100, messages)))
+                    .build()));
+        }
+        return id;
+    }
+}
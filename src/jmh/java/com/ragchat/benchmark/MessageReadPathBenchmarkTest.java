@@ -0,0 +1,44 @@
+package com.ragchat.benchmark;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs {@link MessageReadPathBenchmark} under JMH with the gc profiler, which reports the
+ * heap allocated per read as gc.alloc.rate.norm. Runs against in-memory H2 by default;
+ * pass the same -Dbenchmark.jdbc.* properties as {@link UuidInsertBenchmarkTest} to
+ * measure PostgreSQL, and -Dbenchmark.messages to change the history length.
+ */
+@Tag("benchmark")
+class MessageReadPathBenchmarkTest {
+
+    @Test
+    @DisplayName("Session history read: entities + fromEntity vs DTO projection")
+    void compareReadPaths() throws RunnerException {
+        // The forked benchmark JVM does not inherit surefire's system properties
+        String[] jdbcProperties = System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith("benchmark.jdbc."))
+                .map(name -> "-D" + name + "=" + System.getProperty(name))
+                .toArray(String[]::new);
+
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(MessageReadPathBenchmark.class.getName())
+                .param("messages", System.getProperty("benchmark.messages", "200"))
+                .addProfiler(GCProfiler.class)
+                .jvmArgsAppend(jdbcProperties)
+                .build()).run();
+
+        assertThat(results).hasSize(2);
+        assertThat(results).allSatisfy(result -> assertThat(result.getPrimaryResult().getScore()).isPositive());
+    }
+}
@@ -0,0 +1,144 @@
+package com.ragchat.benchmark;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.ragchat.filter.RateLimitingFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time and heap per request spent in {@link RateLimitingFilter}: for a single client, for a
+ * population of distinct clients whose buckets are all cached, and for more distinct clients
+ * than the bucket store holds, where every request creates a bucket and evicts one. Limits are
+ * high enough that no request is rejected, so only the bucket lookup and consumption are
+ * measured. Started by {@link RateLimitingFilterBenchmarkTest}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RateLimitingFilterBenchmark {
+
+    private static final FilterChain NO_OP = (request, response) -> {
+    };
+
+    @Param("100000")
+    public int clients;
+
+    @Param("10000")
+    public int maxClients;
+
+    private String[] addresses;
+    private SimpleMeterRegistry registry;
+    private RateLimitingFilter unbounded;
+    private RateLimitingFilter bounded;
+
+    /** One request and cursor per benchmark thread; the mock request is not thread-safe. */
+    @State(Scope.Thread)
+    public static class Client {
+
+        private final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/sessions");
+        private final MockHttpServletResponse response = new MockHttpServletResponse();
+        private int next;
+
+        private void filter(RateLimitingFilter filter, String address) throws ServletException, IOException {
+            request.setRemoteAddr(address);
+            filter.doFilter(request, response, NO_OP);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void start() throws ServletException, IOException {
+        addresses = new String[clients];
+        for (int i = 0; i < clients; i++) {
+            addresses[i] = "10." + (i >>> 16 & 0xff) + "." + (i >>> 8 & 0xff) + "." + (i & 0xff);
+        }
+        registry = new SimpleMeterRegistry();
+        unbounded = newFilter(registry, clients + 1L);
+        bounded = newFilter(registry, maxClients);
+        Client warm = new Client();
+        for (String address : addresses) {
+            warm.filter(unbounded, address);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        if (registry.counter("ragchat.ratelimit.rejected").count() > 0) {
+            throw new IllegalStateException("Requests were rejected; raise the limits");
+        }
+        long retained = retained(bounded);
+        System.out.printf("%nBuckets retained: %d of %d clients (unbounded), %d of max %d (bounded)%n",
+                retained(unbounded), clients, retained, maxClients);
+        if (retained > maxClients) {
+            throw new IllegalStateException("The bucket store outgrew its bound");
+        }
+    }
+
+    @Benchmark
+    public void oneClient(Client client) throws ServletException, IOException {
+        client.filter(unbounded, "192.168.0.1");
+    }
+
+    @Benchmark
+    public void distinctClientsCached(Client client) throws ServletException, IOException {
+        client.filter(unbounded, nextAddress(client));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void distinctClientsCachedConcurrent(Client client) throws ServletException, IOException {
+        client.filter(unbounded, nextAddress(client));
+    }
+
+    @Benchmark
+    public void distinctClientsEvicting(Client client) throws ServletException, IOException {
+        client.filter(bounded, nextAddress(client));
+    }
+
+    private String nextAddress(Client client) {
+        String address = addresses[client.next];
+        client.next = client.next + 1 == addresses.length ? 0 : client.next + 1;
+        return address;
+    }
+
+    private static RateLimitingFilter newFilter(SimpleMeterRegistry registry, long maxClients) {
+        RateLimitingFilter filter = new RateLimitingFilter(registry);
+        ReflectionTestUtils.setField(filter, "requestsPerMinute", Integer.MAX_VALUE);
+        // Bucket4j refills at most one token per nanosecond
+        ReflectionTestUtils.setField(filter, "burstCapacity", 1_000_000_000);
+        ReflectionTestUtils.setField(filter, "maxClients", maxClients);
+        ReflectionTestUtils.setField(filter, "expireAfterIdleMs", 120_000L);
+        filter.start();
+        return filter;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long retained(RateLimitingFilter filter) {
+        Cache<String, ?> buckets = (Cache<String, ?>) ReflectionTestUtils.getField(filter, "buckets");
+        buckets.cleanUp();
+        return buckets.estimatedSize();
+    }
+}
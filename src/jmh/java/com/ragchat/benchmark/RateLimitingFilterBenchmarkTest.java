@@ -0,0 +1,39 @@
+package com.ragchat.benchmark;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs {@link RateLimitingFilterBenchmark} under JMH with the gc profiler, which reports the
+ * heap allocated per request as gc.alloc.rate.norm. Pass -Dbenchmark.clients and
+ * -Dbenchmark.max-clients to change the client population and the bucket store bound.
+ */
+@Tag("benchmark")
+class RateLimitingFilterBenchmarkTest {
+
+    @Test
+    @DisplayName("Rate limiting filter overhead for 100k distinct clients")
+    void measureFilterOverhead() throws RunnerException {
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(RateLimitingFilterBenchmark.class.getName())
+                .param("clients", System.getProperty("benchmark.clients", "100000"))
+                .param("maxClients", System.getProperty("benchmark.max-clients", "10000"))
+                .addProfiler(GCProfiler.class)
+                // The trial teardown fails the run if a request was rejected or the bound was exceeded
+                .shouldFailOnError(true)
+                .build()).run();
+
+        assertThat(results).hasSize(4);
+        assertThat(results).allSatisfy(result -> assertThat(result.getPrimaryResult().getScore()).isPositive());
+    }
+}
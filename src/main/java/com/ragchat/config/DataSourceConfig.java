@@ -11,6 +11,8 @@ import org.springframework.context.annotation.Profile;
 import javax.sql.DataSource;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
 
 @Slf4j
 @Configuration
@@ -35,13 +37,46 @@ public class DataSourceConfig {
     @Value("${PGPASSWORD:}")
     private String pgPassword;
 
+    @Value("${datasource.replicas.urls:}")
+    private List<String> replicaUrls;
+
+    @Value("${datasource.replicas.max-lag-ms:1000}")
+    private long replicaMaxLagMs;
+
+    @Value("${datasource.replicas.lag-check-interval-ms:500}")
+    private long replicaLagCheckIntervalMs;
+
     @Bean
     public DataSource dataSource() throws URISyntaxException {
+        HikariConfig config = connectionConfig(databaseUrl);
+        config.setMaximumPoolSize(10);
+        config.setMinimumIdle(2);
+        config.addDataSourceProperty("reWriteBatchedInserts", "true");
+        HikariDataSource primary = new HikariDataSource(config);
+
+        List<String> urls = replicaUrls.stream().map(String::trim).filter(url -> !url.isEmpty()).toList();
+        if (urls.isEmpty()) {
+            return primary;
+        }
+
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : urls) {
+            HikariConfig replicaConfig = connectionConfig(url);
+            replicaConfig.setMaximumPoolSize(10);
+            replicaConfig.setMinimumIdle(2);
+            replicaConfig.setReadOnly(true);
+            replicas.add(new HikariDataSource(replicaConfig));
+        }
+        log.info("Routing read-only transactions to {} replica(s), max lag {} ms", replicas.size(), replicaMaxLagMs);
+        return new ReplicaRoutingDataSource(primary, replicas, replicaMaxLagMs, replicaLagCheckIntervalMs);
+    }
+
+    private HikariConfig connectionConfig(String url) throws URISyntaxException {
         HikariConfig config = new HikariConfig();
 
-        if (databaseUrl != null && !databaseUrl.isEmpty()) {
-            if (databaseUrl.startsWith("postgresql://") || databaseUrl.startsWith("postgres://")) {
-                URI dbUri = new URI(databaseUrl);
+        if (url != null && !url.isEmpty()) {
+            if (url.startsWith("postgresql://") || url.startsWith("postgres://")) {
+                URI dbUri = new URI(url);
 
                 String host = dbUri.getHost();
                 int port = dbUri.getPort() == -1 ? 5432 : dbUri.getPort();
@@ -70,12 +105,12 @@ public class DataSourceConfig {
                 }
 
                 log.info("Configured database connection to: {}:{}/{}", host, port, database);
-            } else if (databaseUrl.startsWith("jdbc:")) {
-                config.setJdbcUrl(databaseUrl);
+            } else if (url.startsWith("jdbc:")) {
+                config.setJdbcUrl(url);
                 config.setUsername(pgUser);
                 config.setPassword(pgPassword);
             } else {
-                config.setJdbcUrl("jdbc:" + databaseUrl);
+                config.setJdbcUrl("jdbc:" + url);
                 config.setUsername(pgUser);
                 config.setPassword(pgPassword);
             }
@@ -88,12 +123,9 @@ public class DataSourceConfig {
         }
 
         config.setDriverClassName("org.postgresql.Driver");
-        config.setMaximumPoolSize(10);
-        config.setMinimumIdle(2);
         config.setIdleTimeout(30000);
         config.setConnectionTimeout(30000);
         config.setMaxLifetime(1800000);
-
-        return new HikariDataSource(config);
+        return config;
     }
 }
@@ -9,7 +9,6 @@ import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import org.springframework.web.util.ContentCachingRequestWrapper;
-import org.springframework.web.util.ContentCachingResponseWrapper;
 
 import java.io.IOException;
 import java.util.UUID;
@@ -29,7 +28,6 @@ public class LoggingConfig extends OncePerRequestFilter {
         long startTime = System.currentTimeMillis();
 
         ContentCachingRequestWrapper requestWrapper = new ContentCachingRequestWrapper(request);
-        ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
 
         log.info("[{}] --> {} {} from {}",
                 requestId,
@@ -38,7 +36,7 @@ public class LoggingConfig extends OncePerRequestFilter {
                 getClientIp(request));
 
         try {
-            filterChain.doFilter(requestWrapper, responseWrapper);
+            filterChain.doFilter(requestWrapper, response);
         } finally {
             long duration = System.currentTimeMillis() - startTime;
 
@@ -46,10 +44,8 @@ public class LoggingConfig extends OncePerRequestFilter {
                     requestId,
                     request.getMethod(),
                     request.getRequestURI(),
-                    responseWrapper.getStatus(),
+                    response.getStatus(),
                     duration);
-
-            responseWrapper.copyBodyToResponse();
         }
     }
 
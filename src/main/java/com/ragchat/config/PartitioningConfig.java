@@ -0,0 +1,32 @@
+package com.ragchat.config;
+
+import com.ragchat.service.MessagePartitionService;
+import org.springframework.boot.autoconfigure.AbstractDependsOnBeanFactoryPostProcessor;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationInitializer;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Orders startup as migrations, then {@link MessagePartitionService}, then the entity
+ * manager factory, so the current month's partition of chat_messages exists before
+ * anything writes to it.
+ */
+@Configuration
+public class PartitioningConfig {
+
+    @Configuration
+    static class PartitioningDependsOnMigrations extends AbstractDependsOnBeanFactoryPostProcessor {
+
+        PartitioningDependsOnMigrations() {
+            super(MessagePartitionService.class, FlywayMigrationInitializer.class);
+        }
+    }
+
+    @Configuration
+    static class EntityManagerFactoryDependsOnPartitioning extends EntityManagerFactoryDependsOnPostProcessor {
+
+        EntityManagerFactoryDependsOnPartitioning() {
+            super(MessagePartitionService.class);
+        }
+    }
+}
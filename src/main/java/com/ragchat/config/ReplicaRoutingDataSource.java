@@ -0,0 +1,210 @@
+package com.ragchat.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends read-only transactions to a replica and everything else to the primary.
+ * <p>
+ * A replica is used only while its measured lag is within {@code maxLagMillis}. Write
+ * transactions on a request thread return an {@value #CONSISTENCY_TOKEN_HEADER} header
+ * (the commit time); a later request that echoes it is only served by a replica that had
+ * caught up to that time when last checked, otherwise by the primary.
+ * <p>
+ * Connections are fetched lazily so the routing decision sees the transaction's
+ * read-only flag, which Spring sets after the transaction has begun.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy implements Closeable {
+
+    public static final String CONSISTENCY_TOKEN_HEADER = "X-Consistency-Token";
+
+    static final String PRIMARY = "primary";
+
+    // Zero when the replica has replayed everything it received (including an idle primary)
+    private static final String LAG_SQL = "SELECT CASE " +
+            "WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE COALESCE(CAST(EXTRACT(EPOCH FROM (now() - pg_last_xact_replay_timestamp())) * 1000 AS BIGINT), 0) END";
+
+    private static final Object WRITE_TOKEN_REGISTERED = new Object();
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final long maxLagMillis;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final ScheduledExecutorService lagChecker;
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        // Unknown until the first successful check
+        private volatile long lagMillis = Long.MAX_VALUE;
+        private volatile long caughtUpTo;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas,
+                                    long maxLagMillis, long lagCheckIntervalMillis) {
+        this.primary = primary;
+        this.replicas = new ArrayList<>();
+        for (int i = 0; i < replicas.size(); i++) {
+            this.replicas.add(new Replica("replica-" + i, replicas.get(i)));
+        }
+        this.maxLagMillis = maxLagMillis;
+
+        Router router = new Router();
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        this.replicas.forEach(replica -> targets.put(replica.name, replica.dataSource));
+        router.setTargetDataSources(targets);
+        router.setDefaultTargetDataSource(primary);
+        router.afterPropertiesSet();
+
+        setTargetDataSource(router);
+        setDefaultAutoCommit(true);
+        setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+
+        if (lagCheckIntervalMillis > 0) {
+            lagChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "replica-lag-checker");
+                thread.setDaemon(true);
+                return thread;
+            });
+            lagChecker.scheduleWithFixedDelay(this::checkReplicaLag, 0, lagCheckIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            lagChecker = null;
+        }
+    }
+
+    private class Router extends AbstractRoutingDataSource {
+
+        @Override
+        protected Object determineCurrentLookupKey() {
+            return route();
+        }
+    }
+
+    String route() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            registerWriteToken();
+            return PRIMARY;
+        }
+
+        long requiredPosition = requiredPosition();
+        int start = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.lagMillis <= maxLagMillis && replica.caughtUpTo >= requiredPosition) {
+                return replica.name;
+            }
+        }
+        return PRIMARY;
+    }
+
+    void checkReplicaLag() {
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(i);
+            long checkedAt = System.currentTimeMillis();
+            try {
+                Long lag = new JdbcTemplate(replica.dataSource).queryForObject(LAG_SQL, Long.class);
+                recordLag(i, lag != null ? lag : Long.MAX_VALUE, checkedAt);
+            } catch (Exception e) {
+                if (replica.lagMillis != Long.MAX_VALUE) {
+                    log.warn("Replica {} is unavailable, routing its reads to the primary: {}", replica.name, e.getMessage());
+                }
+                recordLag(i, Long.MAX_VALUE, checkedAt);
+            }
+        }
+    }
+
+    void recordLag(int replicaIndex, long lagMillis, long checkedAt) {
+        Replica replica = replicas.get(replicaIndex);
+        if (lagMillis > maxLagMillis && replica.lagMillis <= maxLagMillis) {
+            log.warn("Replica {} is lagging by {} ms, routing its reads to the primary", replica.name, lagMillis);
+        }
+        replica.caughtUpTo = lagMillis == Long.MAX_VALUE ? 0 : checkedAt - lagMillis;
+        replica.lagMillis = lagMillis;
+    }
+
+    private static long requiredPosition() {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return 0;
+        }
+        HttpServletRequest request = attributes.getRequest();
+        String token = request.getHeader(CONSISTENCY_TOKEN_HEADER);
+        if (token == null || token.isBlank()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(token.trim());
+        } catch (NumberFormatException e) {
+            // Cannot tell how fresh the client needs to be
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static void registerWriteToken() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(WRITE_TOKEN_REGISTERED)
+                || !(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)
+                || attributes.getResponse() == null) {
+            return;
+        }
+        HttpServletResponse response = attributes.getResponse();
+        TransactionSynchronizationManager.bindResource(WRITE_TOKEN_REGISTERED, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                response.setHeader(CONSISTENCY_TOKEN_HEADER, String.valueOf(System.currentTimeMillis()));
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(WRITE_TOKEN_REGISTERED);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        if (lagChecker != null) {
+            lagChecker.shutdownNow();
+        }
+        replicas.forEach(replica -> closeQuietly(replica.dataSource));
+        closeQuietly(primary);
+    }
+
+    private static void closeQuietly(DataSource dataSource) {
+        if (dataSource instanceof Closeable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                log.warn("Failed to close data source: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.ragchat.controller;
+
+import com.ragchat.dto.ApiResponse;
+import com.ragchat.dto.CreateMessageRequest;
+import com.ragchat.dto.MessageResponse;
+import com.ragchat.service.AsyncIngestionService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/v1")
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "ingestion.async.enabled", havingValue = "true")
+@Tag(name = "Chat Messages", description = "APIs for managing chat messages within sessions")
+@SecurityRequirement(name = "apiKey")
+public class AsyncIngestionController {
+
+    private final AsyncIngestionService ingestionService;
+
+    @PostMapping("/sessions/{sessionId}/messages/async")
+    @Operation(summary = "Add a message asynchronously",
+            description = "Queues a message for a background group-committed write and returns its pre-assigned ID. " +
+                    "The message becomes readable once the writer has flushed it")
+    @ApiResponses({
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "202", description = "Message accepted for writing"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "Invalid request"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "Session not found"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "503", description = "Ingestion queue is full"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    public ResponseEntity<ApiResponse<MessageResponse>> addMessageAsync(
+            @Parameter(description = "Session ID") @PathVariable UUID sessionId,
+            @Valid @RequestBody CreateMessageRequest request) {
+        MessageResponse message = ingestionService.submit(sessionId, request);
+        return ResponseEntity
+                .accepted()
+                .location(URI.create("/api/v1/messages/" + message.getId()))
+                .body(ApiResponse.success("Message accepted", message));
+    }
+}
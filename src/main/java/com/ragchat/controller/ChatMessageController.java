@@ -2,6 +2,8 @@ package com.ragchat.controller;
 
 import com.ragchat.dto.*;
 import com.ragchat.service.ChatMessageService;
+import com.ragchat.service.MessageExportService;
+import com.ragchat.service.MessageSearchService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
@@ -9,9 +11,14 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.UUID;
@@ -23,7 +30,11 @@ import java.util.UUID;
 @SecurityRequirement(name = "apiKey")
 public class ChatMessageController {
 
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final ChatMessageService messageService;
+    private final MessageExportService exportService;
+    private final MessageSearchService searchService;
 
     @PostMapping("/sessions/{sessionId}/messages")
     @Operation(summary = "Add a message to a session", description = "Adds a new message to an existing chat session")
@@ -42,17 +53,82 @@ public class ChatMessageController {
                 .body(ApiResponse.success("Message added successfully", message));
     }
 
+    @PostMapping("/sessions/{sessionId}/messages/batch")
+    @Operation(summary = "Add a batch of messages to a session",
+            description = "Appends an ordered batch of messages to a chat session in a single transaction")
+    @ApiResponses({
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "201", description = "Messages added successfully"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "Invalid request"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "Session not found"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    public ResponseEntity<ApiResponse<List<MessageResponse>>> addMessagesBatch(
+            @Parameter(description = "Session ID") @PathVariable UUID sessionId,
+            @Valid @RequestBody BatchCreateMessageRequest request) {
+        List<MessageResponse> messages = messageService.addMessagesBatch(
+                List.of(new SessionMessageBatch(sessionId, request.getMessages())));
+        return ResponseEntity
+                .status(HttpStatus.CREATED)
+                .body(ApiResponse.success("Messages added successfully", messages));
+    }
+
+    @PostMapping("/messages/batch")
+    @Operation(summary = "Add batches of messages to several sessions",
+            description = "Appends ordered batches of messages to one or more chat sessions in a single transaction")
+    @ApiResponses({
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "201", description = "Messages added successfully"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "Invalid request"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "Session not found"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    public ResponseEntity<ApiResponse<List<MessageResponse>>> addMessagesToSessions(
+            @Valid @RequestBody MultiSessionBatchRequest request) {
+        List<MessageResponse> messages = messageService.addMessagesBatch(request.getSessions());
+        return ResponseEntity
+                .status(HttpStatus.CREATED)
+                .body(ApiResponse.success("Messages added successfully", messages));
+    }
+
     @GetMapping("/sessions/{sessionId}/messages")
-    @Operation(summary = "Get all messages in a session", description = "Retrieves all messages in a chat session")
+    @Operation(summary = "Get all messages in a session",
+            description = "Retrieves all messages in a chat session; honours If-None-Match with the returned ETag")
     @ApiResponses({
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Messages retrieved successfully"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "304", description = "Messages not modified"),
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "Session not found"),
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "401", description = "Unauthorized")
     })
     public ResponseEntity<ApiResponse<List<MessageResponse>>> getMessages(
-            @Parameter(description = "Session ID") @PathVariable UUID sessionId) {
-        List<MessageResponse> messages = messageService.getMessages(sessionId);
-        return ResponseEntity.ok(ApiResponse.success(messages));
+            @Parameter(description = "Session ID") @PathVariable UUID sessionId,
+            @Parameter(description = "Comma-separated fields to return (id, sessionId, sender, content, context, createdAt); " +
+                    "the RAG context is only read from the database when requested") @RequestParam(required = false) String fields,
+            WebRequest webRequest) {
+        return messageService.getMessagesIfModified(sessionId, MessageFields.parse(fields), webRequest::checkNotModified)
+                .map(messages -> ResponseEntity.ok(ApiResponse.success(messages)))
+                // checkNotModified has already answered with 304 and the ETag
+                .orElse(null);
+    }
+
+    @GetMapping(value = "/sessions/{sessionId}/messages", params = "since")
+    @Operation(summary = "Get messages appended since a sync position",
+            description = "Returns the messages after since (a nextCursor from a previous sync, a message ID or an " +
+                    "ISO-8601 timestamp), oldest first, and the cursor for the next sync. The cursor trails the newest " +
+                    "messages by a few seconds, so a message can be returned twice; de-duplicate by id")
+    @ApiResponses({
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Messages retrieved successfully"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "Invalid sync position or limit"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "Session or message not found"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    public ResponseEntity<ApiResponse<MessageDeltaResponse>> getMessagesSince(
+            @Parameter(description = "Session ID") @PathVariable UUID sessionId,
+            @Parameter(description = "Sync position: nextCursor of the previous sync, a message ID or an ISO-8601 timestamp")
+            @RequestParam String since,
+            @Parameter(description = "Maximum number of messages to return") @RequestParam(defaultValue = "100") int limit,
+            @Parameter(description = "Comma-separated fields to return (id, sessionId, sender, content, context, createdAt); " +
+                    "the RAG context is only read from the database when requested") @RequestParam(required = false) String fields) {
+        MessageDeltaResponse delta = messageService.getMessagesSince(sessionId, since, limit, MessageFields.parse(fields));
+        return ResponseEntity.ok(ApiResponse.success(delta));
     }
 
     @GetMapping("/sessions/{sessionId}/messages/paginated")
@@ -65,8 +141,158 @@ public class ChatMessageController {
     public ResponseEntity<ApiResponse<PageResponse<MessageResponse>>> getMessagesPaginated(
             @Parameter(description = "Session ID") @PathVariable UUID sessionId,
             @Parameter(description = "Page number (0-indexed)") @RequestParam(defaultValue = "0") int page,
+            @Parameter(description = "Page size") @RequestParam(defaultValue = "20") int size,
+            @Parameter(description = "Comma-separated fields to return (id, sessionId, sender, content, context, createdAt); " +
+                    "the RAG context is only read from the database when requested") @RequestParam(required = false) String fields) {
+        PageResponse<MessageResponse> messages =
+                messageService.getMessagesPaginated(sessionId, page, size, MessageFields.parse(fields));
+        return ResponseEntity.ok(ApiResponse.success(messages));
+    }
+
+    @GetMapping("/sessions/{sessionId}/messages/cursor")
+    @Operation(summary = "Get cursor-paginated messages in a session",
+            description = "Retrieves messages in a chat session using keyset pagination on (createdAt, id). " +
+                    "Pass the returned nextCursor or prevCursor to move forward or backward; the total count is opt-in")
+    @ApiResponses({
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Messages retrieved successfully"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "Invalid cursor or page size"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "Session not found"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    public ResponseEntity<ApiResponse<CursorPageResponse<MessageResponse>>> getMessagesByCursor(
+            @Parameter(description = "Session ID") @PathVariable UUID sessionId,
+            @Parameter(description = "Opaque cursor from a previous page; omit to start from the oldest (NEXT) or newest (PREV) message")
+            @RequestParam(required = false) String cursor,
+            @Parameter(description = "Direction to read relative to the cursor") @RequestParam(defaultValue = "NEXT") MessageCursor.Direction direction,
+            @Parameter(description = "Page size") @RequestParam(defaultValue = "20") int size,
+            @Parameter(description = "Whether to include the total message count") @RequestParam(defaultValue = "false") boolean includeTotal,
+            @Parameter(description = "Comma-separated fields to return (id, sessionId, sender, content, context, createdAt); " +
+                    "the RAG context is only read from the database when requested") @RequestParam(required = false) String fields) {
+        CursorPageResponse<MessageResponse> messages = messageService.getMessagesByCursor(
+                sessionId, cursor, direction, size, includeTotal, MessageFields.parse(fields));
+        return ResponseEntity.ok(ApiResponse.success(messages));
+    }
+
+    @GetMapping("/sessions/{sessionId}/messages/recent")
+    @Operation(summary = "Get the most recent messages in a session",
+            description = "Retrieves the last N messages of a chat session, oldest first, e.g. to assemble a prompt. " +
+                    "The tails of recently used sessions are served from memory")
+    @ApiResponses({
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Messages retrieved successfully"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "Invalid limit"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "Session not found"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    public ResponseEntity<ApiResponse<List<MessageResponse>>> getRecentMessages(
+            @Parameter(description = "Session ID") @PathVariable UUID sessionId,
+            @Parameter(description = "Number of messages to return") @RequestParam(defaultValue = "20") int limit,
+            @Parameter(description = "Comma-separated fields to return (id, sessionId, sender, content, context, createdAt)")
+            @RequestParam(required = false) String fields) {
+        List<MessageResponse> messages = messageService.getRecentMessages(sessionId, limit, MessageFields.parse(fields));
+        return ResponseEntity.ok(ApiResponse.success(messages));
+    }
+
+    @GetMapping("/sessions/{sessionId}/messages/context-window")
+    @Operation(summary = "Get the newest messages that fit a token budget",
+            description = "Returns the newest messages of a session whose content fits within maxTokens, oldest first, " +
+                    "optionally always keeping a system message that opens the session. Token counts are estimates " +
+                    "stored when each message is written and cover the content only")
+    @ApiResponses({
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Messages retrieved successfully"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "Invalid or too small token budget"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "Session not found"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    public ResponseEntity<ApiResponse<ContextWindowResponse>> getContextWindow(
+            @Parameter(description = "Session ID") @PathVariable UUID sessionId,
+            @Parameter(description = "Token budget for the returned messages") @RequestParam int maxTokens,
+            @Parameter(description = "Always include the session's opening system message, counted first")
+            @RequestParam(defaultValue = "false") boolean keepFirstSystem,
+            @Parameter(description = "Comma-separated fields to return (id, sessionId, sender, content, context, createdAt)")
+            @RequestParam(required = false) String fields) {
+        ContextWindowResponse window = messageService.getContextWindow(
+                sessionId, maxTokens, keepFirstSystem, MessageFields.parse(fields));
+        return ResponseEntity.ok(ApiResponse.success(window));
+    }
+
+    @GetMapping("/sessions/{sessionId}/messages/export")
+    @Operation(summary = "Export session history",
+            description = "Streams every message in a session as newline-delimited JSON, optionally gzip-compressed. " +
+                    "Rows are written as they are read from the database, so memory use does not grow with session size")
+    @ApiResponses({
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Export streamed successfully"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "Session not found"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    public ResponseEntity<StreamingResponseBody> exportMessages(
+            @Parameter(description = "Session ID") @PathVariable UUID sessionId,
+            @Parameter(description = "Export format") @RequestParam(defaultValue = "NDJSON") ExportFormat format) {
+        exportService.verifySessionExists(sessionId);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"session-" + sessionId + ".ndjson\"");
+        if (format == ExportFormat.NDJSON_GZIP) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(out -> exportService.exportMessages(sessionId, format, out));
+    }
+
+    @GetMapping(value = "/sessions/{sessionId}/messages/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream new messages of a session",
+            description = "Server-Sent Events stream of messages as they are committed. Each event is named message, " +
+                    "carries the message as JSON and has a delta-sync cursor as its id; reconnecting with Last-Event-ID " +
+                    "replays what was missed, so a message can arrive twice")
+    @ApiResponses({
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Stream opened"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "Invalid Last-Event-ID"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "Session not found"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "503", description = "Too many open streams"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    public SseEmitter streamMessages(
+            @Parameter(description = "Session ID") @PathVariable UUID sessionId,
+            @Parameter(description = "Id of the last event received, sent by EventSource when it reconnects")
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return messageService.streamMessages(sessionId, lastEventId);
+    }
+
+    @GetMapping("/sessions/user/{userId}/messages/search")
+    @Operation(summary = "Search a user's messages",
+            description = "Full-text search over the content of messages in a user's sessions, optionally within one " +
+                    "session. Supports quoted phrases, OR and -term. Results are ranked by relevance, carry highlighted " +
+                    "fragments and are paged with the returned nextCursor")
+    @ApiResponses({
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Search completed successfully"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "Invalid query, cursor or page size"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "Session not found"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    public ResponseEntity<ApiResponse<CursorPageResponse<MessageSearchHit>>> searchMessages(
+            @Parameter(description = "User ID") @PathVariable String userId,
+            @Parameter(description = "Search query, e.g. \"vector index\" -postgres") @RequestParam String q,
+            @Parameter(description = "Only search this session") @RequestParam(required = false) UUID sessionId,
+            @Parameter(description = "Opaque cursor from a previous page; omit for the best matches")
+            @RequestParam(required = false) String cursor,
             @Parameter(description = "Page size") @RequestParam(defaultValue = "20") int size) {
-        PageResponse<MessageResponse> messages = messageService.getMessagesPaginated(sessionId, page, size);
+        CursorPageResponse<MessageSearchHit> hits = searchService.search(userId, q, sessionId, cursor, size);
+        return ResponseEntity.ok(ApiResponse.success(hits));
+    }
+
+    @PostMapping("/sessions/user/{userId}/similar")
+    @Operation(summary = "Find messages similar to an embedding",
+            description = "Nearest-neighbour search over the embeddings supplied with a user's messages, optionally " +
+                    "within one session. Scores are cosine similarities; results are approximate for large histories")
+    @ApiResponses({
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Search completed successfully"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "Invalid embedding or k"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "Session not found"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    public ResponseEntity<ApiResponse<List<SimilarMessage>>> findSimilarMessages(
+            @Parameter(description = "User ID") @PathVariable String userId,
+            @Valid @RequestBody SimilarMessagesRequest request) {
+        List<SimilarMessage> messages = searchService.findSimilar(userId, request);
         return ResponseEntity.ok(ApiResponse.success(messages));
     }
 
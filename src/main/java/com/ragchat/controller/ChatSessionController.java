@@ -9,10 +9,13 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -41,27 +44,39 @@ public class ChatSessionController {
     }
 
     @GetMapping("/{sessionId}")
-    @Operation(summary = "Get a session by ID", description = "Retrieves a specific chat session by its ID")
+    @Operation(summary = "Get a session by ID",
+            description = "Retrieves a specific chat session by its ID; honours If-None-Match with the returned ETag")
     @ApiResponses({
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Session retrieved successfully"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "304", description = "Session not modified"),
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "Session not found"),
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "401", description = "Unauthorized")
     })
     public ResponseEntity<ApiResponse<SessionResponse>> getSession(
-            @Parameter(description = "Session ID") @PathVariable UUID sessionId) {
+            @Parameter(description = "Session ID") @PathVariable UUID sessionId,
+            WebRequest webRequest) {
         SessionResponse session = sessionService.getSession(sessionId);
+        if (webRequest.checkNotModified(SessionETags.of(session))) {
+            return null;
+        }
         return ResponseEntity.ok(ApiResponse.success(session));
     }
 
     @GetMapping("/user/{userId}")
-    @Operation(summary = "Get all sessions for a user", description = "Retrieves all chat sessions for a specific user")
+    @Operation(summary = "Get all sessions for a user",
+            description = "Retrieves all chat sessions for a specific user; honours If-None-Match with the returned ETag")
     @ApiResponses({
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Sessions retrieved successfully"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "304", description = "Sessions not modified"),
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "401", description = "Unauthorized")
     })
     public ResponseEntity<ApiResponse<List<SessionResponse>>> getSessionsByUser(
-            @Parameter(description = "User ID") @PathVariable String userId) {
+            @Parameter(description = "User ID") @PathVariable String userId,
+            WebRequest webRequest) {
         List<SessionResponse> sessions = sessionService.getSessionsByUser(userId);
+        if (webRequest.checkNotModified(SessionETags.of(sessions))) {
+            return null;
+        }
         return ResponseEntity.ok(ApiResponse.success(sessions));
     }
 
@@ -134,7 +149,7 @@ public class ChatSessionController {
     }
 
     @DeleteMapping("/{sessionId}")
-    @Operation(summary = "Delete a session", description = "Deletes a chat session and all its messages")
+    @Operation(summary = "Delete a session", description = "Deletes a chat session; its messages are purged in the background")
     @ApiResponses({
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Session deleted successfully"),
             @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "404", description = "Session not found"),
@@ -145,4 +160,31 @@ public class ChatSessionController {
         sessionService.deleteSession(sessionId);
         return ResponseEntity.ok(ApiResponse.success("Session deleted successfully", null));
     }
+
+    @DeleteMapping("/user/{userId}")
+    @Operation(summary = "Delete sessions for a user", description = "Deletes all sessions for a user, optionally only those not updated since a given time")
+    @ApiResponses({
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Sessions deleted successfully"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    public ResponseEntity<ApiResponse<Integer>> deleteSessionsByUser(
+            @Parameter(description = "User ID") @PathVariable String userId,
+            @Parameter(description = "Only delete sessions last updated before this time (ISO-8601)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime olderThan) {
+        int deleted = sessionService.deleteSessionsByUser(userId, olderThan);
+        return ResponseEntity.ok(ApiResponse.success("Sessions deleted successfully", deleted));
+    }
+
+    @DeleteMapping
+    @Operation(summary = "Delete stale sessions", description = "Deletes all sessions not updated since a given time")
+    @ApiResponses({
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "200", description = "Sessions deleted successfully"),
+            @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "401", description = "Unauthorized")
+    })
+    public ResponseEntity<ApiResponse<Integer>> deleteSessionsOlderThan(
+            @Parameter(description = "Delete sessions last updated before this time (ISO-8601)")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime olderThan) {
+        int deleted = sessionService.deleteSessionsOlderThan(olderThan);
+        return ResponseEntity.ok(ApiResponse.success("Sessions deleted successfully", deleted));
+    }
 }
@@ -0,0 +1,26 @@
+package com.ragchat.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Request to append an ordered batch of messages to a chat session")
+public class BatchCreateMessageRequest {
+
+    @Valid
+    @NotEmpty(message = "At least one message is required")
+    @Size(max = 500, message = "A batch must not exceed 500 messages")
+    @Schema(description = "Messages to append, in order")
+    private List<CreateMessageRequest> messages;
+}
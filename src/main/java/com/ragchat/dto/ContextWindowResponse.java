@@ -0,0 +1,22 @@
+package com.ragchat.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+@Builder
+@Schema(description = "Newest messages of a session that fit a token budget")
+public class ContextWindowResponse {
+
+    @Schema(description = "Messages oldest first: the opening system message when kept, then the newest messages that fit")
+    List<MessageResponse> content;
+
+    @Schema(description = "Estimated tokens of the returned messages' content")
+    int totalTokens;
+
+    @Schema(description = "Whether older messages were left out for lack of budget")
+    boolean truncated;
+}
@@ -26,4 +26,8 @@ public class CreateMessageRequest {
 
     @Schema(description = "Optional RAG context retrieved for this message", example = "Retrieved document context...")
     private String context;
+
+    @Schema(description = "Optional client-computed embedding of the content, indexed for similarity search; " +
+            "all messages of a user must use the same number of dimensions", example = "[0.12, -0.03, 0.88]")
+    private float[] embedding;
 }
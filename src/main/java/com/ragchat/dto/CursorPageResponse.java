@@ -0,0 +1,40 @@
+package com.ragchat.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@Schema(description = "Cursor-paginated response wrapper")
+public class CursorPageResponse<T> {
+
+    @Schema(description = "List of items in the current page")
+    private List<T> content;
+
+    @Schema(description = "Number of items requested per page")
+    private int size;
+
+    @Schema(description = "Opaque cursor to fetch the following page, absent when there is none")
+    private String nextCursor;
+
+    @Schema(description = "Opaque cursor to fetch the preceding page, absent when there is none")
+    private String prevCursor;
+
+    @Schema(description = "Whether a following page exists")
+    private boolean hasNext;
+
+    @Schema(description = "Whether a preceding page exists")
+    private boolean hasPrevious;
+
+    @Schema(description = "Total number of items, only present when requested")
+    private Long totalElements;
+}
@@ -0,0 +1,6 @@
+package com.ragchat.dto;
+
+public enum ExportFormat {
+    NDJSON,
+    NDJSON_GZIP
+}
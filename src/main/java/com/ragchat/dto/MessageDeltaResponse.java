@@ -0,0 +1,23 @@
+package com.ragchat.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+@Builder
+@Schema(description = "Messages appended after a sync position")
+public class MessageDeltaResponse {
+
+    @Schema(description = "Messages after the position, oldest first; may repeat messages of the previous sync, " +
+            "so clients de-duplicate by id")
+    List<MessageResponse> content;
+
+    @Schema(description = "Opaque cursor to pass as since on the next sync")
+    String nextCursor;
+
+    @Schema(description = "Whether more messages are waiting; sync again right away when true")
+    boolean hasMore;
+}
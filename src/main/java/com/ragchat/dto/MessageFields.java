@@ -0,0 +1,53 @@
+package com.ragchat.dto;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The {@link MessageResponse} fields a client asked for with {@code fields=}. Leaving out
+ * {@code context} lets the read skip the context columns entirely.
+ */
+public record MessageFields(Set<String> names) {
+
+    public static final String CONTEXT = "context";
+
+    private static final List<String> SUPPORTED = List.of("id", "sessionId", "sender", "content", CONTEXT, "createdAt");
+
+    public static final MessageFields ALL = new MessageFields(Set.copyOf(SUPPORTED));
+
+    public static MessageFields parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        Set<String> names = new LinkedHashSet<>();
+        for (String name : Arrays.stream(fields.split(",")).map(String::trim).filter(n -> !n.isEmpty()).toList()) {
+            if (!SUPPORTED.contains(name)) {
+                throw new IllegalArgumentException("Unknown message field: " + name + ". Supported fields: "
+                        + String.join(",", SUPPORTED));
+            }
+            names.add(name);
+        }
+        return names.isEmpty() ? ALL : new MessageFields(Set.copyOf(names));
+    }
+
+    public boolean includes(String name) {
+        return names.contains(name);
+    }
+
+    public MessageResponse select(MessageResponse response) {
+        if (names.size() == SUPPORTED.size()) {
+            return response;
+        }
+        return MessageResponse.builder()
+                .id(includes("id") ? response.getId() : null)
+                .sessionId(includes("sessionId") ? response.getSessionId() : null)
+                .sender(includes("sender") ? response.getSender() : null)
+                .content(includes("content") ? response.getContent() : null)
+                .context(includes(CONTEXT) ? response.getContext() : null)
+                .createdAt(includes("createdAt") ? response.getCreatedAt() : null)
+                .fields(this)
+                .build();
+    }
+}
@@ -1,48 +1,96 @@
 package com.ragchat.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
 import com.ragchat.entity.ChatMessage;
+import com.ragchat.repository.ChatMessageRepository;
 import io.swagger.v3.oas.annotations.media.Schema;
-import lombok.AllArgsConstructor;
 import lombok.Builder;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.Value;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.UUID;
 
-@Data
+@Value
 @Builder
-@NoArgsConstructor
-@AllArgsConstructor
+@JsonSerialize(using = MessageResponse.Serializer.class)
 @Schema(description = "Chat message response")
 public class MessageResponse {
 
     @Schema(description = "Unique message identifier")
-    private UUID id;
+    UUID id;
 
     @Schema(description = "Session ID this message belongs to")
-    private UUID sessionId;
+    UUID sessionId;
 
     @Schema(description = "Message sender type")
-    private ChatMessage.SenderType sender;
+    ChatMessage.SenderType sender;
 
     @Schema(description = "Message content")
-    private String content;
+    String content;
 
     @Schema(description = "Optional RAG context")
-    private String context;
+    String context;
 
     @Schema(description = "Message creation timestamp")
-    private LocalDateTime createdAt;
+    LocalDateTime createdAt;
 
-    public static MessageResponse fromEntity(ChatMessage message) {
+    // Set by MessageFields.select; the fields a client left out of fields= are not written
+    @JsonIgnore
+    MessageFields fields;
+
+    // The context is passed in because deduplicated contexts are resolved through the context store
+    public static MessageResponse fromEntity(ChatMessage message, String context) {
         return MessageResponse.builder()
                 .id(message.getId())
                 .sessionId(message.getSession().getId())
                 .sender(message.getSender())
                 .content(message.getContent())
-                .context(message.getContext())
+                .context(context)
                 .createdAt(message.getCreatedAt())
                 .build();
     }
+
+    public static MessageResponse fromRow(UUID sessionId, ChatMessageRepository.MessageRow row, String context) {
+        return new MessageResponse(row.id(), sessionId, row.sender(), row.content(), context, row.createdAt(), null);
+    }
+
+    public static MessageResponse fromSummary(UUID sessionId, ChatMessageRepository.MessageSummary summary) {
+        return new MessageResponse(summary.id(), sessionId, summary.sender(), summary.content(), null, summary.createdAt(), null);
+    }
+
+    /**
+     * Writes every field, null or not, so the default response keeps its shape; a response
+     * trimmed by {@link MessageFields#select} only has the selected ones.
+     */
+    static class Serializer extends StdSerializer<MessageResponse> {
+
+        Serializer() {
+            super(MessageResponse.class);
+        }
+
+        @Override
+        public void serialize(MessageResponse response, JsonGenerator generator, SerializerProvider provider)
+                throws IOException {
+            generator.writeStartObject(response);
+            write(response, "id", response.getId(), generator, provider);
+            write(response, "sessionId", response.getSessionId(), generator, provider);
+            write(response, "sender", response.getSender(), generator, provider);
+            write(response, "content", response.getContent(), generator, provider);
+            write(response, MessageFields.CONTEXT, response.getContext(), generator, provider);
+            write(response, "createdAt", response.getCreatedAt(), generator, provider);
+            generator.writeEndObject();
+        }
+
+        private static void write(MessageResponse response, String name, Object value,
+                                  JsonGenerator generator, SerializerProvider provider) throws IOException {
+            if (response.getFields() == null || response.getFields().includes(name)) {
+                provider.defaultSerializeField(name, value, generator);
+            }
+        }
+    }
 }
@@ -0,0 +1,36 @@
+package com.ragchat.dto;
+
+import com.ragchat.entity.ChatMessage;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Value
+@Builder
+@Schema(description = "Message matching a search query")
+public class MessageSearchHit {
+
+    @Schema(description = "Unique message identifier")
+    UUID id;
+
+    @Schema(description = "Session ID this message belongs to")
+    UUID sessionId;
+
+    @Schema(description = "Title of the session")
+    String sessionTitle;
+
+    @Schema(description = "Message sender type")
+    ChatMessage.SenderType sender;
+
+    @Schema(description = "Fragments of the content around the matches, HTML-escaped, with matches wrapped in <mark>")
+    String highlight;
+
+    @Schema(description = "Relevance; higher ranks first")
+    float rank;
+
+    @Schema(description = "Message creation timestamp")
+    LocalDateTime createdAt;
+}
@@ -0,0 +1,24 @@
+package com.ragchat.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Request to append ordered batches of messages to one or more chat sessions")
+public class MultiSessionBatchRequest {
+
+    @Valid
+    @NotEmpty(message = "At least one session batch is required")
+    @Schema(description = "Per-session message batches, in order")
+    private List<SessionMessageBatch> sessions;
+}
@@ -0,0 +1,26 @@
+package com.ragchat.dto;
+
+import com.ragchat.entity.ChatMessage;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+public record PendingMessage(UUID id,
+                             UUID sessionId,
+                             ChatMessage.SenderType sender,
+                             String content,
+                             String context,
+                             byte[] embedding,
+                             LocalDateTime createdAt) {
+
+    public ChatMessage toEntity() {
+        return ChatMessage.builder()
+                .id(id)
+                .sender(sender)
+                .content(content)
+                .context(context)
+                .embedding(embedding)
+                .createdAt(createdAt)
+                .build();
+    }
+}
@@ -0,0 +1,31 @@
+package com.ragchat.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+// Position in a ranked result list; Float.toString round-trips, so the rank compares exactly
+public record SearchCursor(float rank, UUID id) {
+
+    private static final String SEPARATOR = "|";
+
+    public static SearchCursor of(MessageSearchHit hit) {
+        return new SearchCursor(hit.getRank(), hit.getId());
+    }
+
+    public String encode() {
+        String raw = rank + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static SearchCursor decode(String cursor) {
+        String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        int separator = raw.indexOf(SEPARATOR);
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        return new SearchCursor(
+                Float.parseFloat(raw.substring(0, separator)),
+                UUID.fromString(raw.substring(separator + 1)));
+    }
+}
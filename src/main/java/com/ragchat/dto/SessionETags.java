@@ -0,0 +1,66 @@
+package com.ragchat.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Strong entity tags for session resources, derived from session metadata rather than
+ * from the response body. Every change to a session moves its {@code updatedAt}, and
+ * every added or removed message changes its message statistics, so a conditional
+ * request can be answered without reading the messages or serializing anything.
+ */
+public final class SessionETags {
+
+    private static final char SEPARATOR = '\u001f';
+
+    private SessionETags() {
+    }
+
+    /** Tag of a single session. */
+    public static String of(SessionResponse session) {
+        StringBuilder parts = new StringBuilder();
+        appendSession(parts, session);
+        return tag(parts);
+    }
+
+    /** Tag of a list of sessions, which also changes when sessions are added, removed or reordered. */
+    public static String of(List<SessionResponse> sessions) {
+        StringBuilder parts = new StringBuilder().append(sessions.size());
+        sessions.forEach(session -> appendSession(parts, session));
+        return tag(parts);
+    }
+
+    /** Tag of a session's message history; unlike {@link #of(SessionResponse)} it ignores renames. */
+    public static String ofHistory(SessionResponse session) {
+        StringBuilder parts = new StringBuilder();
+        append(parts, session.getId(), session.getMessageCount(), session.getLastMessageAt(),
+                session.getTotalContentBytes());
+        return tag(parts);
+    }
+
+    private static void appendSession(StringBuilder parts, SessionResponse session) {
+        append(parts, session.getId(), session.getUserId(), session.getTitle(), session.getIsFavorite(),
+                session.getMessageCount(), session.getLastMessageAt(), session.getTotalContentBytes(),
+                session.getCreatedAt(), session.getUpdatedAt());
+    }
+
+    private static void append(StringBuilder parts, Object... values) {
+        for (Object value : values) {
+            parts.append(SEPARATOR).append(value);
+        }
+    }
+
+    private static String tag(CharSequence parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(parts.toString().getBytes(StandardCharsets.UTF_8));
+            // 128 bits are plenty to tell versions of one resource apart
+            return "\"" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.ragchat.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Ordered messages to append to a single chat session")
+public class SessionMessageBatch {
+
+    @NotNull(message = "Session ID is required")
+    @Schema(description = "Session the messages belong to")
+    private UUID sessionId;
+
+    @Valid
+    @NotEmpty(message = "At least one message is required")
+    @Schema(description = "Messages to append, in order")
+    private List<CreateMessageRequest> messages;
+}
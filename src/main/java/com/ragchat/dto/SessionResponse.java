@@ -1,62 +1,59 @@
 package com.ragchat.dto;
 
 import com.ragchat.entity.ChatSession;
+import com.ragchat.entity.ChatSessionStats;
 import io.swagger.v3.oas.annotations.media.Schema;
-import lombok.AllArgsConstructor;
 import lombok.Builder;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.Value;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
 
-@Data
+@Value
 @Builder
-@NoArgsConstructor
-@AllArgsConstructor
 @Schema(description = "Chat session response")
 public class SessionResponse {
 
     @Schema(description = "Unique session identifier")
-    private UUID id;
+    UUID id;
 
     @Schema(description = "User ID who owns this session")
-    private String userId;
+    String userId;
 
     @Schema(description = "Session title")
-    private String title;
+    String title;
 
     @Schema(description = "Whether the session is marked as favorite")
-    private Boolean isFavorite;
+    Boolean isFavorite;
 
     @Schema(description = "Number of messages in this session")
-    private Integer messageCount;
+    Integer messageCount;
+
+    @Schema(description = "Timestamp of the most recent message in this session")
+    LocalDateTime lastMessageAt;
+
+    @Schema(description = "Total size of message content in this session, in bytes")
+    Long totalContentBytes;
 
     @Schema(description = "Session creation timestamp")
-    private LocalDateTime createdAt;
+    LocalDateTime createdAt;
 
     @Schema(description = "Session last update timestamp")
-    private LocalDateTime updatedAt;
+    LocalDateTime updatedAt;
 
     public static SessionResponse fromEntity(ChatSession session) {
-        return SessionResponse.builder()
-                .id(session.getId())
-                .userId(session.getUserId())
-                .title(session.getTitle())
-                .isFavorite(session.getIsFavorite())
-                .messageCount(session.getMessages() != null ? session.getMessages().size() : 0)
-                .createdAt(session.getCreatedAt())
-                .updatedAt(session.getUpdatedAt())
-                .build();
+        return fromEntityWithStats(session, session.getStats());
     }
 
-    public static SessionResponse fromEntityWithCount(ChatSession session, int messageCount) {
+    public static SessionResponse fromEntityWithStats(ChatSession session, ChatSessionStats stats) {
         return SessionResponse.builder()
                 .id(session.getId())
                 .userId(session.getUserId())
                 .title(session.getTitle())
                 .isFavorite(session.getIsFavorite())
-                .messageCount(messageCount)
+                .messageCount(stats != null ? stats.getMessageCount().intValue() : 0)
+                .lastMessageAt(stats != null ? stats.getLastMessageAt() : null)
+                .totalContentBytes(stats != null ? stats.getTotalContentBytes() : 0L)
                 .createdAt(session.getCreatedAt())
                 .updatedAt(session.getUpdatedAt())
                 .build();
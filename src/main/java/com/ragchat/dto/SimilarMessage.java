@@ -0,0 +1,33 @@
+package com.ragchat.dto;
+
+import com.ragchat.entity.ChatMessage;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Value
+@Builder
+@Schema(description = "Message whose embedding is similar to a query embedding")
+public class SimilarMessage {
+
+    @Schema(description = "Unique message identifier")
+    UUID id;
+
+    @Schema(description = "Session ID this message belongs to")
+    UUID sessionId;
+
+    @Schema(description = "Message sender type")
+    ChatMessage.SenderType sender;
+
+    @Schema(description = "Message content")
+    String content;
+
+    @Schema(description = "Cosine similarity to the query embedding, from -1 to 1; higher ranks first")
+    float score;
+
+    @Schema(description = "Message creation timestamp")
+    LocalDateTime createdAt;
+}
@@ -0,0 +1,34 @@
+package com.ragchat.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Request for the messages most similar to an embedding")
+public class SimilarMessagesRequest {
+
+    @NotNull(message = "Embedding is required")
+    @Schema(description = "Query embedding, from the same model and of the same dimension as the stored embeddings",
+            example = "[0.12, -0.03, 0.88]")
+    private float[] embedding;
+
+    @Min(value = 1, message = "k must be at least 1")
+    @Max(value = 100, message = "k must not exceed 100")
+    @Builder.Default
+    @Schema(description = "Number of messages to return", example = "10")
+    private int k = 10;
+
+    @Schema(description = "Only return messages of this session")
+    private UUID sessionId;
+}
@@ -0,0 +1,42 @@
+package com.ragchat.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+
+/**
+ * A distinct RAG context shared by all messages whose {@code context_hash} is its
+ * SHA-256. Large contexts are stored zstd-compressed in {@code content_zstd}.
+ */
+@Entity
+@Table(name = "chat_contexts")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChatContext {
+
+    @Id
+    @Column(length = 64, columnDefinition = "CHAR(64)")
+    @JdbcTypeCode(SqlTypes.CHAR)
+    private String hash;
+
+    @Column(columnDefinition = "TEXT")
+    private String content;
+
+    @Column(name = "content_zstd", columnDefinition = "BYTEA")
+    private byte[] compressedContent;
+
+    @Column(nullable = false)
+    private Integer byteLength;
+
+    @Column(nullable = false)
+    private Long refCount;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
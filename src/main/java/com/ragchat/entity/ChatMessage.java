@@ -1,10 +1,13 @@
 package com.ragchat.entity;
 
+import com.ragchat.entity.id.TimeOrderedUuid;
 import jakarta.persistence.*;
 import lombok.*;
-import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.UUID;
 
 @Entity
@@ -17,7 +20,7 @@ import java.util.UUID;
 public class ChatMessage {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedUuid
     private UUID id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -31,15 +34,85 @@ public class ChatMessage {
     @Column(nullable = false, columnDefinition = "TEXT")
     private String content;
 
+    // Large contexts are stored zstd-compressed in context_zstd instead (see MessageCompressionService)
     @Column(columnDefinition = "TEXT")
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
     private String context;
 
-    @CreationTimestamp
+    @Column(name = "context_zstd", columnDefinition = "BYTEA")
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private byte[] compressedContext;
+
+    // Set instead of the context columns when the context lives in chat_contexts (see ContextStoreService)
+    @Column(name = "context_hash", length = 64, columnDefinition = "CHAR(64)")
+    @JdbcTypeCode(SqlTypes.CHAR)
+    private String contextHash;
+
+    // Not written back to the context column, which would undo the compression on flush
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private String decompressedContext;
+
+    // Client-computed embedding as packed float32 (see EmbeddingVector and MessageEmbeddingIndex)
+    @Column(name = "embedding", columnDefinition = "BYTEA")
+    private byte[] embedding;
+
+    // Estimated prompt size of the content (TokenCounter); null on rows written before V7
+    @Column(name = "token_count")
+    private Integer tokenCount;
+
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
+    public String getContext() {
+        if (context != null || compressedContext == null) {
+            return context;
+        }
+        if (decompressedContext == null) {
+            decompressedContext = CompressedText.decompress(compressedContext);
+        }
+        return decompressedContext;
+    }
+
+    public void setContext(String context) {
+        this.context = context;
+        this.compressedContext = null;
+        this.decompressedContext = null;
+    }
+
+    public boolean isContextCompressed() {
+        return compressedContext != null;
+    }
+
+    public void storeCompressedContext(byte[] compressed) {
+        this.decompressedContext = getContext();
+        this.context = null;
+        this.compressedContext = compressed;
+    }
+
+    @PrePersist
+    void onCreate() {
+        // Assigned at persist time (at database precision) rather than at flush so the
+        // timestamp is available to the response and session statistics immediately.
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        }
+        if (tokenCount == null) {
+            tokenCount = TokenCounter.count(content);
+        }
+    }
+
+    // The stored count, or an estimate for rows that predate it and for archived history
+    public int tokens() {
+        return tokenCount != null ? tokenCount : TokenCounter.count(content);
+    }
+
     public enum SenderType {
         USER,
-        ASSISTANT
+        ASSISTANT,
+        SYSTEM
     }
 }
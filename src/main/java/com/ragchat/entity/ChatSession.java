@@ -1,8 +1,10 @@
 package com.ragchat.entity;
 
+import com.ragchat.entity.id.TimeOrderedUuid;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.SQLRestriction;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
@@ -12,6 +14,7 @@ import java.util.UUID;
 
 @Entity
 @Table(name = "chat_sessions")
+@SQLRestriction("deleted_at IS NULL")
 @Getter
 @Setter
 @NoArgsConstructor
@@ -20,7 +23,7 @@ import java.util.UUID;
 public class ChatSession {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @TimeOrderedUuid
     private UUID id;
 
     @Column(nullable = false)
@@ -41,16 +44,27 @@ public class ChatSession {
     @Column(nullable = false)
     private LocalDateTime updatedAt;
 
+    private LocalDateTime deletedAt;
+
     @OneToMany(mappedBy = "session", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     @Builder.Default
     @OrderBy("createdAt ASC")
     private List<ChatMessage> messages = new ArrayList<>();
 
+    @OneToOne(mappedBy = "session", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    private ChatSessionStats stats;
+
     public void addMessage(ChatMessage message) {
         messages.add(message);
         message.setSession(this);
     }
 
+    public void initStats() {
+        this.stats = ChatSessionStats.builder()
+                .session(this)
+                .build();
+    }
+
     public void removeMessage(ChatMessage message) {
         messages.remove(message);
         message.setSession(null);
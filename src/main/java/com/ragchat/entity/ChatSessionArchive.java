@@ -0,0 +1,40 @@
+package com.ragchat.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+@Table(name = "chat_session_archives")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChatSessionArchive {
+
+    @Id
+    private UUID sessionId;
+
+    @Column(nullable = false)
+    private Long segmentId;
+
+    @Column(nullable = false)
+    private Long segmentOffset;
+
+    @Column(nullable = false)
+    private Integer blockLength;
+
+    @Column(nullable = false)
+    private Integer messageCount;
+
+    @Column(nullable = false)
+    private LocalDateTime archivedAt;
+
+    // Bounds of the block's message ids, compared as unsigned bytes like the database does
+    private UUID minMessageId;
+
+    private UUID maxMessageId;
+}
@@ -0,0 +1,35 @@
+package com.ragchat.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+@Table(name = "chat_session_stats")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChatSessionStats {
+
+    @Id
+    private UUID sessionId;
+
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "session_id")
+    private ChatSession session;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Long messageCount = 0L;
+
+    private LocalDateTime lastMessageAt;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Long totalContentBytes = 0L;
+}
@@ -0,0 +1,34 @@
+package com.ragchat.entity;
+
+import io.airlift.compress.zstd.ZstdCompressor;
+import io.airlift.compress.zstd.ZstdDecompressor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * zstd encoding of UTF-8 text. Frames record their decompressed size, so decoding
+ * allocates the output once.
+ */
+public final class CompressedText {
+
+    private CompressedText() {
+    }
+
+    public static byte[] compress(byte[] input) {
+        ZstdCompressor compressor = new ZstdCompressor();
+        byte[] output = new byte[compressor.maxCompressedLength(input.length)];
+        int length = compressor.compress(input, 0, input.length, output, 0, output.length);
+        return Arrays.copyOf(output, length);
+    }
+
+    public static String decompress(byte[] compressed) {
+        long size = ZstdDecompressor.getDecompressedSize(compressed, 0, compressed.length);
+        if (size < 0 || size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Compressed text does not declare a valid size");
+        }
+        byte[] output = new byte[(int) size];
+        new ZstdDecompressor().decompress(compressed, 0, compressed.length, output, 0, output.length);
+        return new String(output, StandardCharsets.UTF_8);
+    }
+}
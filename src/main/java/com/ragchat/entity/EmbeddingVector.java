@@ -0,0 +1,32 @@
+package com.ragchat.entity;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Storage encoding of message embeddings: packed little-endian float32, four bytes per
+ * dimension and no header.
+ */
+public final class EmbeddingVector {
+
+    private EmbeddingVector() {
+    }
+
+    public static byte[] encode(float[] vector) {
+        if (vector == null) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    public static float[] decode(byte[] encoded) {
+        if (encoded.length % Float.BYTES != 0) {
+            throw new IllegalArgumentException("Embedding length " + encoded.length + " is not a multiple of 4");
+        }
+        float[] vector = new float[encoded.length / Float.BYTES];
+        ByteBuffer.wrap(encoded).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return vector;
+    }
+}
@@ -0,0 +1,40 @@
+package com.ragchat.entity.id;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time-ordered UUID (version 7) factory. The first 48 bits hold the Unix epoch
+ * milliseconds and the next 12 bits a counter, so ids generated by this JVM are
+ * strictly increasing and sort by creation time in PostgreSQL's byte-wise uuid order.
+ */
+public final class UuidV7 {
+
+    private static final AtomicLong LAST_TIMESTAMP = new AtomicLong();
+    private static final ThreadLocal<SecureRandom> RANDOM = ThreadLocal.withInitial(SecureRandom::new);
+
+    private UuidV7() {
+    }
+
+    public static UUID randomUuid() {
+        long candidate = System.currentTimeMillis() << 12;
+        // If the clock has not advanced (or went backwards), bump the counter; overflowing
+        // the 12-bit counter borrows the next millisecond rather than losing ordering.
+        long timestamp = LAST_TIMESTAMP.updateAndGet(previous -> Math.max(candidate, previous + 1));
+
+        long mostSigBits = ((timestamp >>> 12) << 16) | 0x7000L | (timestamp & 0xFFFL);
+        long leastSigBits = (RANDOM.get().nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    public static long timestampMillis(UUID uuid) {
+        return uuid.getMostSignificantBits() >>> 16;
+    }
+
+    /** Compares UUIDs as unsigned bytes, like PostgreSQL (unlike {@link UUID#compareTo}). */
+    public static int compareUnsigned(UUID a, UUID b) {
+        int result = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return result != 0 ? result : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+}
@@ -3,7 +3,9 @@ package com.ragchat.exception;
 import com.ragchat.dto.ApiResponse;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.AuthenticationException;
@@ -16,6 +18,8 @@ import org.springframework.web.method.annotation.MethodArgumentTypeMismatchExcep
 import java.util.HashMap;
 import java.util.Map;
 
+// Error bodies are JSON whatever the request accepts: a JSON error cannot be negotiated
+// for an EventSource asking for text/event-stream, which would lose the status as well
 @Slf4j
 @RestControllerAdvice
 public class GlobalExceptionHandler {
@@ -26,6 +30,7 @@ public class GlobalExceptionHandler {
         log.warn("Resource not found: {} - Path: {}", ex.getMessage(), request.getRequestURI());
         return ResponseEntity
                 .status(HttpStatus.NOT_FOUND)
+                .contentType(MediaType.APPLICATION_JSON)
                 .body(ApiResponse.error(ex.getMessage()));
     }
 
@@ -35,6 +40,29 @@ public class GlobalExceptionHandler {
         log.warn("Rate limit exceeded for path: {}", request.getRequestURI());
         return ResponseEntity
                 .status(HttpStatus.TOO_MANY_REQUESTS)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(ApiResponse.error(ex.getMessage()));
+    }
+
+    @ExceptionHandler(IngestionQueueFullException.class)
+    public ResponseEntity<ApiResponse<Void>> handleIngestionQueueFullException(
+            IngestionQueueFullException ex, HttpServletRequest request) {
+        log.warn("Ingestion queue full for path: {}", request.getRequestURI());
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(ApiResponse.error(ex.getMessage()));
+    }
+
+    @ExceptionHandler(SubscriberLimitExceededException.class)
+    public ResponseEntity<ApiResponse<Void>> handleSubscriberLimitExceededException(
+            SubscriberLimitExceededException ex, HttpServletRequest request) {
+        log.warn("Subscriber limit reached for path: {}", request.getRequestURI());
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.RETRY_AFTER, "5")
                 .body(ApiResponse.error(ex.getMessage()));
     }
 
@@ -50,6 +78,7 @@ public class GlobalExceptionHandler {
         log.warn("Validation failed: {}", errors);
         return ResponseEntity
                 .status(HttpStatus.BAD_REQUEST)
+                .contentType(MediaType.APPLICATION_JSON)
                 .body(ApiResponse.<Map<String, String>>builder()
                         .success(false)
                         .message("Validation failed")
@@ -65,6 +94,7 @@ public class GlobalExceptionHandler {
         log.warn("Type mismatch: {}", message);
         return ResponseEntity
                 .status(HttpStatus.BAD_REQUEST)
+                .contentType(MediaType.APPLICATION_JSON)
                 .body(ApiResponse.error(message));
     }
 
@@ -74,6 +104,7 @@ public class GlobalExceptionHandler {
         log.warn("Authentication failed for path: {} - {}", request.getRequestURI(), ex.getMessage());
         return ResponseEntity
                 .status(HttpStatus.UNAUTHORIZED)
+                .contentType(MediaType.APPLICATION_JSON)
                 .body(ApiResponse.error("Authentication failed: Invalid or missing API key"));
     }
 
@@ -83,6 +114,7 @@ public class GlobalExceptionHandler {
         log.warn("Access denied for path: {}", request.getRequestURI());
         return ResponseEntity
                 .status(HttpStatus.FORBIDDEN)
+                .contentType(MediaType.APPLICATION_JSON)
                 .body(ApiResponse.error("Access denied"));
     }
 
@@ -92,6 +124,7 @@ public class GlobalExceptionHandler {
         log.warn("Illegal argument: {}", ex.getMessage());
         return ResponseEntity
                 .status(HttpStatus.BAD_REQUEST)
+                .contentType(MediaType.APPLICATION_JSON)
                 .body(ApiResponse.error(ex.getMessage()));
     }
 
@@ -101,6 +134,7 @@ public class GlobalExceptionHandler {
         log.error("Unexpected error at path: {} - {}", request.getRequestURI(), ex.getMessage(), ex);
         return ResponseEntity
                 .status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .contentType(MediaType.APPLICATION_JSON)
                 .body(ApiResponse.error("An unexpected error occurred. Please try again later."));
     }
 }
@@ -0,0 +1,12 @@
+package com.ragchat.exception;
+
+public class IngestionQueueFullException extends RuntimeException {
+
+    public IngestionQueueFullException() {
+        super("Message ingestion queue is full. Please retry shortly.");
+    }
+
+    public IngestionQueueFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.ragchat.exception;
+
+public class SubscriberLimitExceededException extends RuntimeException {
+
+    public SubscriberLimitExceededException() {
+        super("Too many open message streams. Please retry shortly.");
+    }
+}
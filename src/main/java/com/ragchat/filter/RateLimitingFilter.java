@@ -1,8 +1,14 @@
 package com.ragchat.filter;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import io.github.bucket4j.Bandwidth;
 import io.github.bucket4j.Bucket;
 import io.github.bucket4j.Refill;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -15,15 +21,21 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.time.Duration;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Per-client token buckets held in a size-bounded cache. A bucket idle for a full refill
+ * period is back at capacity, so expiring it after at least that long changes no client's
+ * limit; the size bound only matters when more distinct clients than that are active at
+ * once, and then evicts the least frequently seen first.
+ */
 @Slf4j
 @Component
 @Order(1)
 public class RateLimitingFilter extends OncePerRequestFilter {
 
-    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private static final Duration REFILL_PERIOD = Duration.ofMinutes(1);
+
+    private final MeterRegistry meterRegistry;
 
     @Value("${rate.limit.requests-per-minute:60}")
     private int requestsPerMinute;
@@ -31,6 +43,32 @@ public class RateLimitingFilter extends OncePerRequestFilter {
     @Value("${rate.limit.burst-capacity:10}")
     private int burstCapacity;
 
+    @Value("${rate.limit.max-clients:100000}")
+    private long maxClients;
+
+    @Value("${rate.limit.expire-after-idle-ms:120000}")
+    private long expireAfterIdleMs;
+
+    private Cache<String, Bucket> buckets;
+    private Counter rejectedCounter;
+
+    public RateLimitingFilter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        Duration expireAfterIdle = Duration.ofMillis(expireAfterIdleMs);
+        buckets = Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                // Evicting a bucket before it has refilled would hand its client fresh tokens
+                .expireAfterAccess(expireAfterIdle.compareTo(REFILL_PERIOD) < 0 ? REFILL_PERIOD : expireAfterIdle)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, buckets, "rate-limit-buckets");
+        rejectedCounter = meterRegistry.counter("ragchat.ratelimit.rejected");
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request,
                                     HttpServletResponse response,
@@ -38,11 +76,12 @@ public class RateLimitingFilter extends OncePerRequestFilter {
             throws ServletException, IOException {
 
         String clientId = getClientIdentifier(request);
-        Bucket bucket = buckets.computeIfAbsent(clientId, this::createBucket);
+        Bucket bucket = buckets.get(clientId, this::createBucket);
 
         if (bucket.tryConsume(1)) {
             filterChain.doFilter(request, response);
         } else {
+            rejectedCounter.increment();
             log.warn("Rate limit exceeded for client: {}", clientId);
             sendRateLimitResponse(response);
         }
@@ -65,7 +104,7 @@ public class RateLimitingFilter extends OncePerRequestFilter {
     private Bucket createBucket(String clientId) {
         Bandwidth limit = Bandwidth.classic(
                 requestsPerMinute,
-                Refill.greedy(requestsPerMinute, Duration.ofMinutes(1))
+                Refill.greedy(requestsPerMinute, REFILL_PERIOD)
         );
 
         Bandwidth burst = Bandwidth.classic(
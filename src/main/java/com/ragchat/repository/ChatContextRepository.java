@@ -0,0 +1,37 @@
+package com.ragchat.repository;
+
+import com.ragchat.entity.ChatContext;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ChatContextRepository extends JpaRepository<ChatContext, String> {
+
+    interface StoredContext {
+        String getHash();
+
+        String getContent();
+
+        byte[] getCompressedContent();
+    }
+
+    // A projection, so resolved contexts never accumulate in the persistence context
+    List<StoredContext> findByHashIn(Collection<String> hashes);
+
+    @Modifying
+    @Query("UPDATE ChatContext c SET c.refCount = c.refCount + :delta WHERE c.hash = :hash")
+    int adjustReferences(@Param("hash") String hash, @Param("delta") long delta);
+
+    // ref_count is checked again on the deleted row, so a context referenced again meanwhile survives
+    @Modifying
+    @Query(value = "DELETE FROM chat_contexts WHERE ref_count <= 0 AND hash IN " +
+            "(SELECT hash FROM chat_contexts WHERE ref_count <= 0 FETCH FIRST :limit ROWS ONLY)",
+            nativeQuery = true)
+    int deleteUnreferenced(@Param("limit") int limit);
+}
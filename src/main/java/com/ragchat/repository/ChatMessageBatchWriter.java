@@ -0,0 +1,62 @@
+package com.ragchat.repository;
+
+import com.ragchat.dto.PendingMessage;
+import com.ragchat.entity.TokenCounter;
+import com.ragchat.service.ContextStoreService;
+import com.ragchat.service.MessageCompressionService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+@Repository
+@RequiredArgsConstructor
+public class ChatMessageBatchWriter {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO chat_messages (id, session_id, sender, content, context, context_zstd, context_hash, embedding, " +
+            "token_count, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final MessageCompressionService compressionService;
+    private final ContextStoreService contextStore;
+
+    public void insertAll(List<PendingMessage> messages) {
+        List<String> contextHashes = contextStore.referenceAll(messages.stream().map(PendingMessage::context).toList());
+        Iterator<String> hashes = contextHashes.iterator();
+        jdbcTemplate.batchUpdate(INSERT_SQL, messages, messages.size(), (ps, message) -> {
+            ps.setObject(1, message.id());
+            ps.setObject(2, message.sessionId());
+            ps.setString(3, message.sender().name());
+            ps.setString(4, message.content());
+            String contextHash = hashes.next();
+            byte[] compressedContext = contextHash == null ? compressionService.compressContext(message.context()) : null;
+            ps.setString(5, contextHash == null && compressedContext == null ? message.context() : null);
+            ps.setBytes(6, compressedContext);
+            ps.setString(7, contextHash);
+            ps.setBytes(8, message.embedding());
+            ps.setInt(9, TokenCounter.count(message.content()));
+            ps.setTimestamp(10, Timestamp.valueOf(message.createdAt()));
+        });
+    }
+
+    public Set<UUID> findExistingIds(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(namedParameterJdbcTemplate.queryForList(
+                "SELECT id FROM chat_messages WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", ids),
+                UUID.class));
+    }
+}
@@ -1,22 +1,232 @@
 package com.ragchat.repository;
 
 import com.ragchat.entity.ChatMessage;
+import com.ragchat.entity.CompressedText;
+import com.ragchat.entity.TokenCounter;
+import com.ragchat.entity.id.UuidV7;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, UUID> {
 
-    List<ChatMessage> findBySessionIdOrderByCreatedAtAsc(UUID sessionId);
+    Duration ID_TIMESTAMP_SLACK = Duration.ofDays(1);
 
-    Page<ChatMessage> findBySessionId(UUID sessionId, Pageable pageable);
+    // Read models for the listing endpoints. Hibernate builds them straight from the result
+    // set, so no managed entity, snapshot or session proxy is created per row.
+    record MessageRow(UUID id, ChatMessage.SenderType sender, String content, String context,
+                      byte[] compressedContext, String contextHash, LocalDateTime createdAt) {
+
+        // The context as stored on the row itself, plain or compressed
+        public String inlineContext() {
+            return compressedContext != null ? CompressedText.decompress(compressedContext) : context;
+        }
+    }
+
+    // Leaves out every context column
+    record MessageSummary(UUID id, ChatMessage.SenderType sender, String content, LocalDateTime createdAt) {
+    }
+
+    // Token count alone, for walking a context window; the content is only read from rows
+    // that predate stored counts
+    record MessageTokens(UUID id, ChatMessage.SenderType sender, Integer tokenCount, String uncountedContent,
+                         LocalDateTime createdAt) {
+
+        public int tokens() {
+            return tokenCount != null ? tokenCount : TokenCounter.count(uncountedContent);
+        }
+    }
+
+    // Stored embedding of a message of an active session, with the owner it is indexed under
+    record EmbeddingRow(UUID id, UUID sessionId, String userId, byte[] embedding) {
+    }
+
+    String MESSAGE_ROW = "SELECT new com.ragchat.repository.ChatMessageRepository$MessageRow(" +
+            "m.id, m.sender, m.content, m.context, m.compressedContext, m.contextHash, m.createdAt) FROM ChatMessage m ";
+
+    String MESSAGE_SUMMARY = "SELECT new com.ragchat.repository.ChatMessageRepository$MessageSummary(" +
+            "m.id, m.sender, m.content, m.createdAt) FROM ChatMessage m ";
+
+    String MESSAGE_TOKENS = "SELECT new com.ragchat.repository.ChatMessageRepository$MessageTokens(" +
+            "m.id, m.sender, m.tokenCount, CASE WHEN m.tokenCount IS NULL THEN m.content END, m.createdAt) " +
+            "FROM ChatMessage m ";
+
+    String AFTER_CURSOR = "WHERE m.session.id = :sessionId " +
+            "AND (m.createdAt > :createdAt OR (m.createdAt = :createdAt AND m.id > :id)) " +
+            "ORDER BY m.createdAt ASC, m.id ASC";
+
+    String BEFORE_CURSOR = "WHERE m.session.id = :sessionId " +
+            "AND (m.createdAt < :createdAt OR (m.createdAt = :createdAt AND m.id < :id)) " +
+            "ORDER BY m.createdAt DESC, m.id DESC";
+
+    List<ChatMessage> findBySessionIdOrderByCreatedAtAscIdAsc(UUID sessionId, Limit limit);
+
+    <T> List<T> findBySessionIdOrderByCreatedAtAsc(UUID sessionId, Class<T> type);
+
+    <T> Page<T> findBySessionId(UUID sessionId, Pageable pageable, Class<T> type);
+
+    <T> List<T> findBySessionIdOrderByCreatedAtAscIdAsc(UUID sessionId, Limit limit, Class<T> type);
+
+    <T> List<T> findBySessionIdOrderByCreatedAtDescIdDesc(UUID sessionId, Limit limit, Class<T> type);
+
+    @Query(MESSAGE_ROW + AFTER_CURSOR)
+    List<MessageRow> findRowPageAfter(@Param("sessionId") UUID sessionId,
+                                      @Param("createdAt") LocalDateTime createdAt,
+                                      @Param("id") UUID id,
+                                      Limit limit);
+
+    @Query(MESSAGE_ROW + BEFORE_CURSOR)
+    List<MessageRow> findRowPageBefore(@Param("sessionId") UUID sessionId,
+                                       @Param("createdAt") LocalDateTime createdAt,
+                                       @Param("id") UUID id,
+                                       Limit limit);
+
+    @Query(MESSAGE_SUMMARY + AFTER_CURSOR)
+    List<MessageSummary> findSummaryPageAfter(@Param("sessionId") UUID sessionId,
+                                              @Param("createdAt") LocalDateTime createdAt,
+                                              @Param("id") UUID id,
+                                              Limit limit);
+
+    @Query(MESSAGE_SUMMARY + BEFORE_CURSOR)
+    List<MessageSummary> findSummaryPageBefore(@Param("sessionId") UUID sessionId,
+                                               @Param("createdAt") LocalDateTime createdAt,
+                                               @Param("id") UUID id,
+                                               Limit limit);
+
+    @Query(MESSAGE_TOKENS + "WHERE m.session.id = :sessionId ORDER BY m.createdAt DESC, m.id DESC")
+    List<MessageTokens> findNewestTokens(@Param("sessionId") UUID sessionId, Limit limit);
+
+    @Query(MESSAGE_TOKENS + BEFORE_CURSOR)
+    List<MessageTokens> findTokensBefore(@Param("sessionId") UUID sessionId,
+                                         @Param("createdAt") LocalDateTime createdAt,
+                                         @Param("id") UUID id,
+                                         Limit limit);
+
+    @Query(MESSAGE_TOKENS + "WHERE m.session.id = :sessionId ORDER BY m.createdAt ASC, m.id ASC")
+    List<MessageTokens> findOldestTokens(@Param("sessionId") UUID sessionId, Limit limit);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<ChatMessage> streamBySessionIdOrderByCreatedAtAscIdAsc(UUID sessionId);
+
+    // Loads MessageEmbeddingIndex at startup without holding every row in memory
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new com.ragchat.repository.ChatMessageRepository$EmbeddingRow(m.id, s.id, s.userId, m.embedding) " +
+            "FROM ChatMessage m JOIN m.session s WHERE m.embedding IS NOT NULL AND s.deletedAt IS NULL")
+    Stream<EmbeddingRow> streamActiveEmbeddings();
+
+    // Time-ordered ids carry their creation time, which bounds created_at and lets a
+    // range-partitioned table skip every partition but one or two
+    default Optional<ChatMessage> findActiveById(UUID id) {
+        if (id.version() != 7) {
+            return findActiveByIdInAnyPartition(id);
+        }
+        LocalDateTime createdAt = idTimestamp(id);
+        return findActiveByIdCreatedBetween(id, createdAt.minus(ID_TIMESTAMP_SLACK), createdAt.plus(ID_TIMESTAMP_SLACK));
+    }
+
+    // Position of a message given as a delta-sync starting point, bounded the same way
+    default Optional<LocalDateTime> findCreatedAt(UUID sessionId, UUID id) {
+        if (id.version() != 7) {
+            return findCreatedAtInAnyPartition(sessionId, id);
+        }
+        LocalDateTime createdAt = idTimestamp(id);
+        return findCreatedAtBetween(sessionId, id, createdAt.minus(ID_TIMESTAMP_SLACK), createdAt.plus(ID_TIMESTAMP_SLACK));
+    }
+
+    private static LocalDateTime idTimestamp(UUID id) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(UuidV7.timestampMillis(id)), ZoneId.systemDefault());
+    }
+
+    // Candidates of a similarity search that are still stored in an active session, bounded
+    // by the creation times their ids carry like findActiveById
+    default List<MessageSummary> findActiveSummariesByIdIn(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        if (ids.stream().anyMatch(id -> id.version() != 7)) {
+            return findActiveSummariesByIdInAnyPartition(ids);
+        }
+        LocalDateTime from = ids.stream().map(ChatMessageRepository::idTimestamp).min(LocalDateTime::compareTo).orElseThrow();
+        LocalDateTime to = ids.stream().map(ChatMessageRepository::idTimestamp).max(LocalDateTime::compareTo).orElseThrow();
+        return findActiveSummariesByIdInCreatedBetween(ids, from.minus(ID_TIMESTAMP_SLACK), to.plus(ID_TIMESTAMP_SLACK));
+    }
+
+    @Query(MESSAGE_SUMMARY + "JOIN m.session s WHERE m.id IN :ids AND s.deletedAt IS NULL")
+    List<MessageSummary> findActiveSummariesByIdInAnyPartition(@Param("ids") Collection<UUID> ids);
+
+    @Query(MESSAGE_SUMMARY + "JOIN m.session s WHERE m.id IN :ids AND s.deletedAt IS NULL " +
+            "AND m.createdAt BETWEEN :from AND :to")
+    List<MessageSummary> findActiveSummariesByIdInCreatedBetween(@Param("ids") Collection<UUID> ids,
+                                                                 @Param("from") LocalDateTime from,
+                                                                 @Param("to") LocalDateTime to);
+
+    @Query("SELECT m FROM ChatMessage m JOIN m.session s WHERE m.id = :id AND s.deletedAt IS NULL")
+    Optional<ChatMessage> findActiveByIdInAnyPartition(@Param("id") UUID id);
+
+    @Query("SELECT m FROM ChatMessage m JOIN m.session s WHERE m.id = :id AND s.deletedAt IS NULL " +
+            "AND m.createdAt BETWEEN :from AND :to")
+    Optional<ChatMessage> findActiveByIdCreatedBetween(@Param("id") UUID id,
+                                                       @Param("from") LocalDateTime from,
+                                                       @Param("to") LocalDateTime to);
+
+    @Query("SELECT m.createdAt FROM ChatMessage m WHERE m.session.id = :sessionId AND m.id = :id")
+    Optional<LocalDateTime> findCreatedAtInAnyPartition(@Param("sessionId") UUID sessionId, @Param("id") UUID id);
+
+    @Query("SELECT m.createdAt FROM ChatMessage m WHERE m.session.id = :sessionId AND m.id = :id " +
+            "AND m.createdAt BETWEEN :from AND :to")
+    Optional<LocalDateTime> findCreatedAtBetween(@Param("sessionId") UUID sessionId,
+                                                 @Param("id") UUID id,
+                                                 @Param("from") LocalDateTime from,
+                                                 @Param("to") LocalDateTime to);
 
     long countBySessionId(UUID sessionId);
 
     void deleteBySessionId(UUID sessionId);
+
+    @Query("SELECT m.contextHash FROM ChatMessage m WHERE m.id IN :ids AND m.contextHash IS NOT NULL")
+    List<String> findContextHashesByIdIn(@Param("ids") Collection<UUID> ids);
+
+    @Modifying
+    @Query("DELETE FROM ChatMessage m WHERE m.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<UUID> ids);
+
+    // Same rows as deleteChunkBySessionId, so their context references can be released first
+    @Query(value = "SELECT context_hash FROM chat_messages WHERE session_id = :sessionId AND context_hash IS NOT NULL " +
+            "AND id IN (SELECT id FROM chat_messages WHERE session_id = :sessionId " +
+            "ORDER BY created_at, id FETCH FIRST :limit ROWS ONLY)",
+            nativeQuery = true)
+    List<String> findContextHashChunkBySessionId(@Param("sessionId") UUID sessionId, @Param("limit") int limit);
+
+    @Modifying
+    // The outer session_id predicate lets partitioned tables prune to the session's partitions
+    @Query(value = "DELETE FROM chat_messages WHERE session_id = :sessionId AND id IN " +
+            "(SELECT id FROM chat_messages WHERE session_id = :sessionId " +
+            "ORDER BY created_at, id FETCH FIRST :limit ROWS ONLY)",
+            nativeQuery = true)
+    int deleteChunkBySessionId(@Param("sessionId") UUID sessionId, @Param("limit") int limit);
 }
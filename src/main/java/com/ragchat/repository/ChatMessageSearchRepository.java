@@ -0,0 +1,82 @@
+package com.ragchat.repository;
+
+import com.ragchat.dto.SearchCursor;
+import com.ragchat.entity.ChatMessage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Full-text queries over chat_messages.search_vector (V5__message_search.sql), which
+ * PostgreSQL keeps current on insert. Matches are ranked by cover density and paged by
+ * keyset on (rank, id); highlights are only computed for the rows of the page.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ChatMessageSearchRepository {
+
+    // Text search configuration of the generated column; queries must use the same one
+    private static final String CONFIG = "'english'";
+
+    // Control characters cannot be confused with markup, so the highlight can be escaped safely
+    public static final char START_MATCH = '\u0002';
+    public static final char STOP_MATCH = '\u0003';
+
+    private static final String HEADLINE_OPTIONS = "'StartSel=' || chr(2) || ', StopSel=' || chr(3) || " +
+            "', MaxFragments=3, MaxWords=24, MinWords=8, FragmentDelimiter=\" ... \"'";
+
+    public record SearchRow(UUID id, UUID sessionId, String sessionTitle, ChatMessage.SenderType sender,
+                            String headline, float rank, LocalDateTime createdAt) {
+    }
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    /**
+     * Messages of the user's active sessions matching a web-search style query (quoted
+     * phrases, OR, -negation), best first.
+     */
+    public List<SearchRow> search(String userId, String query, UUID sessionId, SearchCursor after, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("userId", userId)
+                .addValue("query", query)
+                .addValue("limit", limit);
+        // The sessions in scope are resolved up front, so the messages are read with one
+        // index probe per partition rather than a join the planner has to cost per session
+        String sessions = "SELECT id FROM chat_sessions WHERE user_id = :userId AND deleted_at IS NULL";
+        if (sessionId != null) {
+            sessions += " AND id = :sessionId";
+            params.addValue("sessionId", sessionId);
+        }
+        StringBuilder matches = new StringBuilder(
+                "SELECT m.id, m.session_id, m.sender, m.content, m.created_at, q.query, r.rank " +
+                "FROM chat_messages m " +
+                "CROSS JOIN websearch_to_tsquery(" + CONFIG + ", :query) AS q(query) " +
+                // OFFSET 0 keeps the rank from being inlined, and so computed again, in every predicate
+                "CROSS JOIN LATERAL (SELECT ts_rank_cd(m.search_vector, q.query) AS rank OFFSET 0) r " +
+                "WHERE m.session_id = ANY (ARRAY(" + sessions + ")) AND m.search_vector @@ q.query ");
+        if (after != null) {
+            matches.append("AND (r.rank < CAST(:rank AS REAL) OR (r.rank = CAST(:rank AS REAL) AND m.id < :afterId)) ");
+            params.addValue("rank", after.rank()).addValue("afterId", after.id());
+        }
+        matches.append("ORDER BY r.rank DESC, m.id DESC LIMIT :limit");
+
+        String sql = "SELECT h.id, h.session_id, s.title, h.sender, h.created_at, h.rank, " +
+                "ts_headline(" + CONFIG + ", h.content, h.query, " + HEADLINE_OPTIONS + ") AS headline " +
+                "FROM (" + matches + ") h " +
+                "JOIN chat_sessions s ON s.id = h.session_id " +
+                "ORDER BY h.rank DESC, h.id DESC";
+        return namedParameterJdbcTemplate.query(sql, params, (rs, rowNum) -> new SearchRow(
+                rs.getObject("id", UUID.class),
+                rs.getObject("session_id", UUID.class),
+                rs.getString("title"),
+                ChatMessage.SenderType.valueOf(rs.getString("sender")),
+                rs.getString("headline"),
+                rs.getFloat("rank"),
+                rs.getTimestamp("created_at").toLocalDateTime()));
+    }
+}
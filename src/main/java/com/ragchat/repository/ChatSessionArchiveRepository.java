@@ -0,0 +1,33 @@
+package com.ragchat.repository;
+
+import com.ragchat.entity.ChatSessionArchive;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface ChatSessionArchiveRepository extends JpaRepository<ChatSessionArchive, UUID> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM ChatSessionArchive a WHERE a.sessionId = :sessionId")
+    Optional<ChatSessionArchive> findForUpdate(@Param("sessionId") UUID sessionId);
+
+    // Blocks whose id range covers the message; only one of them can hold it
+    @Query("SELECT a FROM ChatSessionArchive a WHERE a.minMessageId <= :messageId AND a.maxMessageId >= :messageId")
+    List<ChatSessionArchive> findCoveringMessageId(@Param("messageId") UUID messageId);
+
+    List<ChatSessionArchive> findByMinMessageIdIsNull(Limit limit);
+
+    @Modifying
+    @Query("DELETE FROM ChatSessionArchive a WHERE a.sessionId = :sessionId")
+    int deleteBySessionId(@Param("sessionId") UUID sessionId);
+}
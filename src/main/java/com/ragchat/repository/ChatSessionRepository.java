@@ -1,24 +1,91 @@
 package com.ragchat.repository;
 
+import com.ragchat.dto.SessionResponse;
 import com.ragchat.entity.ChatSession;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface ChatSessionRepository extends JpaRepository<ChatSession, UUID> {
 
-    List<ChatSession> findByUserIdOrderByUpdatedAtDesc(String userId);
+    // Listing reads build the response straight from the joined row, without loading entities
+    String SESSION_RESPONSE = "SELECT new com.ragchat.dto.SessionResponse(s.id, s.userId, s.title, s.isFavorite, " +
+            "CAST(COALESCE(st.messageCount, 0L) AS Integer), st.lastMessageAt, COALESCE(st.totalContentBytes, 0L), " +
+            "s.createdAt, s.updatedAt) FROM ChatSession s LEFT JOIN s.stats st ";
 
-    Page<ChatSession> findByUserId(String userId, Pageable pageable);
+    @Override
+    @EntityGraph(attributePaths = "stats")
+    Optional<ChatSession> findById(UUID id);
 
-    List<ChatSession> findByUserIdAndIsFavoriteTrue(String userId);
+    @EntityGraph(attributePaths = "stats")
+    List<ChatSession> findByIdIn(Collection<UUID> ids);
 
+    @Query(SESSION_RESPONSE + "WHERE s.id = :id")
+    Optional<SessionResponse> findResponseById(@Param("id") UUID id);
+
+    @Query("SELECT s.userId FROM ChatSession s WHERE s.id = :id")
+    Optional<String> findUserIdById(@Param("id") UUID id);
+
+    @Query(SESSION_RESPONSE + "WHERE s.userId = :userId ORDER BY s.updatedAt DESC")
+    List<SessionResponse> findResponsesByUserId(@Param("userId") String userId);
+
+    @Query(value = SESSION_RESPONSE + "WHERE s.userId = :userId",
+            countQuery = "SELECT COUNT(s) FROM ChatSession s WHERE s.userId = :userId")
+    Page<SessionResponse> findResponsesByUserId(@Param("userId") String userId, Pageable pageable);
+
+    @Query(SESSION_RESPONSE + "WHERE s.userId = :userId AND s.isFavorite = true")
+    List<SessionResponse> findFavoriteResponsesByUserId(@Param("userId") String userId);
+
+    @EntityGraph(attributePaths = "stats")
     Page<ChatSession> findByUserIdAndIsFavoriteTrue(String userId, Pageable pageable);
 
     long countByUserId(String userId);
+
+    @Modifying
+    @Query("UPDATE ChatSession s SET s.deletedAt = :deletedAt WHERE s.id = :id AND s.deletedAt IS NULL")
+    int markDeleted(@Param("id") UUID id, @Param("deletedAt") LocalDateTime deletedAt);
+
+    @Modifying
+    @Query("UPDATE ChatSession s SET s.deletedAt = :deletedAt WHERE s.userId = :userId AND s.deletedAt IS NULL")
+    int markDeletedByUserId(@Param("userId") String userId, @Param("deletedAt") LocalDateTime deletedAt);
+
+    @Modifying
+    @Query("UPDATE ChatSession s SET s.deletedAt = :deletedAt " +
+            "WHERE s.userId = :userId AND s.updatedAt < :olderThan AND s.deletedAt IS NULL")
+    int markDeletedByUserIdAndUpdatedAtBefore(@Param("userId") String userId,
+                                              @Param("olderThan") LocalDateTime olderThan,
+                                              @Param("deletedAt") LocalDateTime deletedAt);
+
+    @Modifying
+    @Query("UPDATE ChatSession s SET s.deletedAt = :deletedAt WHERE s.updatedAt < :olderThan AND s.deletedAt IS NULL")
+    int markDeletedByUpdatedAtBefore(@Param("olderThan") LocalDateTime olderThan,
+                                     @Param("deletedAt") LocalDateTime deletedAt);
+
+    @Query("SELECT s.id FROM ChatSession s LEFT JOIN s.stats st " +
+            "WHERE COALESCE(st.lastMessageAt, s.updatedAt) < :idleSince " +
+            "AND NOT EXISTS (SELECT a FROM ChatSessionArchive a WHERE a.sessionId = s.id) " +
+            "AND EXISTS (SELECT m FROM ChatMessage m WHERE m.session = s) " +
+            "ORDER BY COALESCE(st.lastMessageAt, s.updatedAt)")
+    List<UUID> findArchiveCandidates(@Param("idleSince") LocalDateTime idleSince, Limit limit);
+
+    @Query(value = "SELECT CAST(id AS VARCHAR(36)) FROM chat_sessions WHERE deleted_at IS NOT NULL " +
+            "ORDER BY deleted_at FETCH FIRST :limit ROWS ONLY", nativeQuery = true)
+    List<String> findDeletedSessionIds(@Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "DELETE FROM chat_sessions WHERE id = :id AND deleted_at IS NOT NULL", nativeQuery = true)
+    int purgeDeleted(@Param("id") UUID id);
 }
@@ -0,0 +1,65 @@
+package com.ragchat.repository;
+
+import com.ragchat.entity.ChatSessionStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Repository
+public interface ChatSessionStatsRepository extends JpaRepository<ChatSessionStats, UUID> {
+
+    @Modifying
+    @Query("UPDATE ChatSessionStats st SET " +
+            "st.messageCount = st.messageCount + :messageCount, " +
+            "st.totalContentBytes = st.totalContentBytes + :contentBytes, " +
+            "st.lastMessageAt = CASE WHEN st.lastMessageAt IS NULL OR st.lastMessageAt < :createdAt " +
+            "THEN :createdAt ELSE st.lastMessageAt END " +
+            "WHERE st.sessionId = :sessionId")
+    int incrementStats(@Param("sessionId") UUID sessionId,
+                       @Param("messageCount") long messageCount,
+                       @Param("contentBytes") long contentBytes,
+                       @Param("createdAt") LocalDateTime createdAt);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE ChatSessionStats st SET " +
+            "st.messageCount = st.messageCount - 1, " +
+            "st.totalContentBytes = st.totalContentBytes - :contentBytes, " +
+            "st.lastMessageAt = (SELECT MAX(m.createdAt) FROM ChatMessage m WHERE m.session.id = :sessionId) " +
+            "WHERE st.sessionId = :sessionId")
+    int decrementStats(@Param("sessionId") UUID sessionId,
+                       @Param("contentBytes") long contentBytes);
+
+    String BACKFILL_STATS = "INSERT INTO chat_session_stats (session_id, message_count, last_message_at, total_content_bytes) " +
+            "SELECT s.id, COUNT(m.id), MAX(m.created_at), COALESCE(SUM(OCTET_LENGTH(m.content)), 0) " +
+            "FROM chat_sessions s LEFT JOIN chat_messages m ON m.session_id = s.id " +
+            "WHERE s.id = :sessionId " +
+            "AND NOT EXISTS (SELECT 1 FROM chat_session_stats st WHERE st.session_id = s.id) " +
+            "GROUP BY s.id";
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = BACKFILL_STATS, nativeQuery = true)
+    int backfillStats(@Param("sessionId") UUID sessionId);
+
+    // PostgreSQL: waits for a concurrent backfill of the session and then inserts nothing, where
+    // the plain insert would fail on the primary key
+    @Modifying(flushAutomatically = true)
+    @Query(value = BACKFILL_STATS + " ON CONFLICT (session_id) DO NOTHING", nativeQuery = true)
+    int backfillStatsIfAbsent(@Param("sessionId") UUID sessionId);
+
+    @Modifying
+    @Query(value = "INSERT INTO chat_session_stats (session_id, message_count, last_message_at, total_content_bytes) " +
+            "SELECT s.id, COUNT(m.id), MAX(m.created_at), COALESCE(SUM(OCTET_LENGTH(m.content)), 0) " +
+            "FROM chat_sessions s LEFT JOIN chat_messages m ON m.session_id = s.id " +
+            "WHERE NOT EXISTS (SELECT 1 FROM chat_session_stats st WHERE st.session_id = s.id) " +
+            "GROUP BY s.id", nativeQuery = true)
+    int backfillMissingStats();
+
+    @Modifying
+    @Query(value = "DELETE FROM chat_session_stats WHERE session_id = :sessionId", nativeQuery = true)
+    int deleteBySessionId(@Param("sessionId") UUID sessionId);
+}
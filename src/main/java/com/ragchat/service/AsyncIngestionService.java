@@ -0,0 +1,449 @@
+package com.ragchat.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ragchat.dto.CreateMessageRequest;
+import com.ragchat.dto.MessageResponse;
+import com.ragchat.dto.PendingMessage;
+import com.ragchat.entity.ChatMessage;
+import com.ragchat.entity.EmbeddingVector;
+import com.ragchat.entity.id.UuidV7;
+import com.ragchat.exception.IngestionQueueFullException;
+import com.ragchat.exception.ResourceNotFoundException;
+import com.ragchat.repository.ChatMessageBatchWriter;
+import com.ragchat.repository.ChatSessionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.NonTransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "ingestion.async.enabled", havingValue = "true")
+public class AsyncIngestionService {
+
+    private final ChatSessionRepository sessionRepository;
+    private final ChatMessageBatchWriter batchWriter;
+    private final SessionStatsService statsService;
+    private final SessionArchiveService archiveService;
+    private final MessageTailCacheService tailCache;
+    private final MessageStreamService messageStream;
+    private final MessageEmbeddingIndex embeddingIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ingestion.async.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${ingestion.async.writer-threads:2}")
+    private int writerThreads;
+
+    @Value("${ingestion.async.max-batch-size:200}")
+    private int maxBatchSize;
+
+    @Value("${ingestion.async.flush-interval-ms:20}")
+    private long flushIntervalMs;
+
+    @Value("${ingestion.async.journal.enabled:false}")
+    private boolean journalEnabled;
+
+    @Value("${ingestion.async.journal.directory:./data/ingestion-journal}")
+    private String journalDirectory;
+
+    @Value("${ingestion.async.journal.fsync:false}")
+    private boolean journalFsync;
+
+    @Value("${ingestion.async.journal.segment-entries:10000}")
+    private int journalSegmentEntries;
+
+    @Value("${ingestion.async.retry.initial-backoff-ms:100}")
+    private long retryInitialBackoffMs;
+
+    @Value("${ingestion.async.retry.max-backoff-ms:30000}")
+    private long retryMaxBackoffMs;
+
+    @Value("${ingestion.async.dead-letter.directory:./data/ingestion-dead-letters}")
+    private String deadLetterDirectory;
+
+    private Semaphore capacity;
+    private List<Partition> partitions;
+    private IngestionJournal journal;
+    private IngestionDeadLetterStore deadLetters;
+    private volatile boolean running;
+
+    private Counter acceptedCounter;
+    private Counter rejectedCounter;
+    private Counter persistedCounter;
+    private Counter retriedCounter;
+    private Counter deadLetteredCounter;
+
+    public AsyncIngestionService(ChatSessionRepository sessionRepository,
+                                 ChatMessageBatchWriter batchWriter,
+                                 SessionStatsService statsService,
+                                 SessionArchiveService archiveService,
+                                 MessageTailCacheService tailCache,
+                                 MessageStreamService messageStream,
+                                 MessageEmbeddingIndex embeddingIndex,
+                                 PlatformTransactionManager transactionManager,
+                                 ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry) {
+        this.sessionRepository = sessionRepository;
+        this.batchWriter = batchWriter;
+        this.statsService = statsService;
+        this.archiveService = archiveService;
+        this.tailCache = tailCache;
+        this.messageStream = messageStream;
+        this.embeddingIndex = embeddingIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        partitions = new ArrayList<>(writerThreads);
+        for (int i = 0; i < writerThreads; i++) {
+            partitions.add(new Partition(i));
+        }
+        deadLetters = new IngestionDeadLetterStore(Path.of(deadLetterDirectory), objectMapper);
+
+        acceptedCounter = meterRegistry.counter("ragchat.ingestion.accepted");
+        rejectedCounter = meterRegistry.counter("ragchat.ingestion.rejected");
+        persistedCounter = meterRegistry.counter("ragchat.ingestion.persisted");
+        retriedCounter = meterRegistry.counter("ragchat.ingestion.retried");
+        deadLetteredCounter = meterRegistry.counter("ragchat.ingestion.dead-lettered");
+        Gauge.builder("ragchat.ingestion.queue.size", () -> queueCapacity - capacity.availablePermits())
+                .register(meterRegistry);
+        Gauge.builder("ragchat.ingestion.stalled.writers", () -> partitions.stream().filter(p -> p.stalled).count())
+                .register(meterRegistry);
+
+        int replayed = 0;
+        if (journalEnabled) {
+            journal = new IngestionJournal(Path.of(journalDirectory), objectMapper, journalFsync, journalSegmentEntries);
+            replayed = replayJournal();
+        }
+        // Replayed messages may exceed the capacity; new ones are refused until they are written
+        capacity = new Semaphore(queueCapacity - replayed);
+
+        running = true;
+        for (Partition partition : partitions) {
+            Thread writer = new Thread(partition::runWriter, "ingestion-writer-" + partition.index);
+            writer.setDaemon(true);
+            partition.thread = writer;
+            writer.start();
+        }
+        log.info("Async ingestion started with {} writers, queue capacity {}, journal {}",
+                writerThreads, queueCapacity, journalEnabled ? "enabled" : "disabled");
+    }
+
+    public MessageResponse submit(UUID sessionId, CreateMessageRequest request) {
+        if (!running) {
+            throw new IngestionQueueFullException("Message ingestion is not accepting messages");
+        }
+        if (!sessionRepository.existsById(sessionId)) {
+            throw new ResourceNotFoundException("ChatSession", "id", sessionId);
+        }
+        if (request.getEmbedding() != null) {
+            embeddingIndex.validate(sessionId, request.getEmbedding());
+        }
+        Partition partition = partitionFor(sessionId);
+        if (partition.stalled) {
+            rejectedCounter.increment();
+            throw new IngestionQueueFullException("Message ingestion is temporarily unavailable. Please retry shortly.");
+        }
+        if (!capacity.tryAcquire()) {
+            rejectedCounter.increment();
+            throw new IngestionQueueFullException();
+        }
+
+        PendingMessage message;
+        // Id assignment and enqueue happen under the partition lock so that queue order,
+        // id order and timestamp order agree for every session in the partition.
+        synchronized (partition) {
+            message = new PendingMessage(
+                    UuidV7.randomUuid(),
+                    sessionId,
+                    request.getSender(),
+                    request.getContent(),
+                    request.getContext(),
+                    EmbeddingVector.encode(request.getEmbedding()),
+                    LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+            long segment = -1;
+            try {
+                if (journal != null) {
+                    segment = journal.append(message);
+                }
+            } catch (RuntimeException e) {
+                capacity.release();
+                throw e;
+            }
+            partition.queue.add(new Entry(message, segment));
+        }
+
+        acceptedCounter.increment();
+        log.debug("Accepted message {} for session {} for asynchronous write", message.id(), sessionId);
+        return toResponse(message);
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        running = false;
+        for (Partition partition : partitions) {
+            if (partition.thread != null) {
+                partition.thread.interrupt();
+                partition.thread.join(TimeUnit.SECONDS.toMillis(30));
+            }
+        }
+        if (journal != null) {
+            journal.close();
+        }
+        log.info("Async ingestion stopped");
+    }
+
+    /**
+     * Queues the journaled messages that are not in the database yet for the writers, journaled
+     * again so that the recovered segments can go, and returns how many were queued.
+     */
+    private int replayJournal() throws IOException {
+        List<PendingMessage> recovered = journal.recover();
+        if (recovered.isEmpty()) {
+            journal.discardRecovered();
+            return 0;
+        }
+
+        Set<UUID> existing = new HashSet<>();
+        for (int from = 0; from < recovered.size(); from += maxBatchSize) {
+            List<PendingMessage> chunk = recovered.subList(from, Math.min(from + maxBatchSize, recovered.size()));
+            existing.addAll(batchWriter.findExistingIds(chunk.stream().map(PendingMessage::id).toList()));
+        }
+        List<PendingMessage> missing = recovered.stream()
+                .filter(message -> !existing.contains(message.id()))
+                .toList();
+
+        log.info("Replaying {} of {} journaled messages", missing.size(), recovered.size());
+        for (PendingMessage message : missing) {
+            partitionFor(message.sessionId()).queue.add(new Entry(message, journal.append(message)));
+        }
+        journal.discardRecovered();
+        return missing.size();
+    }
+
+    /**
+     * Writes the messages and returns those that failed for a reason that may pass, such as a
+     * lost connection or a timeout, to be retried. Messages the database rejects permanently go
+     * to the dead-letter store; a batch with such a message is retried one message at a time.
+     */
+    private List<PendingMessage> persist(List<PendingMessage> messages) {
+        try {
+            writeBatch(messages);
+            persistedCounter.increment(messages.size());
+            return List.of();
+        } catch (RuntimeException e) {
+            if (isTransient(e)) {
+                log.warn("Group commit of {} messages failed, will retry: {}", messages.size(), e.getMessage());
+                return messages;
+            }
+            log.warn("Group commit of {} messages failed, retrying individually: {}", messages.size(), e.getMessage());
+        }
+
+        List<PendingMessage> retry = new ArrayList<>();
+        for (PendingMessage message : messages) {
+            try {
+                writeBatch(List.of(message));
+                persistedCounter.increment();
+            } catch (RuntimeException e) {
+                if (isTransient(e) || !deadLetter(message, e)) {
+                    retry.add(message);
+                }
+            }
+        }
+        return retry;
+    }
+
+    private boolean deadLetter(PendingMessage message, RuntimeException cause) {
+        try {
+            deadLetters.add(message, cause.getMessage());
+        } catch (IOException e) {
+            log.error("Failed to dead-letter message {}, will retry: {}", message.id(), e.getMessage());
+            return false;
+        }
+        deadLetteredCounter.increment();
+        log.error("Dead-lettered message {} for session {}: {}", message.id(), message.sessionId(), cause.getMessage());
+        return true;
+    }
+
+    /**
+     * Only a rejection of the data itself is permanent; unavailability, timeouts and failures
+     * the database does not classify are retried rather than risk losing an accepted message.
+     */
+    private static boolean isTransient(RuntimeException e) {
+        if (e instanceof DataIntegrityViolationException) {
+            return false;
+        }
+        if (e instanceof NonTransientDataAccessException) {
+            return e instanceof DataAccessResourceFailureException;
+        }
+        return e instanceof DataAccessException || e instanceof TransactionException || e instanceof UncheckedIOException;
+    }
+
+    private void writeBatch(List<PendingMessage> messages) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<UUID, List<ChatMessage>> bySession = new LinkedHashMap<>();
+            Map<UUID, List<MessageResponse>> responsesBySession = new LinkedHashMap<>();
+            for (PendingMessage message : messages) {
+                bySession.computeIfAbsent(message.sessionId(), id -> new ArrayList<>()).add(message.toEntity());
+                responsesBySession.computeIfAbsent(message.sessionId(), id -> new ArrayList<>()).add(toResponse(message));
+            }
+            bySession.keySet().forEach(archiveService::rehydrateIfArchived);
+            batchWriter.insertAll(messages);
+            bySession.forEach(statsService::recordMessagesAdded);
+            responsesBySession.forEach(tailCache::append);
+            responsesBySession.forEach(messageStream::publish);
+            embeddingIndex.indexPending(messages);
+        });
+    }
+
+    private Partition partitionFor(UUID sessionId) {
+        return partitions.get(Math.floorMod(sessionId.hashCode(), partitions.size()));
+    }
+
+    private static MessageResponse toResponse(PendingMessage message) {
+        return MessageResponse.builder()
+                .id(message.id())
+                .sessionId(message.sessionId())
+                .sender(message.sender())
+                .content(message.content())
+                .context(message.context())
+                .createdAt(message.createdAt())
+                .build();
+    }
+
+    private record Entry(PendingMessage message, long journalSegment) {
+    }
+
+    private final class Partition {
+
+        private final int index;
+        private final BlockingQueue<Entry> queue = new LinkedBlockingQueue<>();
+        private Thread thread;
+        // Set while a batch keeps failing; new messages for this writer are refused meanwhile
+        private volatile boolean stalled;
+
+        private Partition(int index) {
+            this.index = index;
+        }
+
+        private void runWriter() {
+            List<Entry> batch = new ArrayList<>(maxBatchSize);
+            long backoffMs = 0;
+            while (true) {
+                try {
+                    if (backoffMs > 0) {
+                        if (!running) {
+                            queue.drainTo(batch);
+                            abandon(batch);
+                            break;
+                        }
+                        Thread.sleep(backoffMs);
+                    } else {
+                        if (!running && queue.isEmpty()) {
+                            break;
+                        }
+                        Entry first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                        if (first == null) {
+                            continue;
+                        }
+                        batch.add(first);
+                        queue.drainTo(batch, maxBatchSize - 1);
+                    }
+                } catch (InterruptedException e) {
+                    // Shutdown: one last attempt at whatever is left before exiting
+                    queue.drainTo(batch);
+                    if (!batch.isEmpty() && !flush(batch, backoffMs > 0)) {
+                        abandon(batch);
+                    }
+                    break;
+                }
+                if (flush(batch, backoffMs > 0)) {
+                    if (stalled) {
+                        log.info("Ingestion writer {} recovered", index);
+                    }
+                    stalled = false;
+                    backoffMs = 0;
+                } else {
+                    stalled = true;
+                    retriedCounter.increment(batch.size());
+                    backoffMs = backoffMs == 0 ? retryInitialBackoffMs : Math.min(2 * backoffMs, retryMaxBackoffMs);
+                    log.warn("Ingestion writer {} retrying {} messages in {} ms", index, batch.size(), backoffMs);
+                }
+            }
+        }
+
+        /**
+         * Writes the batch and releases and acknowledges the entries that are done with, leaving
+         * those to retry in the batch. Returns whether the batch is empty.
+         */
+        private boolean flush(List<Entry> batch, boolean retry) {
+            List<PendingMessage> messages = batch.stream().map(Entry::message).toList();
+            Set<UUID> failed;
+            try {
+                if (retry) {
+                    // A failed commit may have gone through before the connection was lost
+                    Set<UUID> written = batchWriter.findExistingIds(messages.stream().map(PendingMessage::id).toList());
+                    messages = messages.stream().filter(message -> !written.contains(message.id())).toList();
+                }
+                failed = new HashSet<>(persist(messages).stream().map(PendingMessage::id).toList());
+            } catch (RuntimeException e) {
+                log.warn("Ingestion writer {} cannot check for written messages: {}", index, e.getMessage());
+                return false;
+            }
+
+            List<Entry> done = batch.stream().filter(entry -> !failed.contains(entry.message().id())).toList();
+            capacity.release(done.size());
+            if (journal != null) {
+                done.forEach(entry -> journal.acknowledge(entry.journalSegment()));
+            }
+            batch.removeIf(entry -> !failed.contains(entry.message().id()));
+            return batch.isEmpty();
+        }
+
+        private void abandon(List<Entry> batch) {
+            if (journal != null) {
+                log.error("Ingestion writer {} stopped with {} unwritten messages; they stay in the journal for the next start",
+                        index, batch.size());
+            } else {
+                log.error("Ingestion writer {} stopped with {} unwritten messages, which are lost without the journal",
+                        index, batch.size());
+            }
+        }
+    }
+}
@@ -1,111 +1,686 @@
 package com.ragchat.service;
 
+import com.ragchat.dto.ContextWindowResponse;
 import com.ragchat.dto.CreateMessageRequest;
+import com.ragchat.dto.CursorPageResponse;
+import com.ragchat.dto.MessageCursor;
+import com.ragchat.dto.MessageDeltaResponse;
+import com.ragchat.dto.MessageFields;
 import com.ragchat.dto.MessageResponse;
 import com.ragchat.dto.PageResponse;
+import com.ragchat.dto.SessionETags;
+import com.ragchat.dto.SessionMessageBatch;
+import com.ragchat.dto.SessionResponse;
 import com.ragchat.entity.ChatMessage;
 import com.ragchat.entity.ChatSession;
+import com.ragchat.entity.EmbeddingVector;
+import com.ragchat.entity.id.UuidV7;
 import com.ragchat.exception.ResourceNotFoundException;
 import com.ragchat.repository.ChatMessageRepository;
+import com.ragchat.repository.ChatMessageRepository.MessageRow;
+import com.ragchat.repository.ChatMessageRepository.MessageSummary;
+import com.ragchat.repository.ChatMessageRepository.MessageTokens;
 import com.ragchat.repository.ChatSessionRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class ChatMessageService {
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 200;
+    private static final int MAX_BATCH_SIZE = 500;
+    private static final int MAX_CONTEXT_TOKENS = 10_000_000;
+    // Token counts read per query while walking back from the newest message
+    private static final int FIRST_TOKENS_PAGE = 50;
+    private static final int TOKENS_PAGE = 500;
+    private static final UUID FIRST_ID = new UUID(0L, 0L);
+    private static final UUID LAST_ID = new UUID(-1L, -1L);
+
     private final ChatMessageRepository messageRepository;
     private final ChatSessionRepository sessionRepository;
+    private final SessionStatsService statsService;
+    private final SessionArchiveService archiveService;
+    private final MessageCompressionService compressionService;
+    private final ContextStoreService contextStore;
+    private final SessionCacheService sessionCache;
+    private final MessageTailCacheService tailCache;
+    private final MessageStreamService messageStream;
+    private final MessageEmbeddingIndex embeddingIndex;
+
+    @Value("${messages.delta.settle-ms:5000}")
+    private long deltaSettleMs;
 
     @Transactional
     public MessageResponse addMessage(UUID sessionId, CreateMessageRequest request) {
         log.info("Adding message to session: {} from sender: {}", sessionId, request.getSender());
 
+        // Not the session cache: an entry may outlive a delete made on another instance
         ChatSession session = sessionRepository.findById(sessionId)
                 .orElseThrow(() -> new ResourceNotFoundException("ChatSession", "id", sessionId));
+        if (request.getEmbedding() != null) {
+            embeddingIndex.validate(sessionId, request.getEmbedding());
+        }
+        archiveService.rehydrateIfArchived(sessionId);
 
         ChatMessage message = ChatMessage.builder()
                 .session(session)
                 .sender(request.getSender())
                 .content(request.getContent())
                 .context(request.getContext())
+                .embedding(EmbeddingVector.encode(request.getEmbedding()))
                 .build();
+        contextStore.attach(message);
+        compressionService.compress(message);
 
         ChatMessage savedMessage = messageRepository.save(message);
+        statsService.recordMessageAdded(sessionId, savedMessage);
+        embeddingIndex.indexMessages(List.of(savedMessage));
         log.info("Message {} added to session {}", savedMessage.getId(), sessionId);
 
-        return MessageResponse.fromEntity(savedMessage);
+        MessageResponse response = toResponse(savedMessage);
+        appended(sessionId, List.of(response));
+        return response;
+    }
+
+    @Transactional
+    public List<MessageResponse> addMessagesBatch(List<SessionMessageBatch> batches) {
+        int total = batches.stream().mapToInt(batch -> batch.getMessages().size()).sum();
+        log.info("Adding batch of {} messages across {} sessions", total, batches.size());
+
+        if (total > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("A batch must not exceed " + MAX_BATCH_SIZE + " messages");
+        }
+
+        Set<UUID> sessionIds = batches.stream().map(SessionMessageBatch::getSessionId).collect(Collectors.toSet());
+        Map<UUID, ChatSession> sessions = sessionRepository.findByIdIn(sessionIds).stream()
+                .collect(Collectors.toMap(ChatSession::getId, Function.identity()));
+        for (UUID sessionId : sessionIds) {
+            if (!sessions.containsKey(sessionId)) {
+                throw new ResourceNotFoundException("ChatSession", "id", sessionId);
+            }
+            archiveService.rehydrateIfArchived(sessionId);
+        }
+        for (SessionMessageBatch batch : batches) {
+            batch.getMessages().stream()
+                    .filter(request -> request.getEmbedding() != null)
+                    .forEach(request -> embeddingIndex.validate(batch.getSessionId(), request.getEmbedding()));
+        }
+
+        // Consecutive timestamps preserve the request order when history is read back
+        LocalDateTime createdAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        List<ChatMessage> messages = new ArrayList<>(total);
+        Map<UUID, List<ChatMessage>> messagesBySession = new LinkedHashMap<>();
+        for (SessionMessageBatch batch : batches) {
+            ChatSession session = sessions.get(batch.getSessionId());
+            for (CreateMessageRequest request : batch.getMessages()) {
+                ChatMessage message = ChatMessage.builder()
+                        .session(session)
+                        .sender(request.getSender())
+                        .content(request.getContent())
+                        .context(request.getContext())
+                        .embedding(EmbeddingVector.encode(request.getEmbedding()))
+                        .createdAt(createdAt)
+                        .build();
+                contextStore.attach(message);
+                compressionService.compress(message);
+                createdAt = createdAt.plus(1, ChronoUnit.MICROS);
+                messages.add(message);
+                messagesBySession.computeIfAbsent(session.getId(), id -> new ArrayList<>()).add(message);
+            }
+        }
+
+        List<ChatMessage> savedMessages = messageRepository.saveAll(messages);
+        messagesBySession.forEach(statsService::recordMessagesAdded);
+        embeddingIndex.indexMessages(savedMessages);
+        log.info("Batch of {} messages added", savedMessages.size());
+
+        List<MessageResponse> responses = toResponses(savedMessages);
+        responses.stream()
+                .collect(Collectors.groupingBy(MessageResponse::getSessionId, LinkedHashMap::new, Collectors.toList()))
+                .forEach(this::appended);
+        return responses;
     }
 
     @Transactional(readOnly = true)
-    public List<MessageResponse> getMessages(UUID sessionId) {
+    public List<MessageResponse> getMessages(UUID sessionId, MessageFields fields) {
         log.debug("Fetching all messages for session: {}", sessionId);
 
-        if (!sessionRepository.existsById(sessionId)) {
+        if (!sessionCache.exists(sessionId)) {
             throw new ResourceNotFoundException("ChatSession", "id", sessionId);
         }
+        return readMessages(sessionId, fields);
+    }
 
-        return messageRepository.findBySessionIdOrderByCreatedAtAsc(sessionId)
-                .stream()
-                .map(MessageResponse::fromEntity)
-                .toList();
+    /**
+     * Returns the session's messages unless {@code notModified} accepts the current ETag of
+     * its history, in which case no message is read. The tag is read first and in the same
+     * transaction, so the messages are at least as new as the tag they are sent with.
+     */
+    @Transactional(readOnly = true)
+    public Optional<List<MessageResponse>> getMessagesIfModified(UUID sessionId, MessageFields fields,
+                                                                 Predicate<String> notModified) {
+        SessionResponse session = sessionRepository.findResponseById(sessionId)
+                .orElseThrow(() -> new ResourceNotFoundException("ChatSession", "id", sessionId));
+        if (notModified.test(SessionETags.ofHistory(session))) {
+            log.debug("Messages of session {} not modified", sessionId);
+            return Optional.empty();
+        }
+        return Optional.of(readMessages(sessionId, fields));
+    }
+
+    private List<MessageResponse> readMessages(UUID sessionId, MessageFields fields) {
+        boolean withContext = fields.includes(MessageFields.CONTEXT);
+        Optional<List<ChatMessage>> archived = archiveService.findArchivedHistory(sessionId);
+        List<MessageResponse> messages;
+        if (archived.isPresent()) {
+            messages = toResponses(archived.get(), withContext);
+        } else if (withContext) {
+            messages = fromRows(sessionId, messageRepository.findBySessionIdOrderByCreatedAtAsc(sessionId, MessageRow.class));
+        } else {
+            messages = fromSummaries(sessionId,
+                    messageRepository.findBySessionIdOrderByCreatedAtAsc(sessionId, MessageSummary.class));
+        }
+        return messages.stream().map(fields::select).toList();
     }
 
     @Transactional(readOnly = true)
-    public PageResponse<MessageResponse> getMessagesPaginated(UUID sessionId, int page, int size) {
+    public PageResponse<MessageResponse> getMessagesPaginated(UUID sessionId, int page, int size, MessageFields fields) {
         log.debug("Fetching paginated messages for session: {} (page: {}, size: {})", sessionId, page, size);
 
-        if (!sessionRepository.existsById(sessionId)) {
+        if (!sessionCache.exists(sessionId)) {
             throw new ResourceNotFoundException("ChatSession", "id", sessionId);
         }
 
         Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.ASC, "createdAt"));
-        Page<ChatMessage> messagePage = messageRepository.findBySessionId(sessionId, pageable);
+        boolean withContext = fields.includes(MessageFields.CONTEXT);
+        Optional<List<ChatMessage>> archived = archiveService.findArchivedHistory(sessionId);
+        Page<?> messagePage;
+        List<MessageResponse> content;
+        if (archived.isPresent()) {
+            Page<ChatMessage> historyPage = pageOf(archived.get(), pageable);
+            messagePage = historyPage;
+            content = toResponses(historyPage.getContent(), withContext);
+        } else if (withContext) {
+            Page<MessageRow> rowPage = messageRepository.findBySessionId(sessionId, pageable, MessageRow.class);
+            messagePage = rowPage;
+            content = fromRows(sessionId, rowPage.getContent());
+        } else {
+            Page<MessageSummary> summaryPage = messageRepository.findBySessionId(sessionId, pageable, MessageSummary.class);
+            messagePage = summaryPage;
+            content = fromSummaries(sessionId, summaryPage.getContent());
+        }
 
-        List<MessageResponse> content = messagePage.getContent().stream()
-                .map(MessageResponse::fromEntity)
-                .toList();
+        return PageResponse.from(messagePage, content.stream().map(fields::select).toList());
+    }
 
-        return PageResponse.from(messagePage, content);
+    @Transactional(readOnly = true)
+    public CursorPageResponse<MessageResponse> getMessagesByCursor(UUID sessionId, String cursor,
+                                                                   MessageCursor.Direction direction,
+                                                                   int size, boolean includeTotal,
+                                                                   MessageFields fields) {
+        log.debug("Fetching messages for session: {} by cursor (direction: {}, size: {})", sessionId, direction, size);
+
+        if (size < 1 || size > MAX_CURSOR_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_CURSOR_PAGE_SIZE);
+        }
+        if (!sessionCache.exists(sessionId)) {
+            throw new ResourceNotFoundException("ChatSession", "id", sessionId);
+        }
+
+        MessageCursor position = cursor != null && !cursor.isBlank() ? MessageCursor.decode(cursor) : null;
+        boolean forward = direction != MessageCursor.Direction.PREV;
+
+        // One extra row tells us whether another page exists without a COUNT query
+        Limit limit = Limit.of(size + 1);
+        boolean withContext = fields.includes(MessageFields.CONTEXT);
+        List<MessageResponse> rows;
+        Optional<List<ChatMessage>> archived = archiveService.findArchivedHistory(sessionId);
+        if (archived.isPresent()) {
+            rows = toResponses(sliceHistory(archived.get(), position, forward, size + 1), withContext);
+        } else if (withContext) {
+            rows = fromRows(sessionId, findRowPage(sessionId, position, forward, limit));
+        } else {
+            rows = fromSummaries(sessionId, findSummaryPage(sessionId, position, forward, limit));
+        }
+
+        boolean hasMore = rows.size() > size;
+        List<MessageResponse> page = new ArrayList<>(hasMore ? rows.subList(0, size) : rows);
+        if (!forward) {
+            Collections.reverse(page);
+        }
+
+        boolean hasNext = forward ? hasMore : position != null;
+        boolean hasPrevious = forward ? position != null : hasMore;
+
+        return CursorPageResponse.<MessageResponse>builder()
+                .content(page.stream().map(fields::select).toList())
+                .size(size)
+                .hasNext(hasNext && !page.isEmpty())
+                .hasPrevious(hasPrevious && !page.isEmpty())
+                .nextCursor(hasNext && !page.isEmpty() ? MessageCursor.of(page.get(page.size() - 1)).encode() : null)
+                .prevCursor(hasPrevious && !page.isEmpty() ? MessageCursor.of(page.get(0)).encode() : null)
+                .totalElements(includeTotal ? countMessages(sessionId) : null)
+                .build();
+    }
+
+    /**
+     * Messages appended after {@code since}, which is an opaque cursor from a previous sync,
+     * a message id or an ISO-8601 timestamp. Messages are stamped before they commit, so a
+     * slower transaction, a queued asynchronous write or another instance's clock can still
+     * add messages just before the newest one; the returned cursor therefore stays the settle
+     * window behind the present and clients de-duplicate the overlap by id.
+     */
+    @Transactional(readOnly = true)
+    public MessageDeltaResponse getMessagesSince(UUID sessionId, String since, int limit, MessageFields fields) {
+        log.debug("Fetching messages for session: {} since {}", sessionId, since);
+
+        if (limit < 1 || limit > MAX_CURSOR_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_CURSOR_PAGE_SIZE);
+        }
+        if (!sessionCache.exists(sessionId)) {
+            throw new ResourceNotFoundException("ChatSession", "id", sessionId);
+        }
+
+        Optional<List<ChatMessage>> archived = archiveService.findArchivedHistory(sessionId);
+        MessageCursor position = resolveSince(sessionId, since, archived);
+        Limit pageLimit = Limit.of(limit + 1);
+        boolean withContext = fields.includes(MessageFields.CONTEXT);
+        List<MessageResponse> rows;
+        if (archived.isPresent()) {
+            rows = toResponses(sliceHistory(archived.get(), position, true, limit + 1), withContext);
+        } else if (withContext) {
+            rows = fromRows(sessionId, findRowPage(sessionId, position, true, pageLimit));
+        } else {
+            rows = fromSummaries(sessionId, findSummaryPage(sessionId, position, true, pageLimit));
+        }
+
+        boolean hasMore = rows.size() > limit;
+        List<MessageResponse> delta = hasMore ? rows.subList(0, limit) : rows;
+        MessageCursor last = delta.isEmpty() ? position : MessageCursor.of(delta.get(delta.size() - 1));
+        // Pages that are fetched right away may go further; the last one falls back to the settled position
+        MessageCursor next = hasMore ? last : earliest(last, new MessageCursor(
+                LocalDateTime.now().truncatedTo(ChronoUnit.MICROS).minus(deltaSettleMs, ChronoUnit.MILLIS), FIRST_ID));
+
+        return MessageDeltaResponse.builder()
+                .content(delta.stream().map(fields::select).toList())
+                .nextCursor(next.encode())
+                .hasMore(hasMore)
+                .build();
+    }
+
+    /**
+     * Opens a live stream of the session's new messages. A reconnecting client passes the id
+     * of the last event it received, and the messages it missed are replayed first through
+     * the delta query; a message can then arrive twice and is de-duplicated by id.
+     */
+    @Transactional(readOnly = true)
+    public SseEmitter streamMessages(UUID sessionId, String lastEventId) {
+        log.debug("Opening message stream for session: {}", sessionId);
+
+        if (!sessionCache.exists(sessionId)) {
+            throw new ResourceNotFoundException("ChatSession", "id", sessionId);
+        }
+
+        // Subscribed before the replay, so that nothing committed in between is lost
+        MessageStreamService.Subscription subscription = messageStream.subscribe(sessionId);
+        try {
+            if (lastEventId != null && !lastEventId.isBlank()) {
+                MessageDeltaResponse delta;
+                String since = lastEventId;
+                do {
+                    delta = getMessagesSince(sessionId, since, MAX_CURSOR_PAGE_SIZE, MessageFields.ALL);
+                    subscription.replay(delta.getContent());
+                    since = delta.getNextCursor();
+                } while (delta.isHasMore());
+            }
+        } catch (IOException e) {
+            subscription.cancel();
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            subscription.cancel();
+            throw e;
+        }
+        subscription.start();
+        return subscription.emitter();
+    }
+
+    /**
+     * The newest messages of the session whose token counts add up to at most {@code maxTokens},
+     * oldest first. With {@code keepFirstSystem}, a system message that opens the session is
+     * counted first and always returned. Only token counts are read while walking back from the
+     * newest message; the messages that fit are then read in one query.
+     */
+    @Transactional(readOnly = true)
+    public ContextWindowResponse getContextWindow(UUID sessionId, int maxTokens, boolean keepFirstSystem,
+                                                  MessageFields fields) {
+        log.debug("Fetching context window of {} tokens for session: {}", maxTokens, sessionId);
+
+        if (maxTokens < 1 || maxTokens > MAX_CONTEXT_TOKENS) {
+            throw new IllegalArgumentException("maxTokens must be between 1 and " + MAX_CONTEXT_TOKENS);
+        }
+        if (!sessionCache.exists(sessionId)) {
+            throw new ResourceNotFoundException("ChatSession", "id", sessionId);
+        }
+
+        boolean withContext = fields.includes(MessageFields.CONTEXT);
+        Optional<List<ChatMessage>> archived = archiveService.findArchivedHistory(sessionId);
+        List<MessageTokens> oldest;
+        if (archived.isPresent()) {
+            oldest = archived.get().stream().limit(1).map(ChatMessageService::tokensOf).toList();
+        } else {
+            oldest = keepFirstSystem ? messageRepository.findOldestTokens(sessionId, Limit.of(1)) : List.of();
+        }
+        MessageTokens system = keepFirstSystem && !oldest.isEmpty()
+                && oldest.get(0).sender() == ChatMessage.SenderType.SYSTEM ? oldest.get(0) : null;
+        int budget = maxTokens - (system != null ? system.tokens() : 0);
+        if (budget < 0) {
+            throw new IllegalArgumentException("maxTokens is smaller than the session's system message (" +
+                    system.tokens() + " tokens)");
+        }
+
+        List<MessageResponse> messages = new ArrayList<>();
+        Window window;
+        if (archived.isPresent()) {
+            List<ChatMessage> history = archived.get();
+            List<MessageTokens> newestFirst = new ArrayList<>(history.stream().map(ChatMessageService::tokensOf).toList());
+            Collections.reverse(newestFirst);
+            window = fit(last -> last == null ? newestFirst : List.of(), budget, system);
+            if (system != null) {
+                messages.addAll(toResponses(history.subList(0, 1), withContext));
+            }
+            messages.addAll(toResponses(history.subList(history.size() - window.selected(), history.size()), withContext));
+        } else {
+            window = fit(last -> last == null
+                    ? messageRepository.findNewestTokens(sessionId, Limit.of(FIRST_TOKENS_PAGE))
+                    : messageRepository.findTokensBefore(sessionId, last.createdAt(), last.id(), Limit.of(TOKENS_PAGE)),
+                    budget, system);
+            if (system != null) {
+                messages.addAll(withContext
+                        ? fromRows(sessionId, messageRepository.findBySessionIdOrderByCreatedAtAscIdAsc(
+                                sessionId, Limit.of(1), MessageRow.class))
+                        : fromSummaries(sessionId, messageRepository.findBySessionIdOrderByCreatedAtAscIdAsc(
+                                sessionId, Limit.of(1), MessageSummary.class)));
+            }
+            if (window.selected() > 0) {
+                // The messages after the first one left out, capped so that newer arrivals are not picked up
+                MessageCursor from = window.boundary() != null
+                        ? new MessageCursor(window.boundary().createdAt(), window.boundary().id())
+                        : null;
+                Limit limit = Limit.of(window.selected());
+                messages.addAll(withContext
+                        ? fromRows(sessionId, findRowPage(sessionId, from, true, limit))
+                        : fromSummaries(sessionId, findSummaryPage(sessionId, from, true, limit)));
+            }
+        }
+
+        return ContextWindowResponse.builder()
+                .content(messages.stream().map(fields::select).toList())
+                .totalTokens(window.tokens() + (system != null ? system.tokens() : 0))
+                .truncated(window.truncated())
+                .build();
+    }
+
+    // Not transactional: a cached tail is served without a database connection
+    public List<MessageResponse> getRecentMessages(UUID sessionId, int limit, MessageFields fields) {
+        log.debug("Fetching last {} messages for session: {}", limit, sessionId);
+
+        if (limit < 1 || limit > MAX_CURSOR_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_CURSOR_PAGE_SIZE);
+        }
+        if (!sessionCache.exists(sessionId)) {
+            throw new ResourceNotFoundException("ChatSession", "id", sessionId);
+        }
+
+        return tailCache.getTail(sessionId, limit, count -> loadTail(sessionId, count)).stream()
+                .map(fields::select)
+                .toList();
     }
 
     @Transactional(readOnly = true)
     public MessageResponse getMessage(UUID messageId) {
         log.debug("Fetching message with ID: {}", messageId);
 
-        ChatMessage message = messageRepository.findById(messageId)
+        ChatMessage message = messageRepository.findActiveById(messageId)
+                .or(() -> archiveService.findArchivedMessage(messageId))
                 .orElseThrow(() -> new ResourceNotFoundException("ChatMessage", "id", messageId));
 
-        return MessageResponse.fromEntity(message);
+        return toResponse(message);
     }
 
     @Transactional
     public void deleteMessage(UUID messageId) {
         log.info("Deleting message with ID: {}", messageId);
 
-        ChatMessage message = messageRepository.findById(messageId)
-                .orElseThrow(() -> new ResourceNotFoundException("ChatMessage", "id", messageId));
+        Optional<ChatMessage> found = messageRepository.findActiveById(messageId);
+        if (found.isEmpty()) {
+            // The message's session goes back to the hot table, where it is deleted like any other
+            found = archiveService.findArchivedMessage(messageId).flatMap(archived -> {
+                archiveService.rehydrateIfArchived(archived.getSession().getId());
+                return messageRepository.findActiveById(messageId);
+            });
+        }
+        ChatMessage message = found.orElseThrow(() -> new ResourceNotFoundException("ChatMessage", "id", messageId));
 
+        UUID sessionId = message.getSession().getId();
         messageRepository.delete(message);
+        if (message.getContextHash() != null) {
+            contextStore.release(List.of(message.getContextHash()));
+        }
+        statsService.recordMessageRemoved(sessionId, message);
+        tailCache.evict(sessionId);
+        if (message.getEmbedding() != null) {
+            embeddingIndex.remove(sessionId, messageId);
+        }
         log.info("Message {} deleted successfully", messageId);
     }
 
     @Transactional(readOnly = true)
     public long getMessageCount(UUID sessionId) {
-        if (!sessionRepository.existsById(sessionId)) {
+        if (!sessionCache.exists(sessionId)) {
             throw new ResourceNotFoundException("ChatSession", "id", sessionId);
         }
-        return messageRepository.countBySessionId(sessionId);
+        return messageRepository.countBySessionId(sessionId) + archiveService.getArchivedMessageCount(sessionId);
+    }
+
+    private long countMessages(UUID sessionId) {
+        return statsService.getMessageCount(sessionId)
+                .orElseGet(() -> messageRepository.countBySessionId(sessionId));
+    }
+
+    private MessageResponse toResponse(ChatMessage message) {
+        return MessageResponse.fromEntity(message, contextStore.resolve(message));
+    }
+
+    private List<MessageResponse> toResponses(List<ChatMessage> messages) {
+        return toResponses(messages, true);
+    }
+
+    private List<MessageResponse> toResponses(List<ChatMessage> messages, boolean withContext) {
+        if (!withContext) {
+            return messages.stream().map(message -> MessageResponse.fromEntity(message, null)).toList();
+        }
+        contextStore.prefetch(messages);
+        return messages.stream().map(this::toResponse).toList();
+    }
+
+    private List<MessageResponse> fromRows(UUID sessionId, List<MessageRow> rows) {
+        contextStore.prefetchHashes(rows.stream().map(MessageRow::contextHash).toList());
+        return rows.stream()
+                .map(row -> MessageResponse.fromRow(sessionId, row,
+                        row.contextHash() != null ? contextStore.resolve(row.contextHash()) : row.inlineContext()))
+                .toList();
+    }
+
+    private static List<MessageResponse> fromSummaries(UUID sessionId, List<MessageSummary> summaries) {
+        return summaries.stream().map(summary -> MessageResponse.fromSummary(sessionId, summary)).toList();
+    }
+
+    private List<MessageRow> findRowPage(UUID sessionId, MessageCursor position, boolean forward, Limit limit) {
+        if (position == null) {
+            return forward
+                    ? messageRepository.findBySessionIdOrderByCreatedAtAscIdAsc(sessionId, limit, MessageRow.class)
+                    : messageRepository.findBySessionIdOrderByCreatedAtDescIdDesc(sessionId, limit, MessageRow.class);
+        }
+        return forward
+                ? messageRepository.findRowPageAfter(sessionId, position.createdAt(), position.id(), limit)
+                : messageRepository.findRowPageBefore(sessionId, position.createdAt(), position.id(), limit);
+    }
+
+    private List<MessageSummary> findSummaryPage(UUID sessionId, MessageCursor position, boolean forward, Limit limit) {
+        if (position == null) {
+            return forward
+                    ? messageRepository.findBySessionIdOrderByCreatedAtAscIdAsc(sessionId, limit, MessageSummary.class)
+                    : messageRepository.findBySessionIdOrderByCreatedAtDescIdDesc(sessionId, limit, MessageSummary.class);
+        }
+        return forward
+                ? messageRepository.findSummaryPageAfter(sessionId, position.createdAt(), position.id(), limit)
+                : messageRepository.findSummaryPageBefore(sessionId, position.createdAt(), position.id(), limit);
+    }
+
+    private List<MessageResponse> loadTail(UUID sessionId, int limit) {
+        Optional<List<ChatMessage>> archived = archiveService.findArchivedHistory(sessionId);
+        if (archived.isPresent()) {
+            List<ChatMessage> history = archived.get();
+            return toResponses(history.subList(Math.max(0, history.size() - limit), history.size()));
+        }
+        List<MessageRow> rows = new ArrayList<>(
+                messageRepository.findBySessionIdOrderByCreatedAtDescIdDesc(sessionId, Limit.of(limit), MessageRow.class));
+        Collections.reverse(rows);
+        return fromRows(sessionId, rows);
+    }
+
+    /** How many of the newest messages fit, their tokens and the first message left out, if any. */
+    private record Window(int selected, int tokens, MessageTokens boundary, boolean truncated) {
+    }
+
+    /**
+     * Takes messages newest first while they fit the budget, stopping at the kept system
+     * message. {@code olderThan} returns the page of messages before the given one, or the
+     * newest page for {@code null}.
+     */
+    private static Window fit(Function<MessageTokens, List<MessageTokens>> olderThan, int budget, MessageTokens system) {
+        int selected = 0;
+        int tokens = 0;
+        MessageTokens last = null;
+        List<MessageTokens> page;
+        while (!(page = olderThan.apply(last)).isEmpty()) {
+            for (MessageTokens message : page) {
+                if (system != null && message.id().equals(system.id())) {
+                    return new Window(selected, tokens, message, false);
+                }
+                if (tokens + message.tokens() > budget) {
+                    return new Window(selected, tokens, message, true);
+                }
+                tokens += message.tokens();
+                selected++;
+            }
+            last = page.get(page.size() - 1);
+        }
+        return new Window(selected, tokens, null, false);
+    }
+
+    private static MessageTokens tokensOf(ChatMessage message) {
+        return new MessageTokens(message.getId(), message.getSender(), message.tokens(), null, message.getCreatedAt());
+    }
+
+    private static Page<ChatMessage> pageOf(List<ChatMessage> history, Pageable pageable) {
+        int from = (int) Math.min(pageable.getOffset(), history.size());
+        int to = Math.min(from + pageable.getPageSize(), history.size());
+        return new PageImpl<>(history.subList(from, to), pageable, history.size());
+    }
+
+    // Committed messages extend the cached tail and reach live subscribers
+    private void appended(UUID sessionId, List<MessageResponse> responses) {
+        tailCache.append(sessionId, responses);
+        messageStream.publish(sessionId, responses);
+    }
+
+    private MessageCursor resolveSince(UUID sessionId, String since, Optional<List<ChatMessage>> archived) {
+        if (since.length() == 36 && since.charAt(8) == '-') {
+            UUID id = UUID.fromString(since);
+            Optional<LocalDateTime> createdAt = archived.isPresent()
+                    ? archived.get().stream().filter(message -> id.equals(message.getId()))
+                            .map(ChatMessage::getCreatedAt).findFirst()
+                    : messageRepository.findCreatedAt(sessionId, id);
+            return new MessageCursor(
+                    createdAt.orElseThrow(() -> new ResourceNotFoundException("ChatMessage", "id", id)), id);
+        }
+        if (since.indexOf(':') >= 0) {
+            // Strictly after the instant, whatever the ids of messages stamped with it
+            return new MessageCursor(parseTimestamp(since), LAST_ID);
+        }
+        return MessageCursor.decode(since);
+    }
+
+    private static LocalDateTime parseTimestamp(String timestamp) {
+        try {
+            return OffsetDateTime.parse(timestamp)
+                    .atZoneSameInstant(ZoneId.systemDefault())
+                    .toLocalDateTime();
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDateTime.parse(timestamp);
+            } catch (DateTimeParseException invalid) {
+                throw new IllegalArgumentException("Invalid timestamp: " + timestamp);
+            }
+        }
+    }
+
+    private static MessageCursor earliest(MessageCursor a, MessageCursor b) {
+        int order = a.createdAt().compareTo(b.createdAt());
+        if (order == 0) {
+            order = UuidV7.compareUnsigned(a.id(), b.id());
+        }
+        return order <= 0 ? a : b;
+    }
+
+    private static List<ChatMessage> sliceHistory(List<ChatMessage> history, MessageCursor position,
+                                                  boolean forward, int limit) {
+        // Same rows, in the same order, as findRowPage / findSummaryPage would return
+        ChatMessage boundary = position != null
+                ? ChatMessage.builder().createdAt(position.createdAt()).id(position.id()).build()
+                : null;
+        List<ChatMessage> ordered = history;
+        if (!forward) {
+            ordered = new ArrayList<>(history);
+            Collections.reverse(ordered);
+        }
+        return ordered.stream()
+                .filter(message -> boundary == null || (forward
+                        ? SessionArchiveService.HISTORY_ORDER.compare(message, boundary) > 0
+                        : SessionArchiveService.HISTORY_ORDER.compare(message, boundary) < 0))
+                .limit(limit)
+                .toList();
     }
 }
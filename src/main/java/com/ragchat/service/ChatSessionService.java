@@ -3,7 +3,6 @@ package com.ragchat.service;
 import com.ragchat.dto.*;
 import com.ragchat.entity.ChatSession;
 import com.ragchat.exception.ResourceNotFoundException;
-import com.ragchat.repository.ChatMessageRepository;
 import com.ragchat.repository.ChatSessionRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -14,6 +13,7 @@ import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -23,7 +23,7 @@ import java.util.UUID;
 public class ChatSessionService {
 
     private final ChatSessionRepository sessionRepository;
-    private final ChatMessageRepository messageRepository;
+    private final SessionCacheService sessionCache;
 
     @Transactional
     public SessionResponse createSession(CreateSessionRequest request) {
@@ -34,34 +34,28 @@ public class ChatSessionService {
                 .title(request.getTitle())
                 .isFavorite(false)
                 .build();
+        session.initStats();
 
         ChatSession savedSession = sessionRepository.save(session);
+        sessionCache.evictSessionLists(savedSession.getUserId());
         log.info("Created chat session with ID: {}", savedSession.getId());
 
-        return SessionResponse.fromEntityWithCount(savedSession, 0);
+        return SessionResponse.fromEntity(savedSession);
     }
 
     @Transactional(readOnly = true)
     public SessionResponse getSession(UUID sessionId) {
         log.debug("Fetching session with ID: {}", sessionId);
 
-        ChatSession session = findSessionById(sessionId);
-        int messageCount = (int) messageRepository.countBySessionId(sessionId);
-
-        return SessionResponse.fromEntityWithCount(session, messageCount);
+        return sessionCache.findSession(sessionId)
+                .orElseThrow(() -> new ResourceNotFoundException("ChatSession", "id", sessionId));
     }
 
     @Transactional(readOnly = true)
     public List<SessionResponse> getSessionsByUser(String userId) {
         log.debug("Fetching sessions for user: {}", userId);
 
-        return sessionRepository.findByUserIdOrderByUpdatedAtDesc(userId)
-                .stream()
-                .map(session -> {
-                    int messageCount = (int) messageRepository.countBySessionId(session.getId());
-                    return SessionResponse.fromEntityWithCount(session, messageCount);
-                })
-                .toList();
+        return sessionCache.findUserSessions(userId);
     }
 
     @Transactional(readOnly = true)
@@ -69,29 +63,16 @@ public class ChatSessionService {
         log.debug("Fetching paginated sessions for user: {} (page: {}, size: {})", userId, page, size);
 
         Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "updatedAt"));
-        Page<ChatSession> sessionPage = sessionRepository.findByUserId(userId, pageable);
-
-        List<SessionResponse> content = sessionPage.getContent().stream()
-                .map(session -> {
-                    int messageCount = (int) messageRepository.countBySessionId(session.getId());
-                    return SessionResponse.fromEntityWithCount(session, messageCount);
-                })
-                .toList();
+        Page<SessionResponse> sessionPage = sessionRepository.findResponsesByUserId(userId, pageable);
 
-        return PageResponse.from(sessionPage, content);
+        return PageResponse.from(sessionPage, sessionPage.getContent());
     }
 
     @Transactional(readOnly = true)
     public List<SessionResponse> getFavoriteSessions(String userId) {
         log.debug("Fetching favorite sessions for user: {}", userId);
 
-        return sessionRepository.findByUserIdAndIsFavoriteTrue(userId)
-                .stream()
-                .map(session -> {
-                    int messageCount = (int) messageRepository.countBySessionId(session.getId());
-                    return SessionResponse.fromEntityWithCount(session, messageCount);
-                })
-                .toList();
+        return sessionCache.findFavoriteSessions(userId);
     }
 
     @Transactional
@@ -111,10 +92,10 @@ public class ChatSessionService {
         }
 
         ChatSession updatedSession = sessionRepository.save(session);
-        int messageCount = (int) messageRepository.countBySessionId(sessionId);
+        sessionCache.evictSession(sessionId, session.getUserId());
 
         log.info("Session {} updated successfully", sessionId);
-        return SessionResponse.fromEntityWithCount(updatedSession, messageCount);
+        return SessionResponse.fromEntity(updatedSession);
     }
 
     @Transactional
@@ -129,10 +110,10 @@ public class ChatSessionService {
         session.setTitle(newTitle);
 
         ChatSession updatedSession = sessionRepository.save(session);
-        int messageCount = (int) messageRepository.countBySessionId(sessionId);
+        sessionCache.evictSession(sessionId, session.getUserId());
 
         log.info("Session {} renamed successfully", sessionId);
-        return SessionResponse.fromEntityWithCount(updatedSession, messageCount);
+        return SessionResponse.fromEntity(updatedSession);
     }
 
     @Transactional
@@ -143,20 +124,48 @@ public class ChatSessionService {
         session.setIsFavorite(!session.getIsFavorite());
 
         ChatSession updatedSession = sessionRepository.save(session);
-        int messageCount = (int) messageRepository.countBySessionId(sessionId);
+        sessionCache.evictSession(sessionId, session.getUserId());
 
         log.info("Session {} favorite status toggled to: {}", sessionId, updatedSession.getIsFavorite());
-        return SessionResponse.fromEntityWithCount(updatedSession, messageCount);
+        return SessionResponse.fromEntity(updatedSession);
     }
 
     @Transactional
     public void deleteSession(UUID sessionId) {
         log.info("Deleting session with ID: {}", sessionId);
 
-        ChatSession session = findSessionById(sessionId);
-        sessionRepository.delete(session);
+        sessionCache.evictSession(sessionId);
+        // Messages are removed by SessionPurgeService in chunks; the session is hidden immediately
+        int deleted = sessionRepository.markDeleted(sessionId, LocalDateTime.now());
+        if (deleted == 0) {
+            throw new ResourceNotFoundException("ChatSession", "id", sessionId);
+        }
+
+        log.info("Session {} marked as deleted, messages will be purged in the background", sessionId);
+    }
+
+    @Transactional
+    public int deleteSessionsByUser(String userId, LocalDateTime olderThan) {
+        log.info("Deleting sessions for user: {} (older than: {})", userId, olderThan);
+
+        int deleted = olderThan != null
+                ? sessionRepository.markDeletedByUserIdAndUpdatedAtBefore(userId, olderThan, LocalDateTime.now())
+                : sessionRepository.markDeletedByUserId(userId, LocalDateTime.now());
+        sessionCache.evictUser(userId);
+
+        log.info("{} sessions for user {} marked as deleted", deleted, userId);
+        return deleted;
+    }
+
+    @Transactional
+    public int deleteSessionsOlderThan(LocalDateTime olderThan) {
+        log.info("Deleting sessions not updated since: {}", olderThan);
+
+        int deleted = sessionRepository.markDeletedByUpdatedAtBefore(olderThan, LocalDateTime.now());
+        sessionCache.evictAll();
 
-        log.info("Session {} and associated messages deleted successfully", sessionId);
+        log.info("{} sessions marked as deleted", deleted);
+        return deleted;
     }
 
     private ChatSession findSessionById(UUID sessionId) {
@@ -0,0 +1,221 @@
+package com.ragchat.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ragchat.entity.ChatMessage;
+import com.ragchat.entity.CompressedText;
+import com.ragchat.repository.ChatContextRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Content-addressed storage for RAG contexts. Each distinct context is stored once in
+ * {@code chat_contexts} under its SHA-256 and reference-counted by the messages that
+ * point at it; rows that drop to zero references are removed by a background sweep.
+ * Resolved contexts are shared through one in-memory cache bounded by size.
+ */
+@Slf4j
+@Service
+public class ContextStoreService {
+
+    private static final String INSERT_SQL = "INSERT INTO chat_contexts " +
+            "(hash, content, content_zstd, byte_length, ref_count, created_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+    // Concurrent first references of the same context must not fail either transaction
+    private static final String POSTGRES_UPSERT_CLAUSE =
+            " ON CONFLICT (hash) DO UPDATE SET ref_count = chat_contexts.ref_count + EXCLUDED.ref_count";
+
+    private final ChatContextRepository contextRepository;
+    private final MessageCompressionService compressionService;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${messages.context-dedup.enabled:false}")
+    private boolean enabled;
+
+    @Value("${messages.context-dedup.min-bytes:512}")
+    private int minBytes;
+
+    @Value("${messages.context-dedup.cache-max-bytes:67108864}")
+    private long cacheMaxBytes;
+
+    @Value("${messages.context-dedup.sweep-batch-size:1000}")
+    private int sweepBatchSize;
+
+    private Cache<String, String> cache;
+    private String insertSql = INSERT_SQL;
+
+    public ContextStoreService(ChatContextRepository contextRepository,
+                               MessageCompressionService compressionService,
+                               JdbcTemplate jdbcTemplate,
+                               MeterRegistry meterRegistry) {
+        this.contextRepository = contextRepository;
+        this.compressionService = compressionService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(cacheMaxBytes)
+                // Approximate heap footprint of a String (two bytes per char)
+                .<String, String>weigher((hash, context) -> 2 * (hash.length() + context.length()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "contexts");
+        if (isPostgreSql()) {
+            insertSql = INSERT_SQL + POSTGRES_UPSERT_CLAUSE;
+        }
+    }
+
+    /**
+     * Moves the message's context into the store when deduplication is enabled and the
+     * context is large enough to be worth a reference.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void attach(ChatMessage message) {
+        String hash = referenceAll(List.of(Objects.requireNonNullElse(message.getContext(), ""))).get(0);
+        if (hash != null) {
+            message.setContext(null);
+            message.setContextHash(hash);
+        }
+    }
+
+    /**
+     * Adds one reference per eligible context and returns the hashes in input order;
+     * {@code null} marks a context that stays inline on the message.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<String> referenceAll(List<String> contexts) {
+        List<String> hashes = new ArrayList<>(contexts.size());
+        // Sorted so concurrent transactions lock context rows in the same order
+        Map<String, String> distinct = new TreeMap<>();
+        Map<String, Long> references = new HashMap<>();
+        for (String context : contexts) {
+            String hash = isEligible(context) ? hash(context) : null;
+            hashes.add(hash);
+            if (hash != null) {
+                distinct.putIfAbsent(hash, context);
+                references.merge(hash, 1L, Long::sum);
+            }
+        }
+
+        distinct.forEach((hash, context) -> {
+            long count = references.get(hash);
+            if (contextRepository.adjustReferences(hash, count) == 0) {
+                insert(hash, context, count);
+            }
+            cache.put(hash, context);
+        });
+        return hashes;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void release(Collection<String> hashes) {
+        Map<String, Long> references = new TreeMap<>();
+        for (String hash : hashes) {
+            if (hash != null) {
+                references.merge(hash, 1L, Long::sum);
+            }
+        }
+        references.forEach((hash, count) -> contextRepository.adjustReferences(hash, -count));
+    }
+
+    public String resolve(ChatMessage message) {
+        String hash = message.getContextHash();
+        return hash != null ? resolve(hash) : message.getContext();
+    }
+
+    public String resolve(String hash) {
+        return cache.get(hash, key -> load(List.of(key)).get(key));
+    }
+
+    /**
+     * Loads every referenced context of the given messages that is not cached yet with
+     * a single query, so that resolving them one by one afterwards hits the cache.
+     */
+    public void prefetch(Collection<ChatMessage> messages) {
+        prefetchHashes(messages.stream().map(ChatMessage::getContextHash).toList());
+    }
+
+    public void prefetchHashes(Collection<String> contextHashes) {
+        List<String> hashes = contextHashes.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        if (!hashes.isEmpty()) {
+            cache.getAll(hashes, this::load);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${messages.context-dedup.sweep-interval-ms:300000}",
+            initialDelayString = "${messages.context-dedup.sweep-interval-ms:300000}")
+    @Transactional
+    public void sweepUnreferenced() {
+        int deleted = contextRepository.deleteUnreferenced(sweepBatchSize);
+        if (deleted > 0) {
+            log.info("Removed {} unreferenced contexts", deleted);
+        }
+    }
+
+    static String hash(String context) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(context.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private boolean isEligible(String context) {
+        return enabled && context != null && context.getBytes(StandardCharsets.UTF_8).length >= minBytes;
+    }
+
+    private void insert(String hash, String context, long references) {
+        byte[] compressed = compressionService.compressContext(context);
+        jdbcTemplate.update(insertSql, hash, compressed == null ? context : null, compressed,
+                context.getBytes(StandardCharsets.UTF_8).length, references, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    private Map<String, String> load(Iterable<? extends String> hashes) {
+        List<String> keys = new ArrayList<>();
+        hashes.forEach(keys::add);
+        Map<String, String> contexts = new HashMap<>();
+        for (ChatContextRepository.StoredContext stored : contextRepository.findByHashIn(keys)) {
+            contexts.put(stored.getHash(), stored.getContent() != null
+                    ? stored.getContent()
+                    : CompressedText.decompress(stored.getCompressedContent()));
+        }
+        return contexts;
+    }
+
+    private boolean isPostgreSql() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        return "PostgreSQL".equalsIgnoreCase(product);
+    }
+}
@@ -0,0 +1,479 @@
+package com.ragchat.service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Hierarchical navigable small world graph (Malkov and Yashunin) over the embeddings of
+ * one user, searched by cosine similarity. Vectors are normalized on insert and kept as
+ * float32 in direct memory, so the heap only holds ids and links; each comparison bulk-copies
+ * the stored vector into a scratch array first, as per-element buffer reads cost several times
+ * the arithmetic. A removed node is tombstoned: it keeps routing searches but is no longer
+ * returned.
+ * <p>
+ * Not thread-safe; {@link MessageEmbeddingIndex} guards each graph with a read-write lock.
+ */
+public final class HnswGraph {
+
+    public record Neighbor(UUID messageId, UUID sessionId, float score) {
+    }
+
+    private record Candidate(int node, float score) {
+    }
+
+    private static final Comparator<Candidate> BEST_FIRST = Comparator.comparingDouble(Candidate::score).reversed();
+    private static final Comparator<Candidate> WORST_FIRST = Comparator.comparingDouble(Candidate::score);
+    // Most users have a handful of embeddings; at 1536 dimensions each slot is 6 KB
+    private static final int INITIAL_CAPACITY = 1;
+
+    private final int dimensions;
+    private final int maxLinks;
+    private final int maxLinks0;
+    private final int efConstruction;
+    private final double levelFactor;
+    private final Random random;
+
+    private FloatBuffer vectors;
+    private int capacity;
+    private int size;
+    private long[] idHigh;
+    private long[] idLow;
+    private int[] sessionOf;
+    // links[node][level] holds the neighbour count followed by the neighbours
+    private int[][][] links;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    private final BitSet removed = new BitSet();
+    private int removedCount;
+    private final Map<UUID, Integer> nodesByMessage = new HashMap<>();
+    private final List<UUID> sessions = new ArrayList<>();
+    private final Map<UUID, Integer> sessionOrdinals = new HashMap<>();
+    private final List<NodeList> sessionNodes = new ArrayList<>();
+
+    public HnswGraph(int dimensions, int maxLinks, int efConstruction, long seed) {
+        this.dimensions = dimensions;
+        this.maxLinks = maxLinks;
+        this.maxLinks0 = maxLinks * 2;
+        this.efConstruction = Math.max(efConstruction, maxLinks);
+        this.levelFactor = 1 / Math.log(maxLinks);
+        this.random = new Random(seed);
+        allocate(INITIAL_CAPACITY);
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    /** Number of vectors that can still be returned. */
+    public int liveCount() {
+        return size - removedCount;
+    }
+
+    public int removedCount() {
+        return removedCount;
+    }
+
+    public long offHeapBytes() {
+        return (long) capacity * dimensions * Float.BYTES;
+    }
+
+    /** Adds a vector unless the message is already indexed. */
+    public boolean add(UUID messageId, UUID sessionId, float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions, got " + vector.length);
+        }
+        if (nodesByMessage.containsKey(messageId)) {
+            return false;
+        }
+        if (size == capacity) {
+            allocate(capacity * 2);
+        }
+        float[] query = normalize(vector);
+        float[] buffer = new float[dimensions];
+        float[] base = new float[dimensions];
+        int node = size++;
+        vectors.put(node * dimensions, query);
+        idHigh[node] = messageId.getMostSignificantBits();
+        idLow[node] = messageId.getLeastSignificantBits();
+        int session = sessionOrdinals.computeIfAbsent(sessionId, id -> {
+            sessions.add(id);
+            sessionNodes.add(new NodeList());
+            return sessions.size() - 1;
+        });
+        sessionOf[node] = session;
+        sessionNodes.get(session).add(node);
+        nodesByMessage.put(messageId, node);
+
+        int level = randomLevel();
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[(l == 0 ? maxLinks0 : maxLinks) + 1];
+        }
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return true;
+        }
+
+        int entry = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            entry = greedyClosest(query, entry, l, buffer);
+        }
+        List<Candidate> entries = List.of(new Candidate(entry, similarity(query, entry, buffer)));
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Candidate> found = sorted(searchLayer(query, entries, efConstruction, l, buffer));
+            int limit = l == 0 ? maxLinks0 : maxLinks;
+            for (Candidate neighbor : selectNeighbors(found, limit, base, buffer)) {
+                append(node, l, neighbor.node());
+                link(neighbor.node(), l, node, query, base, buffer);
+            }
+            entries = found;
+        }
+        if (level > maxLevel) {
+            entryPoint = node;
+            maxLevel = level;
+        }
+        return true;
+    }
+
+    public boolean remove(UUID messageId) {
+        Integer node = nodesByMessage.remove(messageId);
+        if (node == null) {
+            return false;
+        }
+        removed.set(node);
+        removedCount++;
+        return true;
+    }
+
+    public int removeSession(UUID sessionId) {
+        Integer session = sessionOrdinals.get(sessionId);
+        if (session == null) {
+            return 0;
+        }
+        int count = 0;
+        NodeList nodes = sessionNodes.get(session);
+        for (int i = 0; i < nodes.size; i++) {
+            int node = nodes.items[i];
+            if (!removed.get(node) && remove(messageIdOf(node))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The k live vectors most similar to {@code vector}, best first, optionally only from one
+     * session. Scopes of at most {@code exactThreshold} vectors are scanned exhaustively.
+     */
+    public List<Neighbor> search(float[] vector, int k, UUID sessionId, int efSearch, int exactThreshold) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions, got " + vector.length);
+        }
+        float[] query = normalize(vector);
+        float[] buffer = new float[dimensions];
+        int session = -1;
+        if (sessionId != null) {
+            Integer ordinal = sessionOrdinals.get(sessionId);
+            if (ordinal == null) {
+                return List.of();
+            }
+            session = ordinal;
+            NodeList nodes = sessionNodes.get(session);
+            if (nodes.size <= exactThreshold) {
+                return exact(query, k, nodes.items, nodes.size, session, buffer);
+            }
+        }
+        if (liveCount() <= exactThreshold) {
+            return exact(query, k, null, size, session, buffer);
+        }
+
+        int entry = entryPoint;
+        for (int l = maxLevel; l > 0; l--) {
+            entry = greedyClosest(query, entry, l, buffer);
+        }
+        List<Candidate> entries = List.of(new Candidate(entry, similarity(query, entry, buffer)));
+        // Tombstones and the session filter thin out the beam; widen it until k results qualify
+        for (int ef = Math.max(efSearch, k); ; ef *= 4) {
+            if (ef >= liveCount()) {
+                return exact(query, k, null, size, session, buffer);
+            }
+            List<Neighbor> result = new ArrayList<>(k);
+            for (Candidate candidate : sorted(searchLayer(query, entries, ef, 0, buffer))) {
+                if (accepts(candidate.node(), session)) {
+                    result.add(toNeighbor(candidate));
+                    if (result.size() == k) {
+                        return result;
+                    }
+                }
+            }
+            if (result.size() == k) {
+                return result;
+            }
+        }
+    }
+
+    /** A new graph with the live vectors only, for when tombstones dominate. */
+    public HnswGraph compact(long seed) {
+        HnswGraph compacted = new HnswGraph(dimensions, maxLinks, efConstruction, seed);
+        float[] vector = new float[dimensions];
+        for (int node = 0; node < size; node++) {
+            if (!removed.get(node)) {
+                vectors.get(node * dimensions, vector);
+                compacted.add(messageIdOf(node), sessions.get(sessionOf[node]), vector);
+            }
+        }
+        return compacted;
+    }
+
+    private List<Neighbor> exact(float[] query, int k, int[] nodes, int count, int session, float[] buffer) {
+        PriorityQueue<Candidate> best = new PriorityQueue<>(k + 1, WORST_FIRST);
+        for (int i = 0; i < count; i++) {
+            int node = nodes != null ? nodes[i] : i;
+            if (!accepts(node, session)) {
+                continue;
+            }
+            float score = similarity(query, node, buffer);
+            if (best.size() < k || score > best.peek().score()) {
+                best.add(new Candidate(node, score));
+                if (best.size() > k) {
+                    best.poll();
+                }
+            }
+        }
+        return sorted(best).stream().map(this::toNeighbor).toList();
+    }
+
+    private boolean accepts(int node, int session) {
+        return !removed.get(node) && (session < 0 || sessionOf[node] == session);
+    }
+
+    private int greedyClosest(float[] query, int entry, int level, float[] buffer) {
+        int current = entry;
+        float best = similarity(query, current, buffer);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] neighbors = links[current][level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                float score = similarity(query, neighbors[i], buffer);
+                if (score > best) {
+                    best = score;
+                    current = neighbors[i];
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    private PriorityQueue<Candidate> searchLayer(float[] query, List<Candidate> entries, int ef, int level,
+                                                 float[] buffer) {
+        BitSet visited = new BitSet(size);
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(BEST_FIRST);
+        PriorityQueue<Candidate> results = new PriorityQueue<>(WORST_FIRST);
+        for (Candidate entry : entries) {
+            visited.set(entry.node());
+            candidates.add(entry);
+            results.add(entry);
+        }
+        while (results.size() > ef) {
+            results.poll();
+        }
+        while (!candidates.isEmpty()) {
+            Candidate current = candidates.poll();
+            if (results.size() >= ef && current.score() < results.peek().score()) {
+                break;
+            }
+            int[] neighbors = links[current.node()][level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                int neighbor = neighbors[i];
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float score = similarity(query, neighbor, buffer);
+                if (results.size() < ef || score > results.peek().score()) {
+                    Candidate candidate = new Candidate(neighbor, score);
+                    candidates.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    // Keeps a candidate only if it is closer to the base than to every neighbour already
+    // kept, which spreads links across directions; the rest fill any remaining slots
+    private List<Candidate> selectNeighbors(List<Candidate> bestFirst, int limit, float[] base, float[] buffer) {
+        List<Candidate> selected = new ArrayList<>(limit);
+        List<Candidate> pruned = new ArrayList<>();
+        for (Candidate candidate : bestFirst) {
+            if (selected.size() == limit) {
+                break;
+            }
+            boolean diverse = true;
+            if (!selected.isEmpty()) {
+                vectors.get(candidate.node() * dimensions, base);
+            }
+            for (Candidate kept : selected) {
+                if (similarity(base, kept.node(), buffer) > candidate.score()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            (diverse ? selected : pruned).add(candidate);
+        }
+        for (int i = 0; i < pruned.size() && selected.size() < limit; i++) {
+            selected.add(pruned.get(i));
+        }
+        return selected;
+    }
+
+    private void append(int node, int level, int neighbor) {
+        int[] neighbors = links[node][level];
+        neighbors[++neighbors[0]] = neighbor;
+    }
+
+    // A full list takes the new neighbour only if no closer neighbour already covers its
+    // direction, and gives up the neighbour it covers, else the farthest one. One pass over the
+    // list, where re-running the selection over it compared every pair
+    private void link(int node, int level, int neighbor, float[] neighborVector, float[] base, float[] buffer) {
+        int[] neighbors = links[node][level];
+        if (neighbors[0] < neighbors.length - 1) {
+            neighbors[++neighbors[0]] = neighbor;
+            return;
+        }
+        vectors.get(node * dimensions, base);
+        float score = dot(base, neighborVector);
+        int covered = -1;
+        float coveredScore = Float.MAX_VALUE;
+        int farthest = -1;
+        float farthestScore = Float.MAX_VALUE;
+        for (int i = 1; i <= neighbors[0]; i++) {
+            vectors.get(neighbors[i] * dimensions, buffer);
+            float existing = dot(base, buffer);
+            float between = dot(neighborVector, buffer);
+            if (existing > score && between > score) {
+                return;
+            }
+            if (existing < score && between > existing && existing < coveredScore) {
+                covered = i;
+                coveredScore = existing;
+            }
+            if (existing < farthestScore) {
+                farthest = i;
+                farthestScore = existing;
+            }
+        }
+        if (covered > 0) {
+            neighbors[covered] = neighbor;
+        } else if (farthestScore < score) {
+            neighbors[farthest] = neighbor;
+        }
+    }
+
+    private int randomLevel() {
+        return (int) (-Math.log(1 - random.nextDouble()) * levelFactor);
+    }
+
+    // buffer receives the node's vector; callers allocate it per operation, as searches run concurrently
+    private float similarity(float[] query, int node, float[] buffer) {
+        vectors.get(node * dimensions, buffer);
+        return dot(query, buffer);
+    }
+
+    // Independent sums let the additions overlap instead of waiting on one another
+    private static float dot(float[] a, float[] b) {
+        float sum0 = 0;
+        float sum1 = 0;
+        float sum2 = 0;
+        float sum3 = 0;
+        int i = 0;
+        for (; i + 3 < a.length; i += 4) {
+            sum0 += a[i] * b[i];
+            sum1 += a[i + 1] * b[i + 1];
+            sum2 += a[i + 2] * b[i + 2];
+            sum3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < a.length; i++) {
+            sum0 += a[i] * b[i];
+        }
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    private Neighbor toNeighbor(Candidate candidate) {
+        return new Neighbor(messageIdOf(candidate.node()), sessions.get(sessionOf[candidate.node()]), candidate.score());
+    }
+
+    private UUID messageIdOf(int node) {
+        return new UUID(idHigh[node], idLow[node]);
+    }
+
+    private static List<Candidate> sorted(PriorityQueue<Candidate> queue) {
+        List<Candidate> list = new ArrayList<>(queue);
+        list.sort(BEST_FIRST);
+        return list;
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += (double) value * value;
+        }
+        if (norm == 0 || !Double.isFinite(norm)) {
+            throw new IllegalArgumentException("Embedding must be finite and non-zero");
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    private void allocate(int newCapacity) {
+        long bytes = (long) newCapacity * dimensions * Float.BYTES;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Embedding graph is full at " + size + " vectors");
+        }
+        FloatBuffer grown = ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        if (vectors != null) {
+            grown.put(0, vectors, 0, size * dimensions);
+        }
+        vectors = grown;
+        idHigh = Arrays.copyOf(idHigh == null ? new long[0] : idHigh, newCapacity);
+        idLow = Arrays.copyOf(idLow == null ? new long[0] : idLow, newCapacity);
+        sessionOf = Arrays.copyOf(sessionOf == null ? new int[0] : sessionOf, newCapacity);
+        links = Arrays.copyOf(links == null ? new int[0][][] : links, newCapacity);
+        capacity = newCapacity;
+    }
+
+    private static final class NodeList {
+
+        private int[] items = new int[4];
+        private int size;
+
+        private void add(int node) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = node;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.ragchat.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ragchat.dto.PendingMessage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+
+/**
+ * Append-only NDJSON file of accepted messages that the database rejected permanently,
+ * such as a constraint violation, kept with the error for inspection and manual replay.
+ * Every entry is forced to disk before the message leaves the ingestion journal.
+ */
+public class IngestionDeadLetterStore {
+
+    private static final String FILE_NAME = "dead-letters.ndjson";
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+
+    public record DeadLetter(LocalDateTime failedAt, String error, PendingMessage message) {
+    }
+
+    public IngestionDeadLetterStore(Path directory, ObjectMapper objectMapper) {
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+    }
+
+    public synchronized void add(PendingMessage message, String error) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(new DeadLetter(LocalDateTime.now(), error, message));
+        Files.createDirectories(directory);
+        try (FileChannel channel = FileChannel.open(directory.resolve(FILE_NAME),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.allocate(json.length + 1).put(json).put((byte) '\n').flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.ragchat.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ragchat.dto.PendingMessage;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of accepted but not yet persisted messages, split into numbered
+ * segment files. A segment is deleted once it has been rotated out and every entry in
+ * it has been acknowledged, so the journal only holds what is still in flight.
+ */
+@Slf4j
+public class IngestionJournal implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".ndjson";
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+    private final boolean fsync;
+    private final int maxEntriesPerSegment;
+
+    private final Map<Long, Integer> outstanding = new HashMap<>();
+    private long currentSegment;
+    private int entriesInCurrentSegment;
+    private FileChannel channel;
+
+    public IngestionJournal(Path directory, ObjectMapper objectMapper, boolean fsync, int maxEntriesPerSegment)
+            throws IOException {
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+        this.fsync = fsync;
+        this.maxEntriesPerSegment = maxEntriesPerSegment;
+        Files.createDirectories(directory);
+    }
+
+    public synchronized List<PendingMessage> recover() throws IOException {
+        List<PendingMessage> recovered = new ArrayList<>();
+        long lastSegment = 0;
+        for (Path segment : listSegments()) {
+            lastSegment = Math.max(lastSegment, segmentIndex(segment));
+            try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        recovered.add(objectMapper.readValue(line, PendingMessage.class));
+                    } catch (JsonProcessingException e) {
+                        // A torn final write from a crash; everything before it is intact
+                        log.warn("Skipping unreadable journal entry in {}", segment.getFileName());
+                    }
+                }
+            }
+        }
+        currentSegment = lastSegment + 1;
+        openSegment();
+        return recovered;
+    }
+
+    public synchronized void discardRecovered() throws IOException {
+        for (Path segment : listSegments()) {
+            if (segmentIndex(segment) < currentSegment) {
+                Files.deleteIfExists(segment);
+            }
+        }
+    }
+
+    public synchronized long append(PendingMessage message) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(message);
+            ByteBuffer buffer = ByteBuffer.allocate(json.length + 1).put(json).put((byte) '\n').flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to ingestion journal", e);
+        }
+
+        long segment = currentSegment;
+        outstanding.merge(segment, 1, Integer::sum);
+        if (++entriesInCurrentSegment >= maxEntriesPerSegment) {
+            rotate();
+        }
+        return segment;
+    }
+
+    public synchronized void acknowledge(long segment) {
+        int remaining = outstanding.merge(segment, -1, Integer::sum);
+        if (remaining <= 0) {
+            outstanding.remove(segment);
+            if (segment != currentSegment) {
+                deleteSegment(segment);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private void rotate() {
+        try {
+            channel.close();
+            if (!outstanding.containsKey(currentSegment)) {
+                deleteSegment(currentSegment);
+            }
+            currentSegment++;
+            openSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to rotate ingestion journal", e);
+        }
+    }
+
+    private void openSegment() throws IOException {
+        channel = FileChannel.open(segmentPath(currentSegment),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        entriesInCurrentSegment = 0;
+    }
+
+    private void deleteSegment(long segment) {
+        try {
+            Files.deleteIfExists(segmentPath(segment));
+        } catch (IOException e) {
+            log.warn("Failed to delete journal segment {}: {}", segment, e.getMessage());
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted((a, b) -> Long.compare(segmentIndex(a), segmentIndex(b)))
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(SEGMENT_PREFIX + segment + SEGMENT_SUFFIX);
+    }
+
+    private static long segmentIndex(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
@@ -0,0 +1,155 @@
+package com.ragchat.service;
+
+import com.ragchat.entity.ChatMessage;
+import com.ragchat.entity.CompressedText;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Opt-in zstd compression of RAG context. Contexts of at least {@code min-bytes} are
+ * written to {@code context_zstd} instead of the {@code context} column and only
+ * decompressed when {@link ChatMessage#getContext()} is called. A background job
+ * compresses rows written before compression was enabled.
+ * <p>
+ * Message content stays plain text: it is read by SQL (statistics rebuilds) and
+ * PostgreSQL already compresses large values when it moves them out of line.
+ */
+@Slf4j
+@Service
+public class MessageCompressionService {
+
+    private static final UUID FIRST_ID = new UUID(0, 0);
+
+    private static final String BACKFILL_SELECT_SQL =
+            "SELECT id, CASE WHEN OCTET_LENGTH(context) >= ? THEN context END AS context " +
+            "FROM chat_messages WHERE id > ? ORDER BY id FETCH FIRST ? ROWS ONLY";
+
+    private static final String BACKFILL_UPDATE_SQL =
+            "UPDATE chat_messages SET context = NULL, context_zstd = ? WHERE id = ? AND context IS NOT NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${messages.compression.enabled:false}")
+    private boolean enabled;
+
+    @Value("${messages.compression.min-bytes:2048}")
+    private int minBytes;
+
+    @Value("${messages.compression.backfill-batch-size:1000}")
+    private int backfillBatchSize;
+
+    private Counter rawBytesCounter;
+    private Counter storedBytesCounter;
+    private Counter backfilledCounter;
+
+    private volatile UUID backfillCursor = FIRST_ID;
+    private volatile boolean backfillComplete;
+
+    public MessageCompressionService(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        rawBytesCounter = meterRegistry.counter("ragchat.compression.context.raw.bytes");
+        storedBytesCounter = meterRegistry.counter("ragchat.compression.context.stored.bytes");
+        backfilledCounter = meterRegistry.counter("ragchat.compression.backfill.rows");
+        Gauge.builder("ragchat.compression.context.ratio", this, MessageCompressionService::compressionRatio)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the compressed form of a context, or {@code null} when it should be stored
+     * as plain text (compression disabled, below the threshold or incompressible).
+     */
+    public byte[] compressContext(String context) {
+        // A char encodes to at most 3 UTF-8 bytes, so short strings are rejected without encoding
+        if (!enabled || context == null || context.length() * 3L < minBytes) {
+            return null;
+        }
+        byte[] raw = context.getBytes(StandardCharsets.UTF_8);
+        if (raw.length < minBytes) {
+            return null;
+        }
+        byte[] compressed = CompressedText.compress(raw);
+        if (compressed.length >= raw.length) {
+            return null;
+        }
+        rawBytesCounter.increment(raw.length);
+        storedBytesCounter.increment(compressed.length);
+        return compressed;
+    }
+
+    public void compress(ChatMessage message) {
+        byte[] compressed = compressContext(message.getContext());
+        if (compressed != null) {
+            message.storeCompressedContext(compressed);
+        }
+    }
+
+    double compressionRatio() {
+        double stored = storedBytesCounter.count();
+        return stored == 0 ? 1.0 : rawBytesCounter.count() / stored;
+    }
+
+    @Scheduled(fixedDelayString = "${messages.compression.backfill-interval-ms:60000}",
+            initialDelayString = "${messages.compression.backfill-interval-ms:60000}")
+    public void backfill() {
+        if (!enabled || backfillComplete) {
+            return;
+        }
+        try {
+            int compressed = backfillBatch();
+            if (compressed > 0) {
+                log.debug("Compressed context of {} existing messages", compressed);
+            }
+        } catch (RuntimeException e) {
+            log.error("Context compression backfill failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Compresses eligible contexts among the next {@code backfill-batch-size} messages in
+     * id order. Each call visits a bounded window, so a pass over a large table is spread
+     * across many runs.
+     */
+    int backfillBatch() {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                BACKFILL_SELECT_SQL, minBytes, backfillCursor, backfillBatchSize);
+
+        List<Object[]> updates = new ArrayList<>();
+        for (Map<String, Object> row : rows) {
+            byte[] compressed = compressContext((String) row.get("context"));
+            if (compressed != null) {
+                updates.add(new Object[]{compressed, row.get("id")});
+            }
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(BACKFILL_UPDATE_SQL, updates);
+            backfilledCounter.increment(updates.size());
+        }
+
+        if (rows.size() < backfillBatchSize) {
+            backfillComplete = true;
+            log.info("Context compression backfill finished");
+        } else {
+            backfillCursor = (UUID) rows.get(rows.size() - 1).get("id");
+        }
+        return updates.size();
+    }
+}
@@ -0,0 +1,334 @@
+package com.ragchat.service;
+
+import com.ragchat.dto.PendingMessage;
+import com.ragchat.dto.SessionResponse;
+import com.ragchat.entity.ChatMessage;
+import com.ragchat.entity.EmbeddingVector;
+import com.ragchat.exception.ResourceNotFoundException;
+import com.ragchat.repository.ChatMessageRepository;
+import com.ragchat.repository.ChatMessageRepository.EmbeddingRow;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Per-user HNSW graphs over the client-computed embeddings of messages in the hot table,
+ * for similarity search without an external vector store. The graphs are rebuilt from
+ * chat_messages at startup and then follow committed writes; archived sessions leave the
+ * index and return with their messages. Searches may still see messages deleted by bulk
+ * operations, so callers re-check candidates against the table.
+ */
+@Slf4j
+@Service
+public class MessageEmbeddingIndex {
+
+    private static final int BUILDER_QUEUE_CAPACITY = 256;
+
+    private final ChatMessageRepository messageRepository;
+    private final SessionCacheService sessionCache;
+    private final TransactionTemplate readOnlyTransaction;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${messages.embeddings.max-dimensions:4096}")
+    private int maxDimensions;
+
+    @Value("${messages.embeddings.index.m:16}")
+    private int maxLinks;
+
+    @Value("${messages.embeddings.index.ef-construction:100}")
+    private int efConstruction;
+
+    @Value("${messages.embeddings.index.ef-search:64}")
+    private int efSearch;
+
+    @Value("${messages.embeddings.index.exact-search-threshold:2000}")
+    private int exactSearchThreshold;
+
+    @Value("${messages.embeddings.index.compact-min-removed:1000}")
+    private int compactMinRemoved;
+
+    @Value("${messages.embeddings.index.rebuild-threads:4}")
+    private int rebuildThreads;
+
+    private final Map<String, Tenant> tenants = new ConcurrentHashMap<>();
+    // Owners never change; lets a session be dropped without looking it up
+    private final Map<UUID, String> owners = new ConcurrentHashMap<>();
+    private final AtomicLong seeds = new AtomicLong();
+
+    private static final class Tenant {
+
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private HnswGraph graph;
+    }
+
+    private record Entry(UUID id, UUID sessionId, byte[] embedding) {
+    }
+
+    public MessageEmbeddingIndex(ChatMessageRepository messageRepository,
+                                 SessionCacheService sessionCache,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry) {
+        this.messageRepository = messageRepository;
+        this.sessionCache = sessionCache;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        Gauge.builder("ragchat.embeddings.vectors", this, index -> index.sum(HnswGraph::liveCount))
+                .register(meterRegistry);
+        Gauge.builder("ragchat.embeddings.users", tenants, Map::size)
+                .register(meterRegistry);
+        Gauge.builder("ragchat.embeddings.offheap.bytes", this, index -> index.sum(HnswGraph::offHeapBytes))
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    // In the background: messages written meanwhile are indexed as they commit, and re-adding one is a no-op
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        Thread loader = new Thread(() -> {
+            try {
+                long started = System.nanoTime();
+                long loaded = load();
+                log.info("Indexed {} message embeddings of {} users in {} ms with {} threads",
+                        loaded, tenants.size(), (System.nanoTime() - started) / 1_000_000, rebuildThreads);
+            } catch (RuntimeException e) {
+                log.error("Failed to rebuild the embedding index: {}", e.getMessage(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "embedding-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Streams the stored embeddings to rebuildThreads builders and waits for them. All of a
+     * user's embeddings go to the same builder, so graphs are built in parallel without
+     * contending for a tenant's lock; a full builder queue makes the stream wait.
+     */
+    long load() throws InterruptedException {
+        List<ThreadPoolExecutor> builders = new ArrayList<>(rebuildThreads);
+        for (int i = 0; i < rebuildThreads; i++) {
+            builders.add(builder(i));
+        }
+        AtomicLong loaded = new AtomicLong();
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<EmbeddingRow> rows = messageRepository.streamActiveEmbeddings()) {
+                    rows.forEach(row -> builders.get(Math.floorMod(row.userId().hashCode(), builders.size()))
+                            .execute(() -> {
+                                if (add(row.userId(), new Entry(row.id(), row.sessionId(), row.embedding()))) {
+                                    loaded.incrementAndGet();
+                                }
+                            }));
+                }
+            });
+        } finally {
+            for (ThreadPoolExecutor builder : builders) {
+                builder.shutdown();
+            }
+            for (ThreadPoolExecutor builder : builders) {
+                while (!builder.awaitTermination(1, TimeUnit.MINUTES)) {
+                    log.debug("Still building embedding graphs, {} indexed so far", loaded.get());
+                }
+            }
+        }
+        return loaded.get();
+    }
+
+    private static ThreadPoolExecutor builder(int index) {
+        // When the queue is full the loader builds the entry itself, which also bounds the rows in memory
+        return new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(BUILDER_QUEUE_CAPACITY),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "embedding-index-builder-" + index);
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Rejects an embedding that cannot be indexed for the session's owner: empty, too long,
+     * not finite, all zeros or of another dimension than the user's earlier embeddings.
+     */
+    public void validate(UUID sessionId, float[] embedding) {
+        if (embedding.length == 0 || embedding.length > maxDimensions) {
+            throw new IllegalArgumentException("Embedding must have between 1 and " + maxDimensions + " dimensions");
+        }
+        boolean nonZero = false;
+        for (float value : embedding) {
+            if (!Float.isFinite(value)) {
+                throw new IllegalArgumentException("Embedding values must be finite");
+            }
+            nonZero |= value != 0;
+        }
+        if (!nonZero) {
+            throw new IllegalArgumentException("Embedding must not be all zeros");
+        }
+        String userId = sessionCache.findSession(sessionId)
+                .map(SessionResponse::getUserId)
+                .orElseThrow(() -> new ResourceNotFoundException("ChatSession", "id", sessionId));
+        int dimensions = dimensionsOf(userId);
+        if (dimensions > 0 && dimensions != embedding.length) {
+            throw new IllegalArgumentException("Embedding has " + embedding.length +
+                    " dimensions, earlier embeddings of this user have " + dimensions);
+        }
+    }
+
+    /** Indexes the messages that carry an embedding once the current transaction commits. */
+    public void indexMessages(List<ChatMessage> messages) {
+        indexAfterCommit(messages.stream()
+                .filter(message -> message.getEmbedding() != null)
+                .map(message -> new Entry(message.getId(), message.getSession().getId(), message.getEmbedding()))
+                .toList());
+    }
+
+    public void indexPending(List<PendingMessage> messages) {
+        indexAfterCommit(messages.stream()
+                .filter(message -> message.embedding() != null)
+                .map(message -> new Entry(message.id(), message.sessionId(), message.embedding()))
+                .toList());
+    }
+
+    public void remove(UUID sessionId, UUID messageId) {
+        afterCommit(() -> {
+            String userId = owners.get(sessionId);
+            if (userId != null) {
+                update(userId, graph -> graph.remove(messageId));
+            }
+        });
+    }
+
+    public void removeSession(UUID sessionId) {
+        afterCommit(() -> {
+            String userId = owners.remove(sessionId);
+            if (userId != null) {
+                update(userId, graph -> graph.removeSession(sessionId) > 0);
+            }
+        });
+    }
+
+    /**
+     * The user's k messages whose embeddings are most similar to {@code embedding}, best first,
+     * optionally within one session.
+     */
+    public List<HnswGraph.Neighbor> search(String userId, float[] embedding, int k, UUID sessionId) {
+        Tenant tenant = tenants.get(userId);
+        if (tenant == null) {
+            return List.of();
+        }
+        tenant.lock.readLock().lock();
+        try {
+            return tenant.graph.search(embedding, k, sessionId, efSearch, exactSearchThreshold);
+        } finally {
+            tenant.lock.readLock().unlock();
+        }
+    }
+
+    private int dimensionsOf(String userId) {
+        Tenant tenant = tenants.get(userId);
+        return tenant != null ? tenant.graph.dimensions() : 0;
+    }
+
+    private void indexAfterCommit(List<Entry> entries) {
+        if (!entries.isEmpty()) {
+            afterCommit(() -> entries.forEach(entry -> sessionCache.findSession(entry.sessionId())
+                    .ifPresent(session -> add(session.getUserId(), entry))));
+        }
+    }
+
+    private boolean add(String userId, Entry entry) {
+        try {
+            float[] vector = EmbeddingVector.decode(entry.embedding());
+            Tenant tenant = tenants.computeIfAbsent(userId, id -> {
+                Tenant created = new Tenant();
+                created.graph = new HnswGraph(vector.length, maxLinks, efConstruction, seeds.incrementAndGet());
+                return created;
+            });
+            owners.put(entry.sessionId(), userId);
+            tenant.lock.writeLock().lock();
+            try {
+                return tenant.graph.add(entry.id(), entry.sessionId(), vector);
+            } finally {
+                tenant.lock.writeLock().unlock();
+            }
+        } catch (RuntimeException e) {
+            // A row written with another dimension, or a full graph; the message stays searchable by text
+            log.warn("Not indexing the embedding of message {}: {}", entry.id(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void update(String userId, Function<HnswGraph, Boolean> change) {
+        Tenant tenant = tenants.get(userId);
+        if (tenant == null) {
+            return;
+        }
+        tenant.lock.writeLock().lock();
+        try {
+            if (change.apply(tenant.graph)) {
+                HnswGraph graph = tenant.graph;
+                if (graph.removedCount() >= compactMinRemoved && graph.removedCount() > graph.liveCount()) {
+                    tenant.graph = graph.compact(seeds.incrementAndGet());
+                    log.debug("Compacted embedding graph of user {} to {} vectors", userId, tenant.graph.liveCount());
+                }
+            }
+        } finally {
+            tenant.lock.writeLock().unlock();
+        }
+    }
+
+    private double sum(ToLongFunction<HnswGraph> metric) {
+        long total = 0;
+        for (Tenant tenant : tenants.values()) {
+            tenant.lock.readLock().lock();
+            try {
+                total += metric.applyAsLong(tenant.graph);
+            } finally {
+                tenant.lock.readLock().unlock();
+            }
+        }
+        return total;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
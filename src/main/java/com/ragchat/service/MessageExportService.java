@@ -0,0 +1,84 @@
+package com.ragchat.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.ragchat.dto.ExportFormat;
+import com.ragchat.dto.MessageResponse;
+import com.ragchat.entity.ChatMessage;
+import com.ragchat.exception.ResourceNotFoundException;
+import com.ragchat.repository.ChatMessageRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MessageExportService {
+
+    private final ChatMessageRepository messageRepository;
+    private final SessionCacheService sessionCache;
+    private final SessionArchiveService archiveService;
+    private final ContextStoreService contextStore;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    @Transactional(readOnly = true)
+    public void verifySessionExists(UUID sessionId) {
+        if (!sessionCache.exists(sessionId)) {
+            throw new ResourceNotFoundException("ChatSession", "id", sessionId);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public long exportMessages(UUID sessionId, ExportFormat format, OutputStream out) throws IOException {
+        log.info("Exporting messages for session: {} as {}", sessionId, format);
+
+        ObjectWriter writer = objectMapper.writerFor(MessageResponse.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        OutputStream target = format == ExportFormat.NDJSON_GZIP ? new GZIPOutputStream(out, 8192) : out;
+        long count = 0;
+
+        Optional<List<ChatMessage>> archived = archiveService.findArchivedHistory(sessionId);
+        try (Stream<ChatMessage> messages = archived.map(List::stream)
+                .orElseGet(() -> messageRepository.streamBySessionIdOrderByCreatedAtAscIdAsc(sessionId));
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(target)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+
+            Iterator<ChatMessage> iterator = messages.iterator();
+            while (iterator.hasNext()) {
+                ChatMessage message = iterator.next();
+                writer.writeValue(generator, MessageResponse.fromEntity(message, contextStore.resolve(message)));
+                generator.writeRaw('\n');
+                // Rows are written as they are read; detaching keeps the persistence context empty
+                if (archived.isEmpty()) {
+                    entityManager.detach(message);
+                }
+                count++;
+            }
+            generator.flush();
+        }
+
+        if (target instanceof GZIPOutputStream gzip) {
+            gzip.finish();
+        }
+        out.flush();
+
+        log.info("Exported {} messages for session {}", count, sessionId);
+        return count;
+    }
+}
@@ -0,0 +1,343 @@
+package com.ragchat.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Maintains PostgreSQL declarative partitioning of chat_messages, which
+ * {@link MessagePartitioningMigration} sets up: monthly partitions are created ahead
+ * of time, before the entity manager factory starts, and expired ones detached or dropped.
+ * On request it also converts a plain table that already holds rows to monthly partitions.
+ */
+@Slf4j
+@Service
+public class MessagePartitionService {
+
+    public enum Strategy { NONE, MONTHLY, HASH }
+
+    public enum RetentionAction { DETACH, DROP }
+
+    static final String TABLE = "chat_messages";
+    static final String LEGACY_PARTITION = TABLE + "_legacy";
+    private static final String LEGACY_RANGE = LEGACY_PARTITION + "_range";
+    private static final String LEGACY_PRIMARY_KEY = LEGACY_PARTITION + "_pkey";
+    private static final Pattern UPPER_BOUND = Pattern.compile("TO \\('(\\d{4}-\\d{2}-\\d{2})");
+    private static final Pattern MONTHLY_PARTITION = Pattern.compile(TABLE + "_p(\\d{4})_(\\d{2})");
+    private static final DateTimeFormatter MONTH_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private final JdbcTemplate jdbcTemplate;
+    // Resolved lazily: the caches need the entity manager factory, which starts after this service
+    private final ObjectProvider<MessageTailCacheService> tailCache;
+    private final ObjectProvider<SessionCacheService> sessionCache;
+
+    @Value("${messages.partitioning.strategy:none}")
+    private String strategyName;
+
+    @Value("${messages.partitioning.premake-months:3}")
+    private int premakeMonths;
+
+    @Value("${messages.partitioning.retention-months:0}")
+    private int retentionMonths;
+
+    @Value("${messages.partitioning.retention-action:detach}")
+    private String retentionActionName;
+
+    @Value("${messages.partitioning.convert-existing:false}")
+    private boolean convertExisting;
+
+    private Strategy strategy = Strategy.NONE;
+    private RetentionAction retentionAction = RetentionAction.DETACH;
+    private volatile boolean active;
+    // Months before this are held by the legacy partition of a converted table
+    private LocalDate legacyUntil;
+
+    // Built from the DataSource directly: the shared JdbcTemplate waits for database
+    // initialization, which in turn waits for the entity manager factory
+    @Autowired
+    public MessagePartitionService(DataSource dataSource, ObjectProvider<MessageTailCacheService> tailCache,
+                                   ObjectProvider<SessionCacheService> sessionCache) {
+        this(new JdbcTemplate(dataSource), tailCache, sessionCache);
+    }
+
+    MessagePartitionService(JdbcTemplate jdbcTemplate, ObjectProvider<MessageTailCacheService> tailCache,
+                            ObjectProvider<SessionCacheService> sessionCache) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tailCache = tailCache;
+        this.sessionCache = sessionCache;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        strategy = Strategy.valueOf(strategyName.trim().toUpperCase(Locale.ROOT));
+        retentionAction = RetentionAction.valueOf(retentionActionName.trim().toUpperCase(Locale.ROOT));
+        if (!isPostgreSql()) {
+            if (strategy != Strategy.NONE) {
+                log.warn("Partitioning of {} requires PostgreSQL; keeping a plain table", TABLE);
+            }
+            return;
+        }
+
+        // The table keeps the layout the migrations gave it, whatever is configured now
+        Strategy created = partitionStrategy(jdbcTemplate);
+        if (created == Strategy.NONE && strategy == Strategy.MONTHLY && convertExisting) {
+            convertToMonthly(YearMonth.from(LocalDate.now().plusDays(1)).plusMonths(1).atDay(1));
+            created = partitionStrategy(jdbcTemplate);
+        }
+        if (created != strategy) {
+            if (created == Strategy.NONE) {
+                log.warn("{} is a plain table; partitioning ({}) only applies to a table created empty{}", TABLE, strategy,
+                        strategy == Strategy.MONTHLY ? " or with messages.partitioning.convert-existing=true" : "");
+            } else {
+                log.warn("{} is partitioned {}, not {} as configured", TABLE, created, strategy);
+            }
+            strategy = created;
+        }
+        if (strategy == Strategy.NONE) {
+            return;
+        }
+
+        if (strategy == Strategy.MONTHLY) {
+            legacyUntil = legacyUpperBound();
+        }
+        active = true;
+        maintainPartitions(LocalDate.now());
+    }
+
+    /**
+     * Turns the plain chat_messages into a monthly partitioned table without copying rows: the
+     * table is attached as {@value #LEGACY_PARTITION} for everything before {@code cutover}. A
+     * validated CHECK on created_at lets the attach skip its scan, and the parent adopts the
+     * table's indexes and foreign key as they are. Only the (id, created_at) index the
+     * partitioned primary key needs is built, concurrently, beforehand. Leaves the table plain
+     * if anything fails.
+     */
+    void convertToMonthly(LocalDate cutover) {
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                JdbcTemplate session = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+                // Instances starting together convert the table once
+                session.execute("SELECT pg_advisory_lock(hashtext('" + LEGACY_PARTITION + "'))");
+                try {
+                    if (partitionStrategy(session) == Strategy.NONE) {
+                        convertToMonthly(connection, session, cutover);
+                    }
+                } finally {
+                    session.execute("SELECT pg_advisory_unlock(hashtext('" + LEGACY_PARTITION + "'))");
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.error("Failed to convert {} to monthly partitions; it stays a plain table: {}", TABLE, e.getMessage(), e);
+        }
+    }
+
+    private void convertToMonthly(Connection connection, JdbcTemplate session, LocalDate cutover) throws SQLException {
+        log.info("Converting {} to monthly partitions; existing rows stay in {} up to {}", TABLE, LEGACY_PARTITION, cutover);
+        session.execute("ALTER TABLE " + TABLE + " DROP CONSTRAINT IF EXISTS " + LEGACY_RANGE);
+        session.execute("ALTER TABLE " + TABLE + " ADD CONSTRAINT " + LEGACY_RANGE +
+                " CHECK (created_at IS NOT NULL AND created_at < '" + cutover + "') NOT VALID");
+        try {
+            // Both scan the table, but neither blocks reads or writes meanwhile
+            session.execute("ALTER TABLE " + TABLE + " VALIDATE CONSTRAINT " + LEGACY_RANGE);
+            session.execute("DROP INDEX CONCURRENTLY IF EXISTS " + LEGACY_PRIMARY_KEY);
+            session.execute("CREATE UNIQUE INDEX CONCURRENTLY " + LEGACY_PRIMARY_KEY + " ON " + TABLE + " (id, created_at)");
+
+            connection.setAutoCommit(false);
+            try {
+                attachAsLegacyPartition(session, cutover);
+                connection.commit();
+            } catch (RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (RuntimeException e) {
+            // Left behind, the CHECK would reject every message from the cutover on
+            session.execute("ALTER TABLE " + TABLE + " DROP CONSTRAINT IF EXISTS " + LEGACY_RANGE);
+            session.execute("DROP INDEX IF EXISTS " + LEGACY_PRIMARY_KEY);
+            throw e;
+        }
+        log.info("Converted {} to monthly partitions", TABLE);
+    }
+
+    // Catalog changes only, in one transaction
+    private void attachAsLegacyPartition(JdbcTemplate session, LocalDate cutover) {
+        session.execute("LOCK TABLE " + TABLE + " IN ACCESS EXCLUSIVE MODE");
+        List<Map<String, Object>> indexes = session.queryForList(
+                "SELECT c.relname AS name, pg_get_indexdef(i.indexrelid) AS definition FROM pg_index i " +
+                        "JOIN pg_class c ON c.oid = i.indexrelid WHERE i.indrelid = ?::regclass AND c.relname <> ? " +
+                        "AND NOT EXISTS (SELECT 1 FROM pg_constraint k WHERE k.conindid = i.indexrelid AND k.conrelid = i.indrelid)",
+                TABLE, LEGACY_PRIMARY_KEY);
+        String primaryKey = session.queryForObject(
+                "SELECT conname FROM pg_constraint WHERE conrelid = ?::regclass AND contype = 'p'", String.class, TABLE);
+
+        session.execute("ALTER TABLE " + TABLE + " RENAME TO " + LEGACY_PARTITION);
+        session.execute("ALTER TABLE " + LEGACY_PARTITION + " DROP CONSTRAINT " + primaryKey +
+                ", ADD CONSTRAINT " + LEGACY_PRIMARY_KEY + " PRIMARY KEY USING INDEX " + LEGACY_PRIMARY_KEY);
+        // Frees the names for the parent's indexes
+        for (Map<String, Object> index : indexes) {
+            session.execute("ALTER INDEX " + index.get("name") + " RENAME TO " + index.get("name") + "_legacy");
+        }
+
+        session.execute("CREATE TABLE " + TABLE + " (LIKE " + LEGACY_PARTITION + " INCLUDING DEFAULTS " +
+                "INCLUDING CONSTRAINTS INCLUDING STORAGE INCLUDING GENERATED) PARTITION BY RANGE (created_at)");
+        session.execute("ALTER TABLE " + TABLE + " DROP CONSTRAINT " + LEGACY_RANGE);
+        session.execute("ALTER TABLE " + TABLE + " ATTACH PARTITION " + LEGACY_PARTITION +
+                " FOR VALUES FROM (MINVALUE) TO ('" + cutover + "')");
+        // The partition bound enforces it from now on
+        session.execute("ALTER TABLE " + LEGACY_PARTITION + " DROP CONSTRAINT " + LEGACY_RANGE);
+        session.execute("CREATE TABLE " + TABLE + "_default PARTITION OF " + TABLE + " DEFAULT");
+
+        // Each finds its match on the legacy partition and attaches it instead of building one
+        session.execute("ALTER TABLE " + TABLE + " ADD CONSTRAINT " + TABLE + "_pkey PRIMARY KEY (id, created_at)");
+        for (Map<String, Object> index : indexes) {
+            session.execute((String) index.get("definition"));
+        }
+        session.execute("ALTER TABLE " + TABLE + " ADD CONSTRAINT fk_chat_messages_session " +
+                "FOREIGN KEY (session_id) REFERENCES chat_sessions (id)");
+    }
+
+    @Scheduled(cron = "${messages.partitioning.maintenance-cron:0 0 3 * * *}")
+    public void maintainPartitions() {
+        if (active) {
+            maintainPartitions(LocalDate.now());
+        }
+    }
+
+    void maintainPartitions(LocalDate today) {
+        if (strategy != Strategy.MONTHLY) {
+            return;
+        }
+        YearMonth current = YearMonth.from(today);
+        for (int ahead = 0; ahead <= premakeMonths; ahead++) {
+            YearMonth month = current.plusMonths(ahead);
+            if (legacyUntil == null || !month.atDay(1).isBefore(legacyUntil)) {
+                createMonthlyPartition(month);
+            }
+        }
+        if (retentionMonths > 0) {
+            expirePartitions(current.minusMonths(retentionMonths));
+        }
+    }
+
+    private void createMonthlyPartition(YearMonth month) {
+        String name = partitionName(month);
+        try {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + TABLE +
+                    " FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+        } catch (RuntimeException e) {
+            // Typically rows for this month already landed in the default partition
+            log.error("Failed to create partition {}: {}", name, e.getMessage());
+        }
+    }
+
+    private void expirePartitions(YearMonth oldestKept) {
+        boolean expired = false;
+        for (String partition : listPartitions()) {
+            Matcher matcher = MONTHLY_PARTITION.matcher(partition);
+            if (!matcher.matches()) {
+                continue;
+            }
+            YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+            if (!month.isBefore(oldestKept)) {
+                continue;
+            }
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + partition);
+            releaseStats(partition);
+            if (retentionAction == RetentionAction.DROP) {
+                releaseContexts(partition);
+                jdbcTemplate.execute("DROP TABLE " + partition);
+            }
+            log.info("Expired partition {} ({})", partition, retentionAction);
+            expired = true;
+        }
+        if (expired) {
+            // Cached conversation tails and session statistics may still count the expired messages
+            tailCache.ifAvailable(MessageTailCacheService::evictAll);
+            sessionCache.ifAvailable(SessionCacheService::evictAll);
+        }
+    }
+
+    // Keeps message counts, and with them the ETags of message histories, in line with what is left
+    private void releaseStats(String partition) {
+        jdbcTemplate.update("UPDATE chat_session_stats st SET message_count = st.message_count - d.n, " +
+                "total_content_bytes = st.total_content_bytes - d.bytes, " +
+                "last_message_at = CASE WHEN st.message_count = d.n THEN NULL ELSE st.last_message_at END " +
+                "FROM (SELECT session_id, COUNT(*) AS n, COALESCE(SUM(OCTET_LENGTH(content)), 0) AS bytes FROM " +
+                partition + " GROUP BY session_id) d WHERE st.session_id = d.session_id");
+    }
+
+    private void releaseContexts(String partition) {
+        if (tableExists("chat_contexts")) {
+            jdbcTemplate.update("UPDATE chat_contexts c SET ref_count = c.ref_count - d.n " +
+                    "FROM (SELECT context_hash, COUNT(*) AS n FROM " + partition +
+                    " WHERE context_hash IS NOT NULL GROUP BY context_hash) d WHERE c.hash = d.context_hash");
+        }
+    }
+
+    private List<String> listPartitions() {
+        return new ArrayList<>(jdbcTemplate.queryForList(
+                "SELECT child.relname FROM pg_inherits " +
+                        "JOIN pg_class parent ON parent.oid = pg_inherits.inhparent " +
+                        "JOIN pg_class child ON child.oid = pg_inherits.inhrelid " +
+                        "WHERE parent.relname = ?", String.class, TABLE));
+    }
+
+    private boolean isPostgreSql() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        return "PostgreSQL".equalsIgnoreCase(product);
+    }
+
+    private boolean tableExists(String table) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT to_regclass(?) IS NOT NULL", Boolean.class, table));
+    }
+
+    private LocalDate legacyUpperBound() {
+        List<String> bounds = jdbcTemplate.queryForList(
+                "SELECT pg_get_expr(relpartbound, oid) FROM pg_class WHERE relname = ? AND relispartition",
+                String.class, LEGACY_PARTITION);
+        if (bounds.isEmpty()) {
+            return null;
+        }
+        Matcher matcher = UPPER_BOUND.matcher(bounds.get(0));
+        return matcher.find() ? LocalDate.parse(matcher.group(1)) : null;
+    }
+
+    private static Strategy partitionStrategy(JdbcTemplate jdbcTemplate) {
+        List<String> strategies = jdbcTemplate.queryForList(
+                "SELECT pt.partstrat::text FROM pg_partitioned_table pt " +
+                        "JOIN pg_class c ON c.oid = pt.partrelid WHERE c.relname = ?", String.class, TABLE);
+        if (strategies.isEmpty()) {
+            return Strategy.NONE;
+        }
+        return "h".equals(strategies.get(0)) ? Strategy.HASH : Strategy.MONTHLY;
+    }
+
+    static String partitionName(YearMonth month) {
+        return TABLE + "_p" + month.format(MONTH_SUFFIX);
+    }
+}
@@ -0,0 +1,93 @@
+package com.ragchat.service;
+
+import com.ragchat.service.MessagePartitionService.Strategy;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.api.MigrationVersion;
+import org.flywaydb.core.api.migration.Context;
+import org.flywaydb.core.api.migration.JavaMigration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+import static com.ragchat.service.MessagePartitionService.TABLE;
+
+/**
+ * Migration 1.4: turns the still empty chat_messages of V1 into a table partitioned as
+ * configured by {@code messages.partitioning.strategy}, so that every later migration
+ * applies to the partitioned table itself. The columns are copied from V1's table rather
+ * than declared again. A table that already holds rows, such as that of a baselined
+ * database, stays a plain table here; {@link MessagePartitionService} can convert it to
+ * monthly partitions at startup.
+ */
+@Slf4j
+@Component
+public class MessagePartitioningMigration implements JavaMigration {
+
+    @Value("${messages.partitioning.strategy:none}")
+    private String strategyName;
+
+    @Value("${messages.partitioning.hash-partitions:16}")
+    private int hashPartitions;
+
+    @Override
+    public MigrationVersion getVersion() {
+        return MigrationVersion.fromVersion("1.4");
+    }
+
+    @Override
+    public String getDescription() {
+        return "partition chat messages";
+    }
+
+    @Override
+    public Integer getChecksum() {
+        return null;
+    }
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return true;
+    }
+
+    @Override
+    public void migrate(Context context) {
+        Strategy strategy = Strategy.valueOf(strategyName.trim().toUpperCase(Locale.ROOT));
+        if (strategy == Strategy.NONE) {
+            return;
+        }
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(context.getConnection(), true));
+        if (Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM " + TABLE + ")", Boolean.class))) {
+            log.warn("{} already holds data as a plain table; partitioning ({}) is not applied here. " +
+                    "Monthly partitioning can convert it at startup with messages.partitioning.convert-existing=true.",
+                    TABLE, strategy);
+            return;
+        }
+
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " RENAME TO " + TABLE + "_plain");
+        String columns = "(LIKE " + TABLE + "_plain INCLUDING DEFAULTS INCLUDING CONSTRAINTS INCLUDING STORAGE)";
+        if (strategy == Strategy.MONTHLY) {
+            jdbcTemplate.execute("CREATE TABLE " + TABLE + " " + columns + " PARTITION BY RANGE (created_at)");
+            // Catches rows outside every monthly range, e.g. rehydrated history older than retention;
+            // MessagePartitionService creates the monthly partitions themselves
+            jdbcTemplate.execute("CREATE TABLE " + TABLE + "_default PARTITION OF " + TABLE + " DEFAULT");
+        } else {
+            jdbcTemplate.execute("CREATE TABLE " + TABLE + " " + columns + " PARTITION BY HASH (session_id)");
+            for (int remainder = 0; remainder < hashPartitions; remainder++) {
+                jdbcTemplate.execute("CREATE TABLE " + TABLE + "_h" + remainder + " PARTITION OF " + TABLE +
+                        " FOR VALUES WITH (MODULUS " + hashPartitions + ", REMAINDER " + remainder + ")");
+            }
+        }
+        jdbcTemplate.execute("DROP TABLE " + TABLE + "_plain");
+
+        // A partitioned table's primary key must include the partition key
+        String key = strategy == Strategy.MONTHLY ? "created_at" : "session_id";
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD CONSTRAINT " + TABLE + "_pkey PRIMARY KEY (id, " + key + ")");
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD CONSTRAINT fk_chat_messages_session " +
+                "FOREIGN KEY (session_id) REFERENCES chat_sessions (id)");
+        log.info("Created {} partitioned by {}", TABLE, strategy);
+    }
+}
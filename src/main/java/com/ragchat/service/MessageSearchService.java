@@ -0,0 +1,132 @@
+package com.ragchat.service;
+
+import com.ragchat.dto.CursorPageResponse;
+import com.ragchat.dto.MessageSearchHit;
+import com.ragchat.dto.SearchCursor;
+import com.ragchat.dto.SimilarMessage;
+import com.ragchat.dto.SimilarMessagesRequest;
+import com.ragchat.exception.ResourceNotFoundException;
+import com.ragchat.repository.ChatMessageRepository;
+import com.ragchat.repository.ChatMessageRepository.MessageSummary;
+import com.ragchat.repository.ChatMessageSearchRepository;
+import com.ragchat.repository.ChatMessageSearchRepository.SearchRow;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.util.HtmlUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+public class MessageSearchService {
+
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_QUERY_LENGTH = 256;
+    private static final int MAX_SIMILAR = 100;
+    // Extra neighbours asked of the index, for candidates the table no longer has
+    private static final int SIMILAR_OVERFETCH = 2;
+
+    private final ChatMessageSearchRepository searchRepository;
+    private final SessionCacheService sessionCache;
+    private final MessageEmbeddingIndex embeddingIndex;
+    private final ChatMessageRepository messageRepository;
+
+    @Transactional(readOnly = true)
+    public CursorPageResponse<MessageSearchHit> search(String userId, String query, UUID sessionId,
+                                                       String cursor, int size) {
+        if (query == null || query.isBlank() || query.length() > MAX_QUERY_LENGTH) {
+            throw new IllegalArgumentException("Query must be between 1 and " + MAX_QUERY_LENGTH + " characters");
+        }
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        verifySessionOwner(userId, sessionId);
+        SearchCursor after = cursor != null ? SearchCursor.decode(cursor) : null;
+
+        // One extra row tells whether another page follows
+        List<SearchRow> rows = searchRepository.search(userId, query, sessionId, after, size + 1);
+        boolean hasNext = rows.size() > size;
+        List<MessageSearchHit> hits = rows.stream().limit(size).map(MessageSearchService::toHit).toList();
+
+        return CursorPageResponse.<MessageSearchHit>builder()
+                .content(hits)
+                .size(size)
+                .hasNext(hasNext)
+                .nextCursor(hasNext ? SearchCursor.of(hits.get(hits.size() - 1)).encode() : null)
+                .hasPrevious(after != null)
+                .build();
+    }
+
+    /**
+     * The user's messages whose embeddings are most similar to the given one, best first.
+     * Candidates come from the in-process index and are re-checked against the table, which
+     * drops messages of sessions deleted since they were indexed.
+     */
+    @Transactional(readOnly = true)
+    public List<SimilarMessage> findSimilar(String userId, SimilarMessagesRequest request) {
+        int k = request.getK();
+        if (k < 1 || k > MAX_SIMILAR) {
+            throw new IllegalArgumentException("k must be between 1 and " + MAX_SIMILAR);
+        }
+        verifySessionOwner(userId, request.getSessionId());
+
+        List<HnswGraph.Neighbor> neighbors = embeddingIndex.search(
+                userId, request.getEmbedding(), k * SIMILAR_OVERFETCH, request.getSessionId());
+        if (neighbors.isEmpty()) {
+            return List.of();
+        }
+        Map<UUID, MessageSummary> stored = messageRepository
+                .findActiveSummariesByIdIn(neighbors.stream().map(HnswGraph.Neighbor::messageId).toList())
+                .stream()
+                .collect(Collectors.toMap(MessageSummary::id, Function.identity()));
+        return neighbors.stream()
+                .map(neighbor -> {
+                    MessageSummary message = stored.get(neighbor.messageId());
+                    return message == null ? null : SimilarMessage.builder()
+                            .id(message.id())
+                            .sessionId(neighbor.sessionId())
+                            .sender(message.sender())
+                            .content(message.content())
+                            .score(neighbor.score())
+                            .createdAt(message.createdAt())
+                            .build();
+                })
+                .filter(Objects::nonNull)
+                .limit(k)
+                .toList();
+    }
+
+    // Another user's session is reported as missing rather than silently returning nothing
+    private void verifySessionOwner(String userId, UUID sessionId) {
+        if (sessionId != null && sessionCache.findSession(sessionId)
+                .filter(session -> session.getUserId().equals(userId))
+                .isEmpty()) {
+            throw new ResourceNotFoundException("ChatSession", "id", sessionId);
+        }
+    }
+
+    private static MessageSearchHit toHit(SearchRow row) {
+        return MessageSearchHit.builder()
+                .id(row.id())
+                .sessionId(row.sessionId())
+                .sessionTitle(row.sessionTitle())
+                .sender(row.sender())
+                .highlight(highlight(row.headline()))
+                .rank(row.rank())
+                .createdAt(row.createdAt())
+                .build();
+    }
+
+    // The content is escaped first, so only the match markers become markup
+    static String highlight(String headline) {
+        return HtmlUtils.htmlEscape(headline)
+                .replace(String.valueOf(ChatMessageSearchRepository.START_MATCH), "<mark>")
+                .replace(String.valueOf(ChatMessageSearchRepository.STOP_MATCH), "</mark>");
+    }
+}
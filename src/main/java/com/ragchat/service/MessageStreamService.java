@@ -0,0 +1,254 @@
+package com.ragchat.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ragchat.dto.MessageCursor;
+import com.ragchat.dto.MessageResponse;
+import com.ragchat.exception.SubscriberLimitExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process fan-out of committed messages to Server-Sent Events subscribers. A
+ * subscriber is an async request, so an idle one holds a connection but no request
+ * thread; events are queued in a bounded buffer per subscriber and written by a small
+ * shared pool of sender threads. A subscriber that falls a full buffer behind is
+ * disconnected instead of holding back the others, and catches up by reconnecting with
+ * the id of the last event it received. Only messages written by this instance are
+ * streamed.
+ */
+@Slf4j
+@Service
+public class MessageStreamService {
+
+    private static final Set<DataWithMediaType> HEARTBEAT = SseEmitter.event().comment("heartbeat").build();
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Map<UUID, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    @Value("${messages.stream.max-subscribers:5000}")
+    private int maxSubscribers;
+
+    @Value("${messages.stream.buffer-size:256}")
+    private int bufferSize;
+
+    @Value("${messages.stream.sender-threads:4}")
+    private int senderThreads;
+
+    @Value("${messages.stream.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    private ExecutorService senders;
+    private Counter overflowCounter;
+
+    /**
+     * One subscriber. It starts paused, so that messages missed before it connected can be
+     * replayed first; live messages published in the meantime wait in its buffer.
+     */
+    public final class Subscription {
+
+        private final UUID sessionId;
+        private final SseEmitter emitter;
+        // Events are built once and shared by all subscribers of a session
+        private final Queue<Set<DataWithMediaType>> buffer;
+        private final AtomicBoolean draining = new AtomicBoolean(true);
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Subscription(UUID sessionId) {
+            this.sessionId = sessionId;
+            this.emitter = new SseEmitter(timeoutMs);
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        public SseEmitter emitter() {
+            return emitter;
+        }
+
+        /** Sends messages ahead of everything buffered; call before {@link #start()}. */
+        public void replay(List<MessageResponse> messages) throws IOException {
+            for (MessageResponse message : messages) {
+                emitter.send(event(message));
+            }
+        }
+
+        public void start() {
+            draining.set(false);
+            scheduleDrain();
+        }
+
+        /** Drops a subscription whose stream was never handed to the client. */
+        public void cancel() {
+            close();
+        }
+
+        private void enqueue(Set<DataWithMediaType> event) {
+            if (!buffer.offer(event)) {
+                overflowCounter.increment();
+                log.debug("Disconnecting a slow subscriber of session {}", sessionId);
+                close();
+                emitter.complete();
+                return;
+            }
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            if (!closed.get() && draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                Set<DataWithMediaType> event;
+                while (!closed.get() && (event = buffer.poll()) != null) {
+                    emitter.send(event);
+                }
+            } catch (IOException | IllegalStateException e) {
+                // The client went away or the emitter already completed
+                close();
+                return;
+            } finally {
+                draining.set(false);
+            }
+            // An event offered after the last poll but before the flag was cleared
+            if (!buffer.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+
+        private void close() {
+            if (closed.compareAndSet(false, true)) {
+                subscriptions.computeIfPresent(sessionId, (id, set) -> {
+                    set.remove(this);
+                    return set.isEmpty() ? null : set;
+                });
+                subscriberCount.decrementAndGet();
+                buffer.clear();
+            }
+        }
+    }
+
+    public MessageStreamService(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "message-stream-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        overflowCounter = meterRegistry.counter("ragchat.stream.overflows");
+        Gauge.builder("ragchat.stream.subscribers", subscriberCount, AtomicInteger::get)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        subscriptions.values().forEach(set -> set.forEach(subscription -> subscription.emitter.complete()));
+        senders.shutdown();
+    }
+
+    public Subscription subscribe(UUID sessionId) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new SubscriberLimitExceededException();
+        }
+        Subscription subscription = new Subscription(sessionId);
+        // Atomic with the removal of an emptied set in close()
+        subscriptions.compute(sessionId, (id, set) -> {
+            Set<Subscription> subscribers = set != null ? set : ConcurrentHashMap.newKeySet();
+            subscribers.add(subscription);
+            return subscribers;
+        });
+        subscription.emitter.onCompletion(subscription::close);
+        subscription.emitter.onTimeout(subscription.emitter::complete);
+        subscription.emitter.onError(e -> subscription.close());
+        return subscription;
+    }
+
+    /** Streams messages of one session once the current transaction commits. */
+    public void publish(UUID sessionId, List<MessageResponse> messages) {
+        if (messages.isEmpty() || !subscriptions.containsKey(sessionId)) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    fanOut(sessionId, messages);
+                }
+            });
+        } else {
+            fanOut(sessionId, messages);
+        }
+    }
+
+    // Keeps idle connections from being closed by proxies and detects clients that went away
+    @Scheduled(fixedDelayString = "${messages.stream.heartbeat-interval-ms:15000}")
+    public void sendHeartbeats() {
+        subscriptions.values().forEach(set -> set.forEach(subscription ->
+                subscription.enqueue(HEARTBEAT)));
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    private void fanOut(UUID sessionId, List<MessageResponse> messages) {
+        Set<Subscription> targets = subscriptions.get(sessionId);
+        if (targets == null) {
+            return;
+        }
+        List<Set<DataWithMediaType>> events = messages.stream().map(this::event).toList();
+        for (Subscription subscription : targets) {
+            for (Set<DataWithMediaType> event : events) {
+                subscription.enqueue(event);
+            }
+        }
+    }
+
+    // Serialized here rather than by each subscriber's emitter. The id is a delta-sync
+    // cursor, so a reconnecting client resumes right after the last message it received.
+    private Set<DataWithMediaType> event(MessageResponse message) {
+        try {
+            return SseEmitter.event()
+                    .id(MessageCursor.of(message).encode())
+                    .name("message")
+                    .data(objectMapper.writeValueAsString(message), MediaType.TEXT_PLAIN)
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize message " + message.getId(), e);
+        }
+    }
+}
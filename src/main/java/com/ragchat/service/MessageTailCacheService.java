@@ -0,0 +1,186 @@
+package com.ragchat.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.ragchat.dto.MessageResponse;
+import com.ragchat.entity.id.UuidV7;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * The most recent messages of recently used sessions, so that assembling a prompt from
+ * the end of a conversation does not query the database. Each session keeps at most
+ * {@code messages-per-session} messages; whole sessions are evicted once the cached
+ * messages exceed {@code max-bytes}. New messages are appended when their transaction
+ * commits, while a deleted message drops its session's tail. Both only reach the instance
+ * that handled them, so a tail also expires {@code expire-after-load-ms} after it was read
+ * from the database, which bounds how long other instances' changes stay invisible.
+ */
+@Service
+public class MessageTailCacheService {
+
+    // Rough heap cost of a cached response besides its strings
+    private static final int MESSAGE_OVERHEAD_BYTES = 160;
+
+    private static final Comparator<MessageResponse> HISTORY_ORDER = Comparator
+            .comparing(MessageResponse::getCreatedAt)
+            .thenComparing(MessageResponse::getId, UuidV7::compareUnsigned);
+
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${messages.tail-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${messages.tail-cache.messages-per-session:50}")
+    private int messagesPerSession;
+
+    @Value("${messages.tail-cache.max-bytes:33554432}")
+    private long maxBytes;
+
+    @Value("${messages.tail-cache.expire-after-load-ms:30000}")
+    private long expireAfterLoadMs;
+
+    Ticker ticker = Ticker.systemTicker();
+
+    private Cache<UUID, Tail> tails;
+
+    /** Oldest first; replaced rather than modified so the cache re-weighs it on every append. */
+    private record Tail(List<MessageResponse> messages, int bytes) {
+
+        static Tail of(List<MessageResponse> messages) {
+            return new Tail(List.copyOf(messages), messages.stream().mapToInt(MessageTailCacheService::weigh).sum());
+        }
+
+        Tail append(List<MessageResponse> added, int capacity) {
+            Set<UUID> ids = new HashSet<>();
+            messages.forEach(message -> ids.add(message.getId()));
+            List<MessageResponse> merged = new ArrayList<>(messages);
+            added.stream().filter(message -> ids.add(message.getId())).forEach(merged::add);
+            // Concurrent transactions may commit out of order
+            merged.sort(HISTORY_ORDER);
+            return of(merged.subList(Math.max(0, merged.size() - capacity), merged.size()));
+        }
+
+        List<MessageResponse> last(int limit) {
+            return messages.subList(Math.max(0, messages.size() - limit), messages.size());
+        }
+    }
+
+    public MessageTailCacheService(PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        long expireAfterLoadNanos = TimeUnit.MILLISECONDS.toNanos(expireAfterLoadMs);
+        tails = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .<UUID, Tail>weigher((sessionId, tail) -> tail.bytes())
+                // Unlike expireAfterWrite, local appends do not extend the time since the load
+                .expireAfter(new Expiry<UUID, Tail>() {
+                    @Override
+                    public long expireAfterCreate(UUID sessionId, Tail tail, long currentTime) {
+                        return expireAfterLoadNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(UUID sessionId, Tail tail, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(UUID sessionId, Tail tail, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .ticker(ticker)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, tails, "message-tails");
+    }
+
+    /**
+     * Returns the session's last {@code limit} messages, oldest first. On a miss the
+     * loader is asked for the last {@code messages-per-session} messages, in a read-write
+     * transaction so that it reads the primary: a tail loaded from a lagging replica would
+     * stay cached without messages that were already acknowledged.
+     */
+    public List<MessageResponse> getTail(UUID sessionId, int limit, IntFunction<List<MessageResponse>> loader) {
+        if (!enabled || limit > messagesPerSession) {
+            return transactionTemplate.execute(status -> loader.apply(limit));
+        }
+        Tail tail = tails.get(sessionId, id -> Tail.of(Objects.requireNonNull(
+                transactionTemplate.execute(status -> loader.apply(messagesPerSession)))));
+        return tail.last(limit);
+    }
+
+    /** Appends messages of one session to its tail, if cached, once the current transaction commits. */
+    public void append(UUID sessionId, List<MessageResponse> messages) {
+        if (!enabled || messages.isEmpty()) {
+            return;
+        }
+        Runnable append = () -> tails.asMap().computeIfPresent(sessionId,
+                (id, tail) -> tail.append(messages, messagesPerSession));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    append.run();
+                }
+            });
+        } else {
+            append.run();
+        }
+    }
+
+    public void evict(UUID sessionId) {
+        if (!enabled) {
+            return;
+        }
+        tails.invalidate(sessionId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    tails.invalidate(sessionId);
+                }
+            });
+        }
+    }
+
+    public void evictAll() {
+        if (enabled) {
+            tails.invalidateAll();
+        }
+    }
+
+    private static int weigh(MessageResponse message) {
+        int chars = length(message.getContent()) + length(message.getContext());
+        return MESSAGE_OVERHEAD_BYTES + 2 * chars;
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+}
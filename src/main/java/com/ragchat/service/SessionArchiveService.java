@@ -0,0 +1,254 @@
+package com.ragchat.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ragchat.dto.PendingMessage;
+import com.ragchat.entity.ChatMessage;
+import com.ragchat.entity.ChatSession;
+import com.ragchat.entity.ChatSessionArchive;
+import com.ragchat.entity.id.UuidV7;
+import com.ragchat.repository.ChatMessageBatchWriter;
+import com.ragchat.repository.ChatMessageRepository;
+import com.ragchat.repository.ChatSessionArchiveRepository;
+import com.ragchat.repository.ChatSessionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Moves idle sessions out of chat_messages into compressed segment files. Archived
+ * history is read back transparently, and a session returns to the hot table the
+ * next time a message is appended to it.
+ */
+@Slf4j
+@Service
+public class SessionArchiveService {
+
+    // Matches the database ordering of (created_at, id), which compares UUIDs as unsigned bytes
+    public static final Comparator<ChatMessage> HISTORY_ORDER = Comparator
+            .comparing(ChatMessage::getCreatedAt)
+            .thenComparing(ChatMessage::getId, UuidV7::compareUnsigned);
+
+    private static final int DELETE_CHUNK_SIZE = 1000;
+
+    private final ChatSessionRepository sessionRepository;
+    private final ChatMessageRepository messageRepository;
+    private final ChatSessionArchiveRepository archiveRepository;
+    private final ChatMessageBatchWriter batchWriter;
+    private final ContextStoreService contextStore;
+    private final MessageEmbeddingIndex embeddingIndex;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${archive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${archive.idle-after:7d}")
+    private Duration idleAfter;
+
+    @Value("${archive.sessions-per-run:50}")
+    private int sessionsPerRun;
+
+    @Value("${archive.directory:./data/archive}")
+    private String directory;
+
+    @Value("${archive.segment-max-bytes:67108864}")
+    private long segmentMaxBytes;
+
+    private SessionArchiveStore store;
+    private Counter archivedCounter;
+    private Counter rehydratedCounter;
+
+    public SessionArchiveService(ChatSessionRepository sessionRepository,
+                                 ChatMessageRepository messageRepository,
+                                 ChatSessionArchiveRepository archiveRepository,
+                                 ChatMessageBatchWriter batchWriter,
+                                 ContextStoreService contextStore,
+                                 MessageEmbeddingIndex embeddingIndex,
+                                 ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry,
+                                 PlatformTransactionManager transactionManager) {
+        this.sessionRepository = sessionRepository;
+        this.messageRepository = messageRepository;
+        this.archiveRepository = archiveRepository;
+        this.batchWriter = batchWriter;
+        this.contextStore = contextStore;
+        this.embeddingIndex = embeddingIndex;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        store = new SessionArchiveStore(Path.of(directory), objectMapper, segmentMaxBytes);
+        archivedCounter = meterRegistry.counter("ragchat.archive.sessions.archived");
+        rehydratedCounter = meterRegistry.counter("ragchat.archive.sessions.rehydrated");
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        store.close();
+    }
+
+    @Scheduled(fixedDelayString = "${archive.interval-ms:600000}",
+            initialDelayString = "${archive.interval-ms:600000}")
+    public void archiveIdleSessions() {
+        // Blocks may remain from a run with archiving enabled
+        fillMessageIdRanges();
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime idleSince = LocalDateTime.now().minus(idleAfter);
+        List<UUID> sessionIds = sessionRepository.findArchiveCandidates(idleSince, Limit.of(sessionsPerRun));
+        for (UUID sessionId : sessionIds) {
+            try {
+                archiveSession(sessionId);
+            } catch (RuntimeException e) {
+                log.error("Failed to archive session {}: {}", sessionId, e.getMessage(), e);
+            }
+        }
+    }
+
+    public boolean archiveSession(UUID sessionId) {
+        List<PendingMessage> messages = transactionTemplate.execute(status -> {
+            List<ChatMessage> rows = messageRepository.findBySessionIdOrderByCreatedAtAscIdAsc(sessionId, Limit.unlimited());
+            contextStore.prefetch(rows);
+            return rows.stream().map(this::toPending).toList();
+        });
+        if (messages.isEmpty()) {
+            return false;
+        }
+
+        // The block is written before the rows are removed; if the delete rolls back it is simply never referenced
+        SessionArchiveStore.BlockLocation location = store.append(messages);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            List<UUID> ids = messages.stream().map(PendingMessage::id).toList();
+            int deleted = 0;
+            for (int from = 0; from < ids.size(); from += DELETE_CHUNK_SIZE) {
+                List<UUID> chunk = ids.subList(from, Math.min(from + DELETE_CHUNK_SIZE, ids.size()));
+                // Archived blocks carry the context inline, so the rows give up their references
+                contextStore.release(messageRepository.findContextHashesByIdIn(chunk));
+                deleted += messageRepository.deleteByIdIn(chunk);
+            }
+            if (deleted != ids.size()) {
+                throw new IllegalStateException("Messages changed while session " + sessionId + " was being archived");
+            }
+            archiveRepository.save(ChatSessionArchive.builder()
+                    .sessionId(sessionId)
+                    .segmentId(location.segment())
+                    .segmentOffset(location.offset())
+                    .blockLength(location.length())
+                    .messageCount(messages.size())
+                    .archivedAt(LocalDateTime.now())
+                    .minMessageId(ids.stream().min(UuidV7::compareUnsigned).orElseThrow())
+                    .maxMessageId(ids.stream().max(UuidV7::compareUnsigned).orElseThrow())
+                    .build());
+        });
+
+        // Only the hot table is indexed; the embeddings travel in the block and return on rehydration
+        embeddingIndex.removeSession(sessionId);
+        archivedCounter.increment();
+        log.info("Archived session {} ({} messages, {} bytes) to segment {}",
+                sessionId, messages.size(), location.length(), location.segment());
+        return true;
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<List<ChatMessage>> findArchivedHistory(UUID sessionId) {
+        Optional<ChatSessionArchive> archive = archiveRepository.findById(sessionId);
+        if (archive.isEmpty()) {
+            return Optional.empty();
+        }
+
+        ChatSession session = sessionRepository.getReferenceById(sessionId);
+        List<ChatMessage> history = new ArrayList<>(archive.get().getMessageCount());
+        for (PendingMessage pending : store.read(locationOf(archive.get()))) {
+            ChatMessage message = pending.toEntity();
+            message.setSession(session);
+            history.add(message);
+        }
+        // Appends that raced with archiving stay in the hot table until the next rehydration
+        history.addAll(messageRepository.findBySessionIdOrderByCreatedAtAscIdAsc(sessionId, Limit.unlimited()));
+        history.sort(HISTORY_ORDER);
+        return Optional.of(history);
+    }
+
+    // A single message of a live session, looked up through the blocks whose id range covers it
+    @Transactional(readOnly = true)
+    public Optional<ChatMessage> findArchivedMessage(UUID messageId) {
+        for (ChatSessionArchive archive : archiveRepository.findCoveringMessageId(messageId)) {
+            Optional<PendingMessage> match = store.read(locationOf(archive)).stream()
+                    .filter(pending -> pending.id().equals(messageId))
+                    .findFirst();
+            if (match.isPresent()) {
+                return sessionRepository.findById(archive.getSessionId()).map(session -> {
+                    ChatMessage message = match.get().toEntity();
+                    message.setSession(session);
+                    return message;
+                });
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Transactional(readOnly = true)
+    public long getArchivedMessageCount(UUID sessionId) {
+        return archiveRepository.findById(sessionId)
+                .map(ChatSessionArchive::getMessageCount)
+                .orElse(0);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void rehydrateIfArchived(UUID sessionId) {
+        archiveRepository.findForUpdate(sessionId).ifPresent(archive -> {
+            List<PendingMessage> messages = store.read(locationOf(archive));
+            batchWriter.insertAll(messages);
+            embeddingIndex.indexPending(messages);
+            archiveRepository.delete(archive);
+            rehydratedCounter.increment();
+            log.info("Rehydrated archived session {} ({} messages)", sessionId, messages.size());
+        });
+    }
+
+    void fillMessageIdRanges() {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (ChatSessionArchive archive : archiveRepository.findByMinMessageIdIsNull(Limit.of(sessionsPerRun))) {
+                List<UUID> ids = store.read(locationOf(archive)).stream().map(PendingMessage::id).toList();
+                archive.setMinMessageId(ids.stream().min(UuidV7::compareUnsigned).orElseThrow());
+                archive.setMaxMessageId(ids.stream().max(UuidV7::compareUnsigned).orElseThrow());
+            }
+        });
+    }
+
+    private static SessionArchiveStore.BlockLocation locationOf(ChatSessionArchive archive) {
+        return new SessionArchiveStore.BlockLocation(
+                archive.getSegmentId(), archive.getSegmentOffset(), archive.getBlockLength());
+    }
+
+    private PendingMessage toPending(ChatMessage message) {
+        return new PendingMessage(message.getId(), message.getSession().getId(), message.getSender(),
+                message.getContent(), contextStore.resolve(message), message.getEmbedding(), message.getCreatedAt());
+    }
+}
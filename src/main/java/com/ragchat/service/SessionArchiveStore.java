@@ -0,0 +1,189 @@
+package com.ragchat.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ragchat.dto.PendingMessage;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Append-only segment files holding archived sessions. Each session is written as one
+ * gzip-compressed NDJSON block; callers keep the block location and read it back
+ * through a read-only memory mapping of the segment.
+ */
+@Slf4j
+public class SessionArchiveStore implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".archive";
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+    private final long maxSegmentBytes;
+
+    private final Map<Long, MappedByteBuffer> mappings = new ConcurrentHashMap<>();
+    private long currentSegment;
+    private FileChannel channel;
+
+    public record BlockLocation(long segment, long offset, int length) {
+    }
+
+    public SessionArchiveStore(Path directory, ObjectMapper objectMapper, long maxSegmentBytes) throws IOException {
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+        // A single mapping cannot exceed 2 GB
+        this.maxSegmentBytes = Math.min(maxSegmentBytes, Integer.MAX_VALUE);
+        Files.createDirectories(directory);
+
+        // Keep appending to the newest segment left by a previous run
+        currentSegment = listSegments().stream().mapToLong(SessionArchiveStore::segmentIndex).max().orElse(1);
+        openSegment();
+    }
+
+    public synchronized BlockLocation append(List<PendingMessage> messages) {
+        byte[] block = encode(messages);
+        try {
+            if (channel.size() > 0 && channel.size() + block.length > maxSegmentBytes) {
+                channel.close();
+                currentSegment++;
+                openSegment();
+            }
+            long offset = channel.size();
+            ByteBuffer buffer = ByteBuffer.wrap(block);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+            return new BlockLocation(currentSegment, offset, block.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to archive segment " + currentSegment, e);
+        }
+    }
+
+    public List<PendingMessage> read(BlockLocation location) {
+        ByteBuffer block = mapping(location.segment(), location.offset() + location.length())
+                .slice((int) location.offset(), location.length());
+
+        List<PendingMessage> messages = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteBufferInputStream(block)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    messages.add(objectMapper.readValue(line, PendingMessage.class));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read archive block in segment " + location.segment(), e);
+        }
+        return messages;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        mappings.clear();
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private byte[] encode(List<PendingMessage> messages) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes, 8192)) {
+            for (PendingMessage message : messages) {
+                out.write(objectMapper.writeValueAsBytes(message));
+                out.write('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode archive block", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private MappedByteBuffer mapping(long segment, long requiredBytes) {
+        MappedByteBuffer mapped = mappings.get(segment);
+        if (mapped != null && mapped.capacity() >= requiredBytes) {
+            return mapped;
+        }
+        // The current segment grows as sessions are appended, so remap when a block lies past the old end
+        return mappings.compute(segment, (key, existing) -> {
+            if (existing != null && existing.capacity() >= requiredBytes) {
+                return existing;
+            }
+            try (FileChannel file = FileChannel.open(segmentPath(segment), StandardOpenOption.READ)) {
+                return file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to map archive segment " + segment, e);
+            }
+        });
+    }
+
+    private void openSegment() throws IOException {
+        channel = FileChannel.open(segmentPath(currentSegment),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        log.debug("Appending archived sessions to segment {}", currentSegment);
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long segment) {
+        return directory.resolve(SEGMENT_PREFIX + segment + SEGMENT_SUFFIX);
+    }
+
+    private static long segmentIndex(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(target, offset, count);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.ragchat.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ragchat.dto.SessionResponse;
+import com.ragchat.repository.ChatSessionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * In-process cache of session lookups and per-user session lists, which run before
+ * almost every message operation. Entries are evicted when a session or its message
+ * statistics change, both immediately and once the transaction completes, so a read that
+ * raced with the write cannot keep the old state cached. Entries also expire after a
+ * fixed time, which bounds how long writes made by other instances stay invisible.
+ * Misses are loaded from the primary, never from a replica that may not have the write
+ * behind the eviction yet.
+ */
+@Service
+public class SessionCacheService {
+
+    private final ChatSessionRepository sessionRepository;
+    private final MeterRegistry meterRegistry;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate newTransactionTemplate;
+
+    @Value("${session.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${session.cache.max-sessions:10000}")
+    private long maxSessions;
+
+    @Value("${session.cache.max-user-lists:10000}")
+    private long maxUserLists;
+
+    @Value("${session.cache.expire-after-write-ms:30000}")
+    private long expireAfterWriteMs;
+
+    private Cache<UUID, SessionResponse> sessions;
+    private Cache<UserSessions, List<SessionResponse>> userSessions;
+    // Owners never change; remembered so a session's cached lists can be evicted without a query
+    private Cache<UUID, String> owners;
+
+    private record UserSessions(String userId, boolean favoritesOnly) {
+    }
+
+    public SessionCacheService(ChatSessionRepository sessionRepository, MeterRegistry meterRegistry,
+                               PlatformTransactionManager transactionManager) {
+        this.sessionRepository = sessionRepository;
+        this.meterRegistry = meterRegistry;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    public void start() {
+        Duration expireAfterWrite = Duration.ofMillis(expireAfterWriteMs);
+        sessions = Caffeine.newBuilder()
+                .maximumSize(maxSessions)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        userSessions = Caffeine.newBuilder()
+                .maximumSize(maxUserLists)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        owners = Caffeine.newBuilder()
+                .maximumSize(maxSessions * 4)
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, sessions, "sessions");
+        CaffeineCacheMetrics.monitor(meterRegistry, userSessions, "user-sessions");
+    }
+
+    public Optional<SessionResponse> findSession(UUID sessionId) {
+        if (!enabled) {
+            return sessionRepository.findResponseById(sessionId);
+        }
+        SessionResponse session = sessions.get(sessionId, id -> onPrimary(() -> sessionRepository.findResponseById(id))
+                .map(this::rememberOwner)
+                .orElse(null));
+        return Optional.ofNullable(session);
+    }
+
+    public boolean exists(UUID sessionId) {
+        return findSession(sessionId).isPresent();
+    }
+
+    public List<SessionResponse> findUserSessions(String userId) {
+        return findLists(new UserSessions(userId, false), () -> sessionRepository.findResponsesByUserId(userId));
+    }
+
+    public List<SessionResponse> findFavoriteSessions(String userId) {
+        return findLists(new UserSessions(userId, true), () -> sessionRepository.findFavoriteResponsesByUserId(userId));
+    }
+
+    /**
+     * Evicts a session whose attributes or message statistics change in the current
+     * transaction, together with its owner's lists. Call before the change is made so
+     * that a session that is about to be deleted can still be looked up.
+     */
+    public void evictSession(UUID sessionId) {
+        if (enabled) {
+            evictSession(sessionId, ownerOf(sessionId));
+        }
+    }
+
+    public void evictSession(UUID sessionId, String userId) {
+        if (!enabled) {
+            return;
+        }
+        evict(() -> {
+            sessions.invalidate(sessionId);
+            if (userId != null) {
+                userSessions.invalidateAll(listsOf(userId));
+            }
+        });
+    }
+
+    /** Evicts the user's lists, e.g. after a session was added to them. */
+    public void evictSessionLists(String userId) {
+        if (enabled) {
+            evict(() -> userSessions.invalidateAll(listsOf(userId)));
+        }
+    }
+
+    /** Evicts the user's lists and every cached session of the user. */
+    public void evictUser(String userId) {
+        if (enabled) {
+            evict(() -> {
+                sessions.asMap().values().removeIf(session -> userId.equals(session.getUserId()));
+                userSessions.invalidateAll(listsOf(userId));
+            });
+        }
+    }
+
+    public void evictAll() {
+        if (enabled) {
+            evict(() -> {
+                sessions.invalidateAll();
+                userSessions.invalidateAll();
+            });
+        }
+    }
+
+    private List<SessionResponse> findLists(UserSessions key, Supplier<List<SessionResponse>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        return userSessions.get(key, k -> {
+            List<SessionResponse> loaded = List.copyOf(onPrimary(loader));
+            loaded.forEach(this::rememberOwner);
+            return loaded;
+        });
+    }
+
+    // Callers usually hold a read-only transaction, which is routed to a replica; joining it
+    // would cache a row from before the write that evicted the entry for the whole expiry
+    private <T> T onPrimary(Supplier<T> loader) {
+        TransactionTemplate template = TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                ? newTransactionTemplate : transactionTemplate;
+        return template.execute(status -> loader.get());
+    }
+
+    private SessionResponse rememberOwner(SessionResponse session) {
+        owners.put(session.getId(), session.getUserId());
+        return session;
+    }
+
+    private String ownerOf(UUID sessionId) {
+        String owner = owners.getIfPresent(sessionId);
+        if (owner == null && userSessions.estimatedSize() > 0) {
+            owner = sessionRepository.findUserIdById(sessionId).orElse(null);
+        }
+        return owner;
+    }
+
+    private static List<UserSessions> listsOf(String userId) {
+        return List.of(new UserSessions(userId, false), new UserSessions(userId, true));
+    }
+
+    private static void evict(Runnable eviction) {
+        eviction.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    eviction.run();
+                }
+            });
+        }
+    }
+}
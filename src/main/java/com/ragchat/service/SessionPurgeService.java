@@ -0,0 +1,91 @@
+package com.ragchat.service;
+
+import com.ragchat.repository.ChatMessageRepository;
+import com.ragchat.repository.ChatSessionArchiveRepository;
+import com.ragchat.repository.ChatSessionRepository;
+import com.ragchat.repository.ChatSessionStatsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "session.purge.enabled", havingValue = "true", matchIfMissing = true)
+public class SessionPurgeService {
+
+    private final ChatSessionRepository sessionRepository;
+    private final ChatMessageRepository messageRepository;
+    private final ChatSessionStatsRepository statsRepository;
+    private final ChatSessionArchiveRepository archiveRepository;
+    private final ContextStoreService contextStore;
+    private final MessageEmbeddingIndex embeddingIndex;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${session.purge.chunk-size:5000}")
+    private int chunkSize;
+
+    @Value("${session.purge.sessions-per-run:100}")
+    private int sessionsPerRun;
+
+    public SessionPurgeService(ChatSessionRepository sessionRepository,
+                               ChatMessageRepository messageRepository,
+                               ChatSessionStatsRepository statsRepository,
+                               ChatSessionArchiveRepository archiveRepository,
+                               ContextStoreService contextStore,
+                               MessageEmbeddingIndex embeddingIndex,
+                               PlatformTransactionManager transactionManager) {
+        this.sessionRepository = sessionRepository;
+        this.messageRepository = messageRepository;
+        this.statsRepository = statsRepository;
+        this.archiveRepository = archiveRepository;
+        this.contextStore = contextStore;
+        this.embeddingIndex = embeddingIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(fixedDelayString = "${session.purge.interval-ms:10000}",
+            initialDelayString = "${session.purge.interval-ms:10000}")
+    public void purgeDeletedSessions() {
+        List<UUID> sessionIds = sessionRepository.findDeletedSessionIds(sessionsPerRun).stream()
+                .map(UUID::fromString)
+                .toList();
+        for (UUID sessionId : sessionIds) {
+            try {
+                purgeSession(sessionId);
+            } catch (RuntimeException e) {
+                log.error("Failed to purge session {}: {}", sessionId, e.getMessage(), e);
+            }
+        }
+    }
+
+    public long purgeSession(UUID sessionId) {
+        long purged = 0;
+        int deleted;
+        // Each chunk commits on its own so no single transaction holds locks for the whole session
+        do {
+            deleted = transactionTemplate.execute(status -> {
+                contextStore.release(messageRepository.findContextHashChunkBySessionId(sessionId, chunkSize));
+                return messageRepository.deleteChunkBySessionId(sessionId, chunkSize);
+            });
+            purged += deleted;
+        } while (deleted > 0);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            statsRepository.deleteBySessionId(sessionId);
+            archiveRepository.deleteBySessionId(sessionId);
+            sessionRepository.purgeDeleted(sessionId);
+        });
+
+        // Every way of deleting sessions ends here; until then searches filter them out
+        embeddingIndex.removeSession(sessionId);
+        log.info("Purged deleted session {} and {} messages", sessionId, purged);
+        return purged;
+    }
+}
@@ -0,0 +1,103 @@
+package com.ragchat.service;
+
+import com.ragchat.entity.ChatMessage;
+import com.ragchat.entity.ChatSessionStats;
+import com.ragchat.repository.ChatSessionStatsRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SessionStatsService {
+
+    private final ChatSessionStatsRepository statsRepository;
+    private final SessionCacheService sessionCache;
+    private final JdbcTemplate jdbcTemplate;
+
+    private boolean postgreSql;
+
+    @PostConstruct
+    public void start() {
+        postgreSql = isPostgreSql();
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordMessageAdded(UUID sessionId, ChatMessage message) {
+        recordMessagesAdded(sessionId, List.of(message));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordMessagesAdded(UUID sessionId, List<ChatMessage> messages) {
+        long bytes = 0;
+        LocalDateTime lastCreatedAt = null;
+        for (ChatMessage message : messages) {
+            bytes += contentBytes(message);
+            if (lastCreatedAt == null || message.getCreatedAt().isAfter(lastCreatedAt)) {
+                lastCreatedAt = message.getCreatedAt();
+            }
+        }
+
+        sessionCache.evictSession(sessionId);
+        int updated = statsRepository.incrementStats(sessionId, messages.size(), bytes, lastCreatedAt);
+        // Sessions created before stats existed are backfilled on first write;
+        // the backfill already includes the messages that were just inserted.
+        if (updated == 0 && backfill(sessionId) == 0) {
+            // A concurrent first write backfilled the session without these messages
+            statsRepository.incrementStats(sessionId, messages.size(), bytes, lastCreatedAt);
+        }
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordMessageRemoved(UUID sessionId, ChatMessage message) {
+        sessionCache.evictSession(sessionId);
+        int updated = statsRepository.decrementStats(sessionId, contentBytes(message));
+        if (updated == 0 && backfill(sessionId) == 0) {
+            statsRepository.decrementStats(sessionId, contentBytes(message));
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<Long> getMessageCount(UUID sessionId) {
+        return statsRepository.findById(sessionId).map(ChatSessionStats::getMessageCount);
+    }
+
+    @Transactional
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillMissingStats() {
+        int inserted = statsRepository.backfillMissingStats();
+        if (inserted > 0) {
+            log.info("Backfilled message statistics for {} sessions", inserted);
+        }
+    }
+
+    private int backfill(UUID sessionId) {
+        return postgreSql ? statsRepository.backfillStatsIfAbsent(sessionId) : statsRepository.backfillStats(sessionId);
+    }
+
+    private boolean isPostgreSql() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        return "PostgreSQL".equalsIgnoreCase(product);
+    }
+
+    static long contentBytes(ChatMessage message) {
+        return message.getContent() != null
+                ? message.getContent().getBytes(StandardCharsets.UTF_8).length
+                : 0L;
+    }
+}
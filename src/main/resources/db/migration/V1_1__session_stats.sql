@@ -0,0 +1,10 @@
+-- Denormalized per-session message statistics (SessionStatsService); sessions that
+-- predate this table are backfilled at startup and on their first write
+CREATE TABLE IF NOT EXISTS chat_session_stats (
+    session_id          UUID         NOT NULL,
+    message_count       BIGINT       NOT NULL,
+    last_message_at     TIMESTAMP(6),
+    total_content_bytes BIGINT       NOT NULL,
+    CONSTRAINT chat_session_stats_pkey PRIMARY KEY (session_id),
+    CONSTRAINT fk_chat_session_stats_session FOREIGN KEY (session_id) REFERENCES chat_sessions (id)
+);
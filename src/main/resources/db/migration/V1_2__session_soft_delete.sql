@@ -0,0 +1,2 @@
+-- Soft-deleted sessions; SessionPurgeService removes their messages in the background
+ALTER TABLE chat_sessions ADD COLUMN IF NOT EXISTS deleted_at TIMESTAMP(6);
@@ -0,0 +1,10 @@
+-- Location of each archived session's messages in the segment files (SessionArchiveService)
+CREATE TABLE IF NOT EXISTS chat_session_archives (
+    session_id     UUID         NOT NULL,
+    segment_id     BIGINT       NOT NULL,
+    segment_offset BIGINT       NOT NULL,
+    block_length   INTEGER      NOT NULL,
+    message_count  INTEGER      NOT NULL,
+    archived_at    TIMESTAMP(6) NOT NULL,
+    CONSTRAINT chat_session_archives_pkey PRIMARY KEY (session_id)
+);
@@ -0,0 +1,25 @@
+-- Schema of the first release, as Hibernate generated it (ddl-auto=update).
+-- Databases created that way are baselined at this version and skip it, so
+-- everything added since belongs in a later migration, never here.
+
+CREATE TABLE IF NOT EXISTS chat_sessions (
+    id          UUID         NOT NULL,
+    user_id     VARCHAR(255) NOT NULL,
+    title       VARCHAR(255) NOT NULL,
+    is_favorite BOOLEAN      NOT NULL,
+    created_at  TIMESTAMP(6) NOT NULL,
+    updated_at  TIMESTAMP(6) NOT NULL,
+    CONSTRAINT chat_sessions_pkey PRIMARY KEY (id)
+);
+
+-- MessagePartitioningMigration (1.4) partitions this table while it is still empty
+CREATE TABLE IF NOT EXISTS chat_messages (
+    id         UUID         NOT NULL,
+    session_id UUID         NOT NULL,
+    sender     VARCHAR(255) NOT NULL CHECK (sender IN ('USER', 'ASSISTANT')),
+    content    TEXT         NOT NULL,
+    context    TEXT,
+    created_at TIMESTAMP(6) NOT NULL,
+    CONSTRAINT chat_messages_pkey PRIMARY KEY (id),
+    CONSTRAINT fk_chat_messages_session FOREIGN KEY (session_id) REFERENCES chat_sessions (id)
+);
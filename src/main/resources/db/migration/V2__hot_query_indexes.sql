@@ -0,0 +1,17 @@
+-- History reads, cursor pages and exports: WHERE session_id = ? ORDER BY created_at, id
+CREATE INDEX IF NOT EXISTS idx_chat_messages_session_created
+    ON chat_messages (session_id, created_at, id);
+
+-- Session lists: WHERE user_id = ? ORDER BY updated_at DESC
+CREATE INDEX IF NOT EXISTS idx_chat_sessions_user_updated
+    ON chat_sessions (user_id, updated_at DESC);
+
+-- Favorites are a small subset of a user's sessions
+CREATE INDEX IF NOT EXISTS idx_chat_sessions_user_favorites
+    ON chat_sessions (user_id, updated_at DESC)
+    WHERE is_favorite AND deleted_at IS NULL;
+
+-- Background purge scans only soft-deleted sessions
+CREATE INDEX IF NOT EXISTS idx_chat_sessions_deleted
+    ON chat_sessions (deleted_at)
+    WHERE deleted_at IS NOT NULL;
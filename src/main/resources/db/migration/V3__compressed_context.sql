@@ -0,0 +1,5 @@
+-- zstd-compressed RAG context (MessageCompressionService); at most one of
+-- context / context_zstd is set. EXTERNAL keeps the already compressed bytes out
+-- of line without a second, pointless TOAST compression attempt.
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS context_zstd BYTEA;
+ALTER TABLE chat_messages ALTER COLUMN context_zstd SET STORAGE EXTERNAL;
@@ -0,0 +1,18 @@
+-- Content-addressed RAG contexts (ContextStoreService): one row per distinct
+-- context, keyed by its SHA-256 and shared by every message that references it
+CREATE TABLE IF NOT EXISTS chat_contexts (
+    hash         CHAR(64)     NOT NULL,
+    content      TEXT,
+    content_zstd BYTEA,
+    byte_length  INTEGER      NOT NULL,
+    ref_count    BIGINT       NOT NULL,
+    created_at   TIMESTAMP(6) NOT NULL,
+    CONSTRAINT chat_contexts_pkey PRIMARY KEY (hash)
+);
+ALTER TABLE chat_contexts ALTER COLUMN content_zstd SET STORAGE EXTERNAL;
+
+-- Lets the sweep find rows no message references any more
+CREATE INDEX IF NOT EXISTS idx_chat_contexts_unreferenced
+    ON chat_contexts (hash) WHERE ref_count <= 0;
+
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS context_hash CHAR(64);
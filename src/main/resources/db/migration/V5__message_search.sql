@@ -0,0 +1,9 @@
+-- Full-text search over message content (MessageSearchService). PostgreSQL computes
+-- the generated column on every insert, whichever path writes the row; the text
+-- search configuration must match ChatMessageSearchRepository.
+-- Adding a stored generated column rewrites the table once.
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS search_vector TSVECTOR
+    GENERATED ALWAYS AS (to_tsvector('english', content)) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_chat_messages_search
+    ON chat_messages USING GIN (search_vector);
@@ -0,0 +1,5 @@
+-- Client-computed message embeddings as packed little-endian float32 (EmbeddingVector),
+-- loaded into MessageEmbeddingIndex at startup. Float bits do not compress, so EXTERNAL
+-- skips the pointless TOAST compression attempt.
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS embedding BYTEA;
+ALTER TABLE chat_messages ALTER COLUMN embedding SET STORAGE EXTERNAL;
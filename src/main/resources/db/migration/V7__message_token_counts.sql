@@ -0,0 +1,9 @@
+-- Prompt size of each message's content (TokenCounter), computed by the application on
+-- insert so that a context window is selected by walking counts rather than content.
+-- Rows written earlier stay NULL and are counted from their content when read.
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS token_count INTEGER;
+
+-- System turns, e.g. the instructions that open a conversation
+ALTER TABLE chat_messages DROP CONSTRAINT IF EXISTS chat_messages_sender_check;
+ALTER TABLE chat_messages ADD CONSTRAINT chat_messages_sender_check
+    CHECK (sender IN ('USER', 'ASSISTANT', 'SYSTEM'));
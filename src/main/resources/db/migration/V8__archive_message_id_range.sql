@@ -0,0 +1,8 @@
+-- Smallest and largest message id in each archived block, so a message id can be traced
+-- to the blocks that may hold it. Message ids are UUIDv7 and so ordered by creation time.
+-- Blocks archived before this migration are filled in by SessionArchiveService.
+ALTER TABLE chat_session_archives ADD COLUMN IF NOT EXISTS min_message_id UUID;
+ALTER TABLE chat_session_archives ADD COLUMN IF NOT EXISTS max_message_id UUID;
+
+CREATE INDEX IF NOT EXISTS idx_chat_session_archives_message_ids
+    ON chat_session_archives (min_message_id, max_message_id);
@@ -0,0 +1,74 @@
+package com.ragchat.benchmark;
+
+import com.ragchat.RagChatStorageApplication;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures application start time with Hibernate schema inference (ddl-auto=update)
+ * against the migration-owned schema (ddl-auto=none) on an already-populated database.
+ * Runs against in-memory H2 by default; pass the same -Dbenchmark.jdbc.* properties as
+ * {@link UuidInsertBenchmarkTest} to measure PostgreSQL.
+ */
+@Tag("benchmark")
+class SchemaStartupBenchmarkTest {
+
+    private static final String JDBC_URL = System.getProperty("benchmark.jdbc.url", "jdbc:h2:mem:startupbench;DB_CLOSE_DELAY=-1");
+    private static final String JDBC_USER = System.getProperty("benchmark.jdbc.user", "sa");
+    private static final String JDBC_PASSWORD = System.getProperty("benchmark.jdbc.password", "");
+    private static final int RUNS = Integer.getInteger("benchmark.runs", 5);
+
+    @Test
+    @DisplayName("Startup time: ddl-auto=update vs migration-owned schema")
+    void compareStartupTime() {
+        // The first start creates the schema and warms class loading for both variants
+        start("create");
+
+        long[] update = new long[RUNS];
+        long[] none = new long[RUNS];
+        for (int run = 0; run < RUNS; run++) {
+            update[run] = start("update");
+            none[run] = start("none");
+        }
+
+        long updateMedian = median(update);
+        long noneMedian = median(none);
+        System.out.printf("%nStartup benchmark (%d runs, %s)%n", RUNS, JDBC_URL);
+        System.out.printf("  ddl-auto=update: %,6d ms median%n", updateMedian);
+        System.out.printf("  ddl-auto=none  : %,6d ms median (%,d ms saved)%n%n", noneMedian, updateMedian - noneMedian);
+
+        assertThat(noneMedian).isPositive();
+    }
+
+    private long start(String ddlAuto) {
+        long begin = System.nanoTime();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(RagChatStorageApplication.class)
+                .profiles("test")
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=" + JDBC_URL,
+                        "spring.datasource.username=" + JDBC_USER,
+                        "spring.datasource.password=" + JDBC_PASSWORD,
+                        "spring.flyway.enabled=false",
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.hibernate.ddl-auto=" + ddlAuto,
+                        "logging.level.root=WARN",
+                        "logging.level.com.ragchat=WARN")
+                .run()) {
+            return (System.nanoTime() - begin) / 1_000_000;
+        }
+    }
+
+    private static long median(long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,84 @@
+package com.ragchat.benchmark;
+
+import com.ragchat.entity.id.UuidV7;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares primary-key insert throughput of random (v4) and time-ordered (v7) UUIDs.
+ * Runs against in-memory H2 by default; point it at PostgreSQL to see the B-tree effect:
+ * <pre>
+ * mvn test -Pbenchmark -Dtest=UuidInsertBenchmarkTest \
+ *     -Dbenchmark.jdbc.url=jdbc:postgresql://localhost:5432/ragchat \
+ *     -Dbenchmark.jdbc.user=postgres -Dbenchmark.jdbc.password=postgres -Dbenchmark.rows=2000000
+ * </pre>
+ */
+@Tag("benchmark")
+class UuidInsertBenchmarkTest {
+
+    private static final String JDBC_URL = System.getProperty("benchmark.jdbc.url", "jdbc:h2:mem:uuidbench;DB_CLOSE_DELAY=-1");
+    private static final String JDBC_USER = System.getProperty("benchmark.jdbc.user", "sa");
+    private static final String JDBC_PASSWORD = System.getProperty("benchmark.jdbc.password", "");
+    private static final int ROWS = Integer.getInteger("benchmark.rows", 500_000);
+    private static final int BATCH_SIZE = 1_000;
+
+    @Test
+    @DisplayName("Insert throughput: random v4 vs time-ordered v7 primary keys")
+    void compareInsertThroughput() throws Exception {
+        // Warm up both paths before measuring
+        insert("uuid_bench_warmup_v4", UUID::randomUUID, ROWS / 10);
+        insert("uuid_bench_warmup_v7", UuidV7::randomUuid, ROWS / 10);
+
+        double random = insert("uuid_bench_v4", UUID::randomUUID, ROWS);
+        double timeOrdered = insert("uuid_bench_v7", UuidV7::randomUuid, ROWS);
+
+        System.out.printf("%nUUID insert benchmark (%d rows, %s)%n", ROWS, JDBC_URL);
+        System.out.printf("  random v4      : %,12.0f rows/s%n", random);
+        System.out.printf("  time-ordered v7: %,12.0f rows/s (%.2fx)%n%n", timeOrdered, timeOrdered / random);
+
+        assertThat(timeOrdered).isPositive();
+    }
+
+    private double insert(String table, Supplier<UUID> ids, int rows) throws Exception {
+        try (Connection connection = DriverManager.getConnection(JDBC_URL, JDBC_USER, JDBC_PASSWORD)) {
+            try (Statement ddl = connection.createStatement()) {
+                ddl.execute("DROP TABLE IF EXISTS " + table);
+                ddl.execute("CREATE TABLE " + table + " (id UUID PRIMARY KEY, payload VARCHAR(64) NOT NULL)");
+            }
+            connection.setAutoCommit(false);
+
+            long start = System.nanoTime();
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO " + table + " (id, payload) VALUES (?, ?)")) {
+                for (int i = 1; i <= rows; i++) {
+                    insert.setObject(1, ids.get());
+                    insert.setString(2, "message-" + i);
+                    insert.addBatch();
+                    if (i % BATCH_SIZE == 0) {
+                        insert.executeBatch();
+                        connection.commit();
+                    }
+                }
+                insert.executeBatch();
+                connection.commit();
+            }
+            long elapsed = System.nanoTime() - start;
+
+            try (Statement ddl = connection.createStatement()) {
+                ddl.execute("DROP TABLE " + table);
+            }
+            connection.commit();
+            return rows / (elapsed / 1_000_000_000.0);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.ragchat.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReplicaRoutingDataSourceTest {
+
+    private DataSource primary;
+    private DataSource replica;
+    private ReplicaRoutingDataSource dataSource;
+    private MockHttpServletRequest request;
+    private MockHttpServletResponse response;
+
+    @BeforeEach
+    void setUp() {
+        primary = mock(DataSource.class);
+        replica = mock(DataSource.class);
+        dataSource = new ReplicaRoutingDataSource(primary, List.of(replica), 1000, 0);
+
+        request = new MockHttpServletRequest();
+        response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, response));
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clear();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void route_ReadOnlyTransaction_UsesReplicaWithinLagTolerance() throws Exception {
+        Connection replicaConnection = mock(Connection.class);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        dataSource.recordLag(0, 200, System.currentTimeMillis());
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.createStatement();
+        }
+
+        verify(replica).getConnection();
+        verify(primary, never()).getConnection();
+    }
+
+    @Test
+    void route_ReplicaNotYetChecked_UsesPrimary() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertThat(dataSource.route()).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+    }
+
+    @Test
+    void route_ReplicaLagging_UsesPrimary() {
+        dataSource.recordLag(0, 5000, System.currentTimeMillis());
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        assertThat(dataSource.route()).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+    }
+
+    @Test
+    void route_ConsistencyTokenAheadOfReplica_UsesPrimary() {
+        long checkedAt = System.currentTimeMillis();
+        dataSource.recordLag(0, 100, checkedAt);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        request.addHeader(ReplicaRoutingDataSource.CONSISTENCY_TOKEN_HEADER, String.valueOf(checkedAt - 50));
+        assertThat(dataSource.route()).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+    }
+
+    @Test
+    void route_ConsistencyTokenReplicated_UsesReplica() {
+        long checkedAt = System.currentTimeMillis();
+        dataSource.recordLag(0, 100, checkedAt);
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        request.addHeader(ReplicaRoutingDataSource.CONSISTENCY_TOKEN_HEADER, String.valueOf(checkedAt - 500));
+        assertThat(dataSource.route()).isNotEqualTo(ReplicaRoutingDataSource.PRIMARY);
+    }
+
+    @Test
+    void route_WriteTransaction_UsesPrimaryAndIssuesTokenOnCommit() {
+        dataSource.recordLag(0, 0, System.currentTimeMillis());
+        long before = System.currentTimeMillis();
+
+        assertThat(dataSource.route()).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+        assertThat(dataSource.route()).isEqualTo(ReplicaRoutingDataSource.PRIMARY);
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        assertThat(synchronizations).hasSize(1);
+
+        synchronizations.get(0).afterCommit();
+        synchronizations.get(0).afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+
+        String token = response.getHeader(ReplicaRoutingDataSource.CONSISTENCY_TOKEN_HEADER);
+        assertThat(token).isNotNull();
+        assertThat(Long.parseLong(token)).isGreaterThanOrEqualTo(before);
+    }
+}
@@ -0,0 +1,33 @@
+package com.ragchat.entity;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenCounterTest {
+
+    @Test
+    @DisplayName("Should count a short word with its leading space as one token")
+    void count_Words() {
+        // "capital" takes two: longer words are counted at six letters a token, a little above real encoders
+        assertThat(TokenCounter.count("What is the capital of France?")).isEqualTo(8);
+        assertThat(TokenCounter.count("internationalization")).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Should count digits in groups of three and symbols one by one")
+    void count_DigitsAndSymbols() {
+        assertThat(TokenCounter.count("1234567")).isEqualTo(3);
+        assertThat(TokenCounter.count("a->b")).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Should count line breaks and ideographs")
+    void count_LineBreaksAndIdeographs() {
+        assertThat(TokenCounter.count("first\n\nsecond")).isEqualTo(3);
+        assertThat(TokenCounter.count("東京都")).isEqualTo(3);
+        assertThat(TokenCounter.count(null)).isZero();
+        assertThat(TokenCounter.count("")).isZero();
+    }
+}
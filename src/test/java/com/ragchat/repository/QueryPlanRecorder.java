@@ -0,0 +1,152 @@
+package com.ragchat.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Wraps a PostgreSQL {@link DataSource} so that, while recording, every prepared
+ * statement is first run as {@code EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON)} with the
+ * same parameters. The EXPLAIN runs inside a savepoint that is rolled back, so
+ * modifying statements are only applied once.
+ */
+class QueryPlanRecorder {
+
+    private static final Set<String> EXECUTE_METHODS = Set.of("execute", "executeQuery", "executeUpdate", "executeLargeUpdate");
+
+    record Plan(String sql, JsonNode root) {
+
+        JsonNode plan() {
+            return root.get(0).get("Plan");
+        }
+
+        double executionMillis() {
+            return root.get(0).get("Execution Time").asDouble();
+        }
+
+        long sharedBuffers() {
+            return plan().path("Shared Hit Blocks").asLong() + plan().path("Shared Read Blocks").asLong();
+        }
+
+        List<String> sequentialScans() {
+            List<String> relations = new ArrayList<>();
+            collectSequentialScans(plan(), relations);
+            return relations;
+        }
+
+        private static void collectSequentialScans(JsonNode node, List<String> relations) {
+            // Empty relations (e.g. pre-created partitions) are cheapest to scan sequentially
+            long rowsVisited = node.path("Actual Rows").asLong() + node.path("Rows Removed by Filter").asLong();
+            if ("Seq Scan".equals(node.path("Node Type").asText()) && rowsVisited > 0) {
+                relations.add(node.path("Relation Name").asText());
+            }
+            for (JsonNode child : node.path("Plans")) {
+                collectSequentialScans(child, relations);
+            }
+        }
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ThreadLocal<List<Plan>> recording = new ThreadLocal<>();
+
+    DataSource wrap(DataSource dataSource) {
+        return proxy(DataSource.class, (proxy, method, args) -> {
+            Object result = invoke(dataSource, method, args);
+            return result instanceof Connection connection ? wrapConnection(connection) : result;
+        });
+    }
+
+    List<Plan> record(Runnable action) {
+        return record(() -> {
+            action.run();
+            return null;
+        }).plans();
+    }
+
+    <T> Recorded<T> record(Supplier<T> action) {
+        List<Plan> plans = new ArrayList<>();
+        recording.set(plans);
+        try {
+            return new Recorded<>(action.get(), plans);
+        } finally {
+            recording.remove();
+        }
+    }
+
+    record Recorded<T>(T result, List<Plan> plans) {
+    }
+
+    private Connection wrapConnection(Connection connection) {
+        return proxy(Connection.class, (proxy, method, args) -> {
+            Object result = invoke(connection, method, args);
+            if (result instanceof PreparedStatement statement && method.getName().equals("prepareStatement")) {
+                return wrapStatement(connection, statement, (String) args[0]);
+            }
+            return result;
+        });
+    }
+
+    private PreparedStatement wrapStatement(Connection connection, PreparedStatement statement, String sql) {
+        List<Object[]> parameters = new ArrayList<>();
+        return proxy(PreparedStatement.class, (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                parameters.add(new Object[]{method, args});
+            } else if (name.equals("clearParameters")) {
+                parameters.clear();
+            } else if (EXECUTE_METHODS.contains(name) && (args == null || args.length == 0)) {
+                List<Plan> plans = recording.get();
+                if (plans != null) {
+                    plans.add(explain(connection, sql, parameters));
+                }
+            }
+            return invoke(statement, method, args);
+        });
+    }
+
+    private Plan explain(Connection connection, String sql, List<Object[]> parameters) throws SQLException {
+        Savepoint savepoint = connection.getAutoCommit() ? null : connection.setSavepoint();
+        try (PreparedStatement explain = connection.prepareStatement("EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) " + sql)) {
+            for (Object[] parameter : parameters) {
+                invoke(explain, (Method) parameter[0], (Object[]) parameter[1]);
+            }
+            try (ResultSet resultSet = explain.executeQuery()) {
+                resultSet.next();
+                return new Plan(sql, objectMapper.readTree(resultSet.getString(1)));
+            }
+        } catch (Throwable e) {
+            throw new SQLException("EXPLAIN failed for: " + sql, e);
+        } finally {
+            if (savepoint != null) {
+                connection.rollback(savepoint);
+            }
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
@@ -0,0 +1,315 @@
+package com.ragchat.repository;
+
+import com.ragchat.dto.SearchCursor;
+import com.ragchat.repository.ChatMessageRepository.MessageRow;
+import com.ragchat.repository.ChatMessageRepository.MessageSummary;
+import com.zaxxer.hikari.HikariDataSource;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.TestFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+/**
+ * Performance contracts for repository queries. Seeds an embedded PostgreSQL with a
+ * realistic volume, runs each query through {@link QueryPlanRecorder} and fails when a
+ * plan falls back to a sequential scan or exceeds its buffer or latency budget. Runs in
+ * the integration-test phase of every build; PostgreSQL refuses to run as root, so the
+ * contracts are skipped there.
+ * <pre>
+ * mvn verify
+ * mvn test -Pquery-plans
+ * mvn test -Pquery-plans -Dqueryplan.partitioning=monthly
+ * </pre>
+ */
+@Tag("query-plan")
+@SpringBootTest
+@ActiveProfiles("test")
+class RepositoryQueryPlanTest {
+
+    private static final int USERS = 500;
+    private static final int SESSIONS = 10_000;
+    private static final int MESSAGES_PER_SESSION = 40;
+
+    // Tables seeded with volume; a sequential scan on a small lookup table is not a regression
+    private static final Set<String> GUARDED_TABLES = Set.of("chat_messages", "chat_sessions", "chat_session_stats");
+
+    private static final long DEFAULT_MAX_BUFFERS = 200;
+    // Scales latency budgets for slower machines, e.g. -Dqueryplan.latency-factor=3 on CI
+    private static final double LATENCY_FACTOR = Double.parseDouble(System.getProperty("queryplan.latency-factor", "1"));
+    private static final double DEFAULT_MAX_MILLIS = 50 * LATENCY_FACTOR;
+
+    private static final QueryPlanRecorder RECORDER = new QueryPlanRecorder();
+    private static EmbeddedPostgres postgres;
+
+    @Autowired
+    private ChatMessageRepository messageRepository;
+
+    @Autowired
+    private ChatSessionRepository sessionRepository;
+
+    @Autowired
+    private ChatMessageSearchRepository searchRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private record Contract(String name, Consumer<Sample> query, long maxBuffers, double maxMillis,
+                            Set<String> allowedSequentialScans) {
+
+        Contract budget(long buffers) {
+            return new Contract(name, query, buffers, maxMillis, allowedSequentialScans);
+        }
+
+        Contract within(double millis) {
+            return new Contract(name, query, maxBuffers, millis * LATENCY_FACTOR, allowedSequentialScans);
+        }
+
+        // Only for maintenance jobs that are expected to visit the whole table
+        Contract allowSequentialScan(String... tables) {
+            return new Contract(name, query, maxBuffers, maxMillis, Set.of(tables));
+        }
+    }
+
+    private record Sample(UUID sessionId, String userId, UUID messageId, LocalDateTime messageCreatedAt,
+                          UUID deletedSessionId) {
+    }
+
+    private static Contract contract(String name, Consumer<Sample> query) {
+        return new Contract(name, query, DEFAULT_MAX_BUFFERS, DEFAULT_MAX_MILLIS, Set.of());
+    }
+
+    @TestConfiguration
+    static class EmbeddedPostgresConfig {
+
+        @Bean
+        DataSource dataSource() {
+            HikariDataSource hikari = new HikariDataSource();
+            hikari.setJdbcUrl(postgres.getJdbcUrl("postgres", "postgres"));
+            hikari.setMaximumPoolSize(4);
+            return RECORDER.wrap(hikari);
+        }
+    }
+
+    @BeforeAll
+    static void startPostgres() throws IOException {
+        assumeFalse("root".equals(System.getProperty("user.name")), "PostgreSQL cannot run as root");
+        postgres = EmbeddedPostgres.builder().start();
+    }
+
+    @AfterAll
+    static void stopPostgres() throws IOException {
+        if (postgres != null) {
+            postgres.close();
+        }
+    }
+
+    @DynamicPropertySource
+    static void schemaProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.flyway.enabled", () -> "true");
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "none");
+        registry.add("spring.jpa.show-sql", () -> "false");
+        registry.add("session.purge.enabled", () -> "false");
+        registry.add("messages.partitioning.strategy", () -> System.getProperty("queryplan.partitioning", "none"));
+    }
+
+    @TestFactory
+    Stream<DynamicTest> repositoryQueriesMeetTheirPlanContracts() {
+        Sample sample = seed();
+
+        List<Contract> contracts = List.of(
+                // ChatMessageRepository
+                contract("message rows by session, oldest first", s ->
+                        messageRepository.findBySessionIdOrderByCreatedAtAsc(s.sessionId(), MessageRow.class)),
+                contract("message rows by session, paged", s ->
+                        messageRepository.findBySessionId(s.sessionId(),
+                                PageRequest.of(1, 10, Sort.by(Sort.Direction.ASC, "createdAt")), MessageRow.class)),
+                contract("first cursor page", s ->
+                        messageRepository.findBySessionIdOrderByCreatedAtAscIdAsc(s.sessionId(), Limit.of(21), MessageRow.class)),
+                contract("last cursor page", s ->
+                        messageRepository.findBySessionIdOrderByCreatedAtDescIdDesc(s.sessionId(), Limit.of(21), MessageRow.class)),
+                contract("cursor page after", s ->
+                        messageRepository.findRowPageAfter(s.sessionId(), s.messageCreatedAt(), s.messageId(), Limit.of(21))),
+                contract("cursor page before", s ->
+                        messageRepository.findRowPageBefore(s.sessionId(), s.messageCreatedAt(), s.messageId(), Limit.of(21))),
+                contract("message summaries by session", s ->
+                        messageRepository.findBySessionIdOrderByCreatedAtAsc(s.sessionId(), MessageSummary.class)),
+                contract("message summaries by session, paged", s ->
+                        messageRepository.findBySessionId(s.sessionId(),
+                                PageRequest.of(1, 10, Sort.by(Sort.Direction.ASC, "createdAt")), MessageSummary.class)),
+                contract("first summary cursor page", s ->
+                        messageRepository.findBySessionIdOrderByCreatedAtAscIdAsc(s.sessionId(), Limit.of(21), MessageSummary.class)),
+                contract("last summary cursor page", s ->
+                        messageRepository.findBySessionIdOrderByCreatedAtDescIdDesc(s.sessionId(), Limit.of(21), MessageSummary.class)),
+                contract("summary cursor page after", s ->
+                        messageRepository.findSummaryPageAfter(s.sessionId(), s.messageCreatedAt(), s.messageId(), Limit.of(21))),
+                contract("summary cursor page before", s ->
+                        messageRepository.findSummaryPageBefore(s.sessionId(), s.messageCreatedAt(), s.messageId(), Limit.of(21))),
+                contract("newest token counts", s -> messageRepository.findNewestTokens(s.sessionId(), Limit.of(50))),
+                contract("token counts before", s ->
+                        messageRepository.findTokensBefore(s.sessionId(), s.messageCreatedAt(), s.messageId(), Limit.of(500))),
+                contract("oldest token count", s -> messageRepository.findOldestTokens(s.sessionId(), Limit.of(1))),
+                contract("messages to archive", s ->
+                        messageRepository.findBySessionIdOrderByCreatedAtAscIdAsc(s.sessionId(), Limit.of(1000))),
+                contract("stream session for export", s -> {
+                    try (Stream<?> rows = messageRepository.streamBySessionIdOrderByCreatedAtAscIdAsc(s.sessionId())) {
+                        rows.forEach(row -> { });
+                    }
+                }),
+                contract("active message by id", s -> messageRepository.findActiveById(s.messageId())),
+                contract("message position by id", s -> messageRepository.findCreatedAt(s.sessionId(), s.messageId())),
+                contract("count messages in session", s -> messageRepository.countBySessionId(s.sessionId())),
+                contract("context hashes of message chunk", s ->
+                        messageRepository.findContextHashChunkBySessionId(s.sessionId(), 5000)),
+                contract("delete message chunk", s -> messageRepository.deleteChunkBySessionId(s.sessionId(), 5000))
+                        .budget(500),
+                contract("context hashes of messages", s ->
+                        messageRepository.findContextHashesByIdIn(List.of(s.messageId()))),
+                contract("delete messages by id", s -> messageRepository.deleteByIdIn(List.of(s.messageId()))),
+                contract("similar message candidates by id", s ->
+                        messageRepository.findActiveSummariesByIdIn(List.of(s.messageId()))),
+                // Startup load of the embedding index, in the background
+                contract("stream active embeddings", s -> {
+                    try (Stream<?> rows = messageRepository.streamActiveEmbeddings()) {
+                        rows.forEach(row -> { });
+                    }
+                }).allowSequentialScan("chat_messages", "chat_sessions").budget(150_000).within(5_000),
+
+                // ChatMessageSearchRepository: ranking visits every match in the user's sessions, so
+                // the cost follows the size of the user's history (800 messages here) and, when
+                // hash-partitioned, the number of partitions probed, rather than the table
+                contract("search user's messages", s ->
+                        searchRepository.search(s.userId(), "message body", null, null, 21))
+                        .budget(2_000),
+                contract("search user's messages, next page", s ->
+                        searchRepository.search(s.userId(), "message body", null, new SearchCursor(0.5f, s.messageId()), 21))
+                        .budget(2_000),
+                contract("search one session", s ->
+                        searchRepository.search(s.userId(), "message body", s.sessionId(), null, 21)),
+                contract("search user's messages for a rare term", s ->
+                        searchRepository.search(s.userId(), "needle", null, null, 21))
+                        .budget(2_000),
+
+                // ChatSessionRepository
+                contract("session by id", s -> sessionRepository.findById(s.sessionId())),
+                contract("session exists", s -> sessionRepository.existsById(s.sessionId())),
+                contract("session response by id", s -> sessionRepository.findResponseById(s.sessionId())),
+                contract("session owner by id", s -> sessionRepository.findUserIdById(s.sessionId())),
+                contract("sessions by ids", s -> sessionRepository.findByIdIn(List.of(s.sessionId()))),
+                contract("sessions by user, recent first", s -> sessionRepository.findResponsesByUserId(s.userId())),
+                contract("sessions by user, paged", s ->
+                        sessionRepository.findResponsesByUserId(s.userId(),
+                                PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "updatedAt")))),
+                contract("favorite sessions", s -> sessionRepository.findFavoriteResponsesByUserId(s.userId())),
+                contract("favorite sessions, paged", s ->
+                        sessionRepository.findByUserIdAndIsFavoriteTrue(s.userId(),
+                                PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "updatedAt")))),
+                contract("count sessions by user", s -> sessionRepository.countByUserId(s.userId())),
+                contract("mark session deleted", s -> sessionRepository.markDeleted(s.sessionId(), LocalDateTime.now())),
+                contract("mark user sessions deleted", s ->
+                        sessionRepository.markDeletedByUserId(s.userId(), LocalDateTime.now()))
+                        .budget(500),
+                contract("mark stale user sessions deleted", s ->
+                        sessionRepository.markDeletedByUserIdAndUpdatedAtBefore(s.userId(),
+                                LocalDateTime.now().minusDays(1), LocalDateTime.now()))
+                        .budget(500),
+                contract("deleted sessions to purge", s -> sessionRepository.findDeletedSessionIds(100)),
+                contract("purge deleted session", s -> sessionRepository.purgeDeleted(s.deletedSessionId())),
+                contract("mark stale sessions deleted", s ->
+                        sessionRepository.markDeletedByUpdatedAtBefore(LocalDateTime.now().minusYears(1), LocalDateTime.now()))
+                        .allowSequentialScan("chat_sessions").budget(2_000).within(500),
+                // Probes chat_messages once per idle session, so its cost grows with the session count
+                contract("archive candidates", s ->
+                        sessionRepository.findArchiveCandidates(LocalDateTime.now().minusDays(7), Limit.of(50)))
+                        .allowSequentialScan("chat_sessions", "chat_session_stats").budget(75_000).within(1_000));
+
+        return contracts.stream().map(contract -> DynamicTest.dynamicTest(contract.name(), () -> verify(contract, sample)));
+    }
+
+    private void verify(Contract contract, Sample sample) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        List<QueryPlanRecorder.Plan> plans = transaction.execute(status -> {
+            // Every contract sees the same seeded data
+            status.setRollbackOnly();
+            return RECORDER.record(() -> contract.query().accept(sample));
+        });
+
+        assertThat(plans).as("statements issued by '%s'", contract.name()).isNotEmpty();
+        for (QueryPlanRecorder.Plan plan : plans) {
+            assertThat(plan.sequentialScans())
+                    .as("sequential scans in plan for: %s%n%s", plan.sql(), plan.plan().toPrettyString())
+                    .filteredOn(relation -> GUARDED_TABLES.stream().anyMatch(relation::startsWith))
+                    .allMatch(relation -> contract.allowedSequentialScans().stream().anyMatch(relation::startsWith));
+            assertThat(plan.sharedBuffers())
+                    .as("shared buffers for: %s%n%s", plan.sql(), plan.plan().toPrettyString())
+                    .isLessThanOrEqualTo(contract.maxBuffers());
+            assertThat(plan.executionMillis())
+                    .as("execution time (ms) for: %s", plan.sql())
+                    .isLessThanOrEqualTo(contract.maxMillis());
+        }
+    }
+
+    private Sample seed() {
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        if (Boolean.FALSE.equals(jdbc.queryForObject("SELECT EXISTS (SELECT 1 FROM chat_sessions)", Boolean.class))) {
+            jdbc.update("INSERT INTO chat_sessions (id, user_id, title, is_favorite, created_at, updated_at, deleted_at) " +
+                    "SELECT gen_random_uuid(), 'user-' || (g % ?), 'Session ' || g, g % 10 = 0, " +
+                    "now() - make_interval(hours => g), now() - make_interval(mins => g), " +
+                    "CASE WHEN g % 200 = 0 THEN now() END " +
+                    "FROM generate_series(1, ?) g", USERS, SESSIONS);
+            jdbc.update("INSERT INTO chat_messages (id, session_id, sender, content, context, token_count, created_at) " +
+                    "SELECT gen_random_uuid(), s.id, CASE WHEN g % 2 = 0 THEN 'ASSISTANT' ELSE 'USER' END, " +
+                    // One message per session mentions a rarer term for the search contracts
+                    "repeat('message body ', 20) || CASE WHEN g = 7 THEN ' needle' ELSE '' END, " +
+                    "CASE WHEN g % 2 = 0 THEN repeat('retrieved context ', 40) END, 40, " +
+                    "s.created_at + make_interval(secs => g) " +
+                    "FROM chat_sessions s CROSS JOIN generate_series(1, ?) g " +
+                    // Deleted sessions are seeded as the purge job leaves them once their messages are gone
+                    "WHERE s.deleted_at IS NULL", MESSAGES_PER_SESSION);
+            jdbc.update("INSERT INTO chat_session_stats (session_id, message_count, last_message_at, total_content_bytes) " +
+                    "SELECT session_id, COUNT(*), MAX(created_at), SUM(OCTET_LENGTH(content)) " +
+                    "FROM chat_messages GROUP BY session_id");
+            // As autovacuum would leave the tables, including merging the GIN pending list
+            jdbc.execute("VACUUM ANALYZE");
+        }
+
+        Map<String, Object> row = jdbc.queryForMap("SELECT s.id AS session_id, s.user_id, m.id AS message_id, m.created_at " +
+                "FROM chat_sessions s JOIN chat_messages m ON m.session_id = s.id " +
+                "WHERE s.deleted_at IS NULL ORDER BY s.id, m.created_at OFFSET ? LIMIT 1", MESSAGES_PER_SESSION / 2);
+        UUID deletedSessionId = jdbc.queryForObject(
+                "SELECT id FROM chat_sessions WHERE deleted_at IS NOT NULL ORDER BY id LIMIT 1", UUID.class);
+        return new Sample((UUID) row.get("session_id"), (String) row.get("user_id"), (UUID) row.get("message_id"),
+                ((Timestamp) row.get("created_at")).toLocalDateTime(), deletedSessionId);
+    }
+}
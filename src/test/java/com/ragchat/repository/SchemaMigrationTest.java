@@ -0,0 +1,210 @@
+package com.ragchat.repository;
+
+import com.ragchat.RagChatStorageApplication;
+import com.ragchat.dto.CreateMessageRequest;
+import com.ragchat.dto.CreateSessionRequest;
+import com.ragchat.dto.MessageFields;
+import com.ragchat.dto.MessageResponse;
+import com.ragchat.entity.ChatMessage;
+import com.ragchat.service.ChatMessageService;
+import com.ragchat.service.ChatSessionService;
+import com.ragchat.service.SessionArchiveService;
+import com.ragchat.service.SessionStatsService;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+/**
+ * Applies the Flyway migrations on an embedded PostgreSQL, to an empty database with each
+ * partitioning strategy and to one created by the first release's Hibernate
+ * ddl-auto=update, plain or converted to monthly partitions, then starts the application
+ * with ddl-auto=validate and uses the tables every migration added. The H2 test profile
+ * skips Flyway, so this is where a migration that misses an upgrade path shows up.
+ * PostgreSQL refuses to run as root; the test is skipped there.
+ */
+class SchemaMigrationTest {
+
+    private static EmbeddedPostgres postgres;
+
+    @TempDir
+    Path archiveDirectory;
+
+    @BeforeAll
+    static void startPostgres() throws IOException {
+        assumeFalse("root".equals(System.getProperty("user.name")), "PostgreSQL cannot run as root");
+        postgres = EmbeddedPostgres.builder().start();
+    }
+
+    @AfterAll
+    static void stopPostgres() throws IOException {
+        if (postgres != null) {
+            postgres.close();
+        }
+    }
+
+    @ParameterizedTest(name = "partitioning {0}")
+    @ValueSource(strings = {"none", "monthly", "hash"})
+    @DisplayName("Should create the full schema in an empty database")
+    void migrate_EmptyDatabase(String partitioning) {
+        createDatabase("fresh_" + partitioning);
+
+        try (ConfigurableApplicationContext context = start("fresh_" + partitioning, partitioning)) {
+            assertThat(appliedVersions(context)).startsWith("1", "1.1", "1.2", "1.3", "1.4", "2");
+            // Later migrations altered the partitioned table itself
+            assertThat(context.getBean(JdbcTemplate.class).queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = 'chat_messages'::regclass)",
+                    Boolean.class)).isEqualTo(!partitioning.equals("none"));
+            useEveryTable(context);
+        }
+    }
+
+    @Test
+    @DisplayName("Should upgrade a database created by ddl-auto=update from the baseline")
+    void migrate_BaselineDatabase() throws SQLException {
+        UUID sessionId = createBaselineDatabase("baseline");
+
+        // Rows already there: chat_messages stays a plain table
+        try (ConfigurableApplicationContext context = start("baseline", "monthly")) {
+            List<String> versions = appliedVersions(context);
+            assertThat(versions).startsWith("1", "1.1", "1.2", "1.3", "1.4", "2");
+            assertThat(new JdbcTemplate(postgres.getDatabase("postgres", "baseline")).queryForObject(
+                    "SELECT type FROM flyway_schema_history WHERE version = '1'", String.class)).isEqualTo("BASELINE");
+
+            List<MessageResponse> history = context.getBean(ChatMessageService.class).getMessages(sessionId, MessageFields.ALL);
+            assertThat(history).extracting(MessageResponse::getContent).containsExactly("Hello from the first release");
+            assertThat(context.getBean(SessionStatsService.class).getMessageCount(sessionId)).contains(1L);
+
+            // A session still without stats is backfilled on its next write
+            context.getBean(JdbcTemplate.class).update("DELETE FROM chat_session_stats WHERE session_id = ?", sessionId);
+            context.getBean(ChatMessageService.class).addMessage(sessionId, CreateMessageRequest.builder()
+                    .sender(ChatMessage.SenderType.USER)
+                    .content("Hello after the upgrade")
+                    .build());
+            assertThat(context.getBean(SessionStatsService.class).getMessageCount(sessionId)).contains(2L);
+
+            useEveryTable(context);
+        }
+    }
+
+    @Test
+    @DisplayName("Should convert an upgraded plain table to monthly partitions without copying it")
+    void migrate_BaselineDatabase_ConvertExisting() throws SQLException {
+        UUID sessionId = createBaselineDatabase("baseline_converted");
+        // Upgraded first, as a deployment that opts in later; migrations may rewrite the table
+        start("baseline_converted", "monthly").close();
+        JdbcTemplate baseline = new JdbcTemplate(postgres.getDatabase("postgres", "baseline_converted"));
+        Long fileNode = baseline.queryForObject("SELECT pg_relation_filenode('chat_messages')", Long.class);
+
+        try (ConfigurableApplicationContext context = start("baseline_converted", "monthly",
+                "--messages.partitioning.convert-existing=true")) {
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            assertThat(jdbcTemplate.queryForList("SELECT child.relname FROM pg_inherits " +
+                    "JOIN pg_class child ON child.oid = pg_inherits.inhrelid " +
+                    "WHERE pg_inherits.inhparent = 'chat_messages'::regclass", String.class))
+                    .contains("chat_messages_legacy", "chat_messages_default")
+                    .anyMatch(partition -> partition.matches("chat_messages_p\\d{4}_\\d{2}"));
+            // The first release's table is the legacy partition, not a copy of it
+            assertThat(jdbcTemplate.queryForObject("SELECT pg_relation_filenode('chat_messages_legacy')", Long.class))
+                    .isEqualTo(fileNode);
+
+            List<MessageResponse> history = context.getBean(ChatMessageService.class).getMessages(sessionId, MessageFields.ALL);
+            assertThat(history).extracting(MessageResponse::getContent).containsExactly("Hello from the first release");
+
+            useEveryTable(context);
+        }
+    }
+
+    // Stats, soft deletes and archives were added after the first release
+    private void useEveryTable(ConfigurableApplicationContext context) {
+        ChatSessionService sessionService = context.getBean(ChatSessionService.class);
+        ChatMessageService messageService = context.getBean(ChatMessageService.class);
+
+        UUID sessionId = sessionService.createSession(CreateSessionRequest.builder()
+                .userId("user-2")
+                .title("After the upgrade")
+                .build()).getId();
+        UUID messageId = messageService.addMessage(sessionId, CreateMessageRequest.builder()
+                .sender(ChatMessage.SenderType.SYSTEM)
+                .content("You are a helpful assistant.")
+                .build()).getId();
+        messageService.addMessage(sessionId, CreateMessageRequest.builder()
+                .sender(ChatMessage.SenderType.USER)
+                .content("Hello!")
+                .build());
+        assertThat(context.getBean(SessionStatsService.class).getMessageCount(sessionId)).contains(2L);
+
+        SessionArchiveService archiveService = context.getBean(SessionArchiveService.class);
+        assertThat(archiveService.archiveSession(sessionId)).isTrue();
+        assertThat(archiveService.getArchivedMessageCount(sessionId)).isEqualTo(2);
+        assertThat(messageService.getMessage(messageId).getContent()).isEqualTo("You are a helpful assistant.");
+        messageService.deleteMessage(messageId);
+        assertThat(archiveService.getArchivedMessageCount(sessionId)).isZero();
+        assertThat(messageService.getMessageCount(sessionId)).isEqualTo(1);
+
+        sessionService.deleteSession(sessionId);
+        assertThat(sessionService.getSessionsByUser("user-2")).isEmpty();
+    }
+
+    private static UUID createBaselineDatabase(String name) throws SQLException {
+        createDatabase(name);
+        UUID sessionId = UUID.randomUUID();
+        try (Connection connection = postgres.getDatabase("postgres", name).getConnection()) {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/baseline-ddl-auto-update.sql"));
+        }
+        JdbcTemplate baseline = new JdbcTemplate(postgres.getDatabase("postgres", name));
+        baseline.update("INSERT INTO chat_sessions (id, user_id, title, is_favorite, created_at, updated_at) " +
+                "VALUES (?, 'user-1', 'Before the upgrade', false, now(), now())", sessionId);
+        baseline.update("INSERT INTO chat_messages (id, session_id, sender, content, created_at) " +
+                "VALUES (?, ?, 'USER', 'Hello from the first release', now())", UUID.randomUUID(), sessionId);
+        return sessionId;
+    }
+
+    private ConfigurableApplicationContext start(String database, String partitioning, String... extraArgs) {
+        List<String> args = new ArrayList<>(List.of("--server.port=0",
+                "--spring.datasource.url=" + postgres.getJdbcUrl("postgres", database),
+                "--spring.datasource.driver-class-name=org.postgresql.Driver",
+                "--spring.datasource.username=postgres",
+                "--spring.datasource.password=",
+                "--spring.flyway.enabled=true",
+                "--spring.jpa.hibernate.ddl-auto=validate",
+                "--spring.jpa.show-sql=false",
+                "--session.purge.enabled=false",
+                "--messages.partitioning.strategy=" + partitioning,
+                "--archive.directory=" + archiveDirectory,
+                "--logging.level.root=WARN"));
+        args.addAll(List.of(extraArgs));
+        return new SpringApplicationBuilder(RagChatStorageApplication.class)
+                .profiles("test")
+                .run(args.toArray(String[]::new));
+    }
+
+    private static void createDatabase(String name) {
+        new JdbcTemplate(postgres.getPostgresDatabase()).execute("CREATE DATABASE " + name);
+    }
+
+    private static List<String> appliedVersions(ConfigurableApplicationContext context) {
+        return context.getBean(JdbcTemplate.class).queryForList(
+                "SELECT version FROM flyway_schema_history WHERE success ORDER BY installed_rank", String.class);
+    }
+}
@@ -0,0 +1,230 @@
+package com.ragchat.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.ragchat.dto.CreateMessageRequest;
+import com.ragchat.dto.MessageResponse;
+import com.ragchat.dto.PendingMessage;
+import com.ragchat.entity.ChatMessage;
+import com.ragchat.exception.IngestionQueueFullException;
+import com.ragchat.exception.ResourceNotFoundException;
+import com.ragchat.repository.ChatMessageBatchWriter;
+import com.ragchat.repository.ChatSessionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class AsyncIngestionServiceTest {
+
+    @Mock
+    private ChatSessionRepository sessionRepository;
+
+    @Mock
+    private ChatMessageBatchWriter batchWriter;
+
+    @Mock
+    private SessionStatsService statsService;
+
+    @Mock
+    private SessionArchiveService archiveService;
+
+    @Mock
+    private MessageTailCacheService tailCache;
+
+    @Mock
+    private MessageStreamService messageStream;
+
+    @Mock
+    private MessageEmbeddingIndex embeddingIndex;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private final CountDownLatch writerReleased = new CountDownLatch(1);
+    private SimpleMeterRegistry meterRegistry;
+    private AsyncIngestionService ingestionService;
+    private UUID sessionId;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        sessionId = UUID.randomUUID();
+        ingestionService = newService(false);
+
+        // Hold the writer so queued messages stay queued until the test releases it
+        doAnswer(invocation -> writerReleased.await(5, TimeUnit.SECONDS)).when(batchWriter).insertAll(anyList());
+        when(sessionRepository.existsById(sessionId)).thenReturn(true);
+
+        ingestionService.start();
+    }
+
+    private AsyncIngestionService newService(boolean journalEnabled) {
+        meterRegistry = new SimpleMeterRegistry();
+        AsyncIngestionService service = new AsyncIngestionService(sessionRepository, batchWriter, statsService, archiveService,
+                tailCache, messageStream, embeddingIndex, transactionManager, objectMapper, meterRegistry);
+        ReflectionTestUtils.setField(service, "queueCapacity", 2);
+        ReflectionTestUtils.setField(service, "writerThreads", 1);
+        ReflectionTestUtils.setField(service, "maxBatchSize", 10);
+        ReflectionTestUtils.setField(service, "flushIntervalMs", 5L);
+        ReflectionTestUtils.setField(service, "retryInitialBackoffMs", 10L);
+        ReflectionTestUtils.setField(service, "retryMaxBackoffMs", 50L);
+        ReflectionTestUtils.setField(service, "deadLetterDirectory", directory.resolve("dead-letters").toString());
+        ReflectionTestUtils.setField(service, "journalEnabled", journalEnabled);
+        ReflectionTestUtils.setField(service, "journalDirectory", directory.resolve("journal").toString());
+        ReflectionTestUtils.setField(service, "journalSegmentEntries", 100);
+        return service;
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        writerReleased.countDown();
+        ingestionService.stop();
+    }
+
+    private CreateMessageRequest request(String content) {
+        return CreateMessageRequest.builder()
+                .sender(ChatMessage.SenderType.USER)
+                .content(content)
+                .build();
+    }
+
+    @Test
+    @DisplayName("Should accept a message and return its pre-assigned ID")
+    void submit_Accepted() {
+        MessageResponse response = ingestionService.submit(sessionId, request("Hello!"));
+
+        assertThat(response.getId()).isNotNull();
+        assertThat(response.getId().version()).isEqualTo(7);
+        assertThat(response.getSessionId()).isEqualTo(sessionId);
+        assertThat(response.getCreatedAt()).isNotNull();
+    }
+
+    @Test
+    @DisplayName("Should reject messages once the queue is full")
+    void submit_QueueFull() {
+        ingestionService.submit(sessionId, request("one"));
+        ingestionService.submit(sessionId, request("two"));
+
+        assertThatThrownBy(() -> ingestionService.submit(sessionId, request("three")))
+                .isInstanceOf(IngestionQueueFullException.class);
+    }
+
+    @Test
+    @DisplayName("Should write queued messages in a background batch")
+    void submit_FlushedByWriter() {
+        writerReleased.countDown();
+
+        ingestionService.submit(sessionId, request("one"));
+
+        verify(batchWriter, timeout(2000)).insertAll(anyList());
+    }
+
+    @Test
+    @DisplayName("Should throw exception when session does not exist")
+    void submit_SessionNotFound() {
+        UUID unknown = UUID.randomUUID();
+        when(sessionRepository.existsById(unknown)).thenReturn(false);
+
+        assertThatThrownBy(() -> ingestionService.submit(unknown, request("Hello!")))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    @DisplayName("Should retry a batch the database could not write and refuse new messages meanwhile")
+    void writer_RetriesUntilDatabaseRecovers() throws Exception {
+        AtomicBoolean databaseDown = new AtomicBoolean(true);
+        doAnswer(invocation -> {
+            if (databaseDown.get()) {
+                throw new DataAccessResourceFailureException("Connection refused");
+            }
+            return null;
+        }).when(batchWriter).insertAll(anyList());
+
+        ingestionService.submit(sessionId, request("one"));
+        verify(batchWriter, timeout(2000).atLeast(2)).insertAll(anyList());
+
+        assertThatThrownBy(() -> ingestionService.submit(sessionId, request("two")))
+                .isInstanceOf(IngestionQueueFullException.class)
+                .hasMessageContaining("temporarily unavailable");
+
+        databaseDown.set(false);
+        waitFor(() -> meterRegistry.counter("ragchat.ingestion.persisted").count() == 1);
+        waitFor(() -> meterRegistry.get("ragchat.ingestion.stalled.writers").gauge().value() == 0);
+
+        verify(batchWriter, atLeastOnce()).findExistingIds(anyList());
+        assertThat(ingestionService.submit(sessionId, request("three")).getId()).isNotNull();
+        assertThat(meterRegistry.counter("ragchat.ingestion.dead-lettered").count()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should dead-letter a message the database rejects instead of retrying it")
+    void writer_DeadLettersConstraintViolation() throws Exception {
+        doThrow(new DataIntegrityViolationException("violates foreign key constraint"))
+                .when(batchWriter).insertAll(anyList());
+
+        MessageResponse rejected = ingestionService.submit(sessionId, request("orphan"));
+        waitFor(() -> meterRegistry.counter("ragchat.ingestion.dead-lettered").count() == 1);
+
+        // The group commit and the individual retry, nothing after
+        verify(batchWriter, after(100).times(2)).insertAll(anyList());
+        assertThat(Files.readString(directory.resolve("dead-letters").resolve("dead-letters.ndjson")))
+                .contains(rejected.getId().toString())
+                .contains("violates foreign key constraint");
+    }
+
+    @Test
+    @DisplayName("Should keep messages the database never accepted in the journal on shutdown")
+    void stop_KeepsUnwrittenMessagesJournaled() throws Exception {
+        ingestionService.stop();
+        doThrow(new CannotCreateTransactionException("Connection refused")).when(batchWriter).insertAll(anyList());
+        ingestionService = newService(true);
+        ingestionService.start();
+
+        MessageResponse accepted = ingestionService.submit(sessionId, request("pending"));
+        verify(batchWriter, timeout(2000).atLeastOnce()).insertAll(anyList());
+        ingestionService.stop();
+
+        try (IngestionJournal journal = new IngestionJournal(directory.resolve("journal"), objectMapper, false, 100)) {
+            assertThat(journal.recover()).extracting(PendingMessage::id).containsExactly(accepted.getId());
+        }
+    }
+}
@@ -1,28 +1,46 @@
 package com.ragchat.service;
 
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.ragchat.dto.ContextWindowResponse;
 import com.ragchat.dto.CreateMessageRequest;
+import com.ragchat.dto.CursorPageResponse;
+import com.ragchat.dto.MessageCursor;
+import com.ragchat.dto.MessageDeltaResponse;
+import com.ragchat.dto.MessageFields;
 import com.ragchat.dto.MessageResponse;
+import com.ragchat.dto.SessionETags;
+import com.ragchat.dto.SessionMessageBatch;
+import com.ragchat.dto.SessionResponse;
 import com.ragchat.entity.ChatMessage;
 import com.ragchat.entity.ChatSession;
 import com.ragchat.exception.ResourceNotFoundException;
 import com.ragchat.repository.ChatMessageRepository;
+import com.ragchat.repository.ChatMessageRepository.MessageRow;
+import com.ragchat.repository.ChatMessageRepository.MessageSummary;
+import com.ragchat.repository.ChatMessageRepository.MessageTokens;
 import com.ragchat.repository.ChatSessionRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.IntFunction;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -34,6 +52,30 @@ class ChatMessageServiceTest {
     @Mock
     private ChatSessionRepository sessionRepository;
 
+    @Mock
+    private SessionStatsService statsService;
+
+    @Mock
+    private SessionArchiveService archiveService;
+
+    @Mock
+    private MessageCompressionService compressionService;
+
+    @Mock
+    private ContextStoreService contextStore;
+
+    @Mock
+    private SessionCacheService sessionCache;
+
+    @Mock
+    private MessageTailCacheService tailCache;
+
+    @Mock
+    private MessageStreamService messageStream;
+
+    @Mock
+    private MessageEmbeddingIndex embeddingIndex;
+
     @InjectMocks
     private ChatMessageService messageService;
 
@@ -85,6 +127,10 @@ class ChatMessageServiceTest {
         assertThat(response.getContent()).isEqualTo("Hello, world!");
 
         verify(messageRepository, times(1)).save(any(ChatMessage.class));
+        verify(statsService, times(1)).recordMessageAdded(sessionId, testMessage);
+        verify(archiveService, times(1)).rehydrateIfArchived(sessionId);
+        verify(tailCache, times(1)).append(sessionId, List.of(response));
+        verify(messageStream, times(1)).publish(sessionId, List.of(response));
     }
 
     @Test
@@ -102,33 +148,389 @@ class ChatMessageServiceTest {
                 .hasMessageContaining("ChatSession not found");
     }
 
+    @Test
+    @DisplayName("Should not add a message to a session deleted since it was cached")
+    void addMessage_SessionDeletedButCached() {
+        CreateMessageRequest request = CreateMessageRequest.builder()
+                .sender(ChatMessage.SenderType.USER)
+                .content("Hello!")
+                .build();
+
+        lenient().when(sessionCache.exists(sessionId)).thenReturn(true);
+        when(sessionRepository.findById(sessionId)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> messageService.addMessage(sessionId, request))
+                .isInstanceOf(ResourceNotFoundException.class);
+        verify(messageRepository, never()).save(any(ChatMessage.class));
+    }
+
+    @Test
+    @DisplayName("Should add a batch of messages in order with one stats update per session")
+    void addMessagesBatch_Success() {
+        List<CreateMessageRequest> requests = List.of(
+                CreateMessageRequest.builder().sender(ChatMessage.SenderType.USER).content("Question").build(),
+                CreateMessageRequest.builder().sender(ChatMessage.SenderType.ASSISTANT).content("Answer").build());
+
+        when(sessionRepository.findByIdIn(any())).thenReturn(List.of(testSession));
+        when(messageRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<MessageResponse> responses = messageService.addMessagesBatch(
+                List.of(new SessionMessageBatch(sessionId, requests)));
+
+        assertThat(responses).extracting(MessageResponse::getContent).containsExactly("Question", "Answer");
+        assertThat(responses.get(0).getCreatedAt()).isBefore(responses.get(1).getCreatedAt());
+        verify(messageRepository, times(1)).saveAll(anyList());
+        verify(statsService, times(1)).recordMessagesAdded(eq(sessionId), anyList());
+        verify(tailCache, times(1)).append(sessionId, responses);
+        verify(messageStream, times(1)).publish(sessionId, responses);
+    }
+
+    @Test
+    @DisplayName("Should reject a batch that references a non-existent session")
+    void addMessagesBatch_SessionNotFound() {
+        List<CreateMessageRequest> requests = List.of(
+                CreateMessageRequest.builder().sender(ChatMessage.SenderType.USER).content("Hello!").build());
+
+        when(sessionRepository.findByIdIn(any())).thenReturn(List.of());
+
+        assertThatThrownBy(() -> messageService.addMessagesBatch(List.of(new SessionMessageBatch(sessionId, requests))))
+                .isInstanceOf(ResourceNotFoundException.class);
+        verify(messageRepository, never()).saveAll(anyList());
+    }
+
     @Test
     @DisplayName("Should get all messages for a session")
     void getMessages_Success() {
-        List<ChatMessage> messages = List.of(testMessage);
-
-        when(sessionRepository.existsById(sessionId)).thenReturn(true);
-        when(messageRepository.findBySessionIdOrderByCreatedAtAsc(sessionId)).thenReturn(messages);
+        when(sessionCache.exists(sessionId)).thenReturn(true);
+        when(messageRepository.findBySessionIdOrderByCreatedAtAsc(sessionId, MessageRow.class))
+                .thenReturn(List.of(row(testMessage)));
 
-        List<MessageResponse> responses = messageService.getMessages(sessionId);
+        List<MessageResponse> responses = messageService.getMessages(sessionId, MessageFields.ALL);
 
         assertThat(responses).hasSize(1);
         assertThat(responses.get(0).getContent()).isEqualTo("Hello, world!");
+        assertThat(responses.get(0).getSessionId()).isEqualTo(sessionId);
+        assertThat(responses.get(0).getContext()).isEqualTo("Some RAG context");
+    }
+
+    @Test
+    @DisplayName("Should read messages without their context when it is not requested")
+    void getMessages_WithoutContext_UsesSummaryProjection() {
+        MessageSummary summary = new MessageSummary(messageId, ChatMessage.SenderType.USER, "Hello, world!",
+                testMessage.getCreatedAt());
+        when(sessionCache.exists(sessionId)).thenReturn(true);
+        when(messageRepository.findBySessionIdOrderByCreatedAtAsc(sessionId, MessageSummary.class))
+                .thenReturn(List.of(summary));
+
+        List<MessageResponse> responses = messageService.getMessages(sessionId, MessageFields.parse("id,content"));
+
+        assertThat(responses).extracting(MessageResponse::getId).containsExactly(messageId);
+        assertThat(responses.get(0).getContent()).isEqualTo("Hello, world!");
+        assertThat(responses.get(0).getSessionId()).isNull();
+        assertThat(responses.get(0).getContext()).isNull();
+        verify(messageRepository, never()).findBySessionIdOrderByCreatedAtAsc(sessionId, MessageRow.class);
+        verifyNoInteractions(contextStore);
+    }
+
+    @Test
+    @DisplayName("Should write only the selected fields, and every field by default")
+    void messageResponse_Json_KeepsDefaultShape() throws Exception {
+        JsonMapper mapper = JsonMapper.builder().findAndAddModules().build();
+        MessageResponse response = MessageResponse.fromSummary(sessionId, new MessageSummary(messageId,
+                ChatMessage.SenderType.USER, "Hello, world!", testMessage.getCreatedAt()));
+
+        assertThat(mapper.readTree(mapper.writeValueAsString(response)).fieldNames())
+                .toIterable().containsExactly("id", "sessionId", "sender", "content", "context", "createdAt");
+        assertThat(mapper.readTree(mapper.writeValueAsString(response)).get("context").isNull()).isTrue();
+        assertThat(mapper.readTree(mapper.writeValueAsString(MessageFields.parse("content,context").select(response)))
+                .fieldNames()).toIterable().containsExactly("content", "context");
+    }
+
+    @Test
+    @DisplayName("Should answer a matching ETag without reading any message")
+    void getMessagesIfModified_MatchingETag_SkipsMessages() {
+        SessionResponse session = SessionResponse.fromEntity(testSession);
+        String etag = SessionETags.ofHistory(session);
+        when(sessionRepository.findResponseById(sessionId)).thenReturn(Optional.of(session));
+
+        Optional<List<MessageResponse>> responses =
+                messageService.getMessagesIfModified(sessionId, MessageFields.ALL, etag::equals);
+
+        assertThat(responses).isEmpty();
+        verifyNoInteractions(messageRepository, archiveService);
+    }
+
+    @Test
+    @DisplayName("Should read the messages once the history's ETag changed")
+    void getMessagesIfModified_ChangedETag_ReadsMessages() {
+        SessionResponse before = SessionResponse.fromEntity(testSession);
+        String etag = SessionETags.ofHistory(before);
+        SessionResponse after = SessionResponse.builder()
+                .id(sessionId)
+                .messageCount(1)
+                .lastMessageAt(testMessage.getCreatedAt())
+                .totalContentBytes(13L)
+                .build();
+        when(sessionRepository.findResponseById(sessionId)).thenReturn(Optional.of(after));
+        when(messageRepository.findBySessionIdOrderByCreatedAtAsc(sessionId, MessageRow.class))
+                .thenReturn(List.of(row(testMessage)));
+
+        Optional<List<MessageResponse>> responses =
+                messageService.getMessagesIfModified(sessionId, MessageFields.ALL, etag::equals);
+
+        assertThat(responses).hasValueSatisfying(messages ->
+                assertThat(messages).extracting(MessageResponse::getId).containsExactly(messageId));
+    }
+
+    @Test
+    @DisplayName("Should return messages after a message id with a cursor held back by the settle window")
+    void getMessagesSince_MessageId_ReturnsLaterMessages() {
+        ReflectionTestUtils.setField(messageService, "deltaSettleMs", 60_000L);
+        UUID sinceId = UUID.randomUUID();
+        LocalDateTime sinceCreatedAt = testMessage.getCreatedAt().minusSeconds(1);
+        when(sessionCache.exists(sessionId)).thenReturn(true);
+        when(archiveService.findArchivedHistory(sessionId)).thenReturn(Optional.empty());
+        when(messageRepository.findCreatedAt(sessionId, sinceId)).thenReturn(Optional.of(sinceCreatedAt));
+        when(messageRepository.findRowPageAfter(sessionId, sinceCreatedAt, sinceId, Limit.of(11)))
+                .thenReturn(List.of(row(testMessage)));
+
+        MessageDeltaResponse delta = messageService.getMessagesSince(sessionId, sinceId.toString(), 10, MessageFields.ALL);
+
+        assertThat(delta.getContent()).extracting(MessageResponse::getId).containsExactly(messageId);
+        assertThat(delta.isHasMore()).isFalse();
+        // The message is newer than the settle window, so the next sync asks for it again
+        assertThat(MessageCursor.decode(delta.getNextCursor()).createdAt()).isBefore(sinceCreatedAt);
+    }
+
+    @Test
+    @DisplayName("Should continue from the last message while more are waiting")
+    void getMessagesSince_HasMore_AdvancesToLastMessage() {
+        ReflectionTestUtils.setField(messageService, "deltaSettleMs", 60_000L);
+        MessageCursor since = new MessageCursor(testMessage.getCreatedAt().minusSeconds(1), UUID.randomUUID());
+        ChatMessage later = ChatMessage.builder()
+                .id(UUID.randomUUID())
+                .session(testSession)
+                .sender(ChatMessage.SenderType.ASSISTANT)
+                .content("Hi there")
+                .createdAt(testMessage.getCreatedAt().plusSeconds(1))
+                .build();
+        when(sessionCache.exists(sessionId)).thenReturn(true);
+        when(archiveService.findArchivedHistory(sessionId)).thenReturn(Optional.empty());
+        when(messageRepository.findSummaryPageAfter(sessionId, since.createdAt(), since.id(), Limit.of(2)))
+                .thenReturn(List.of(summary(testMessage), summary(later)));
+
+        MessageDeltaResponse delta = messageService.getMessagesSince(sessionId, since.encode(), 1,
+                MessageFields.parse("id,content"));
+
+        assertThat(delta.getContent()).extracting(MessageResponse::getId).containsExactly(messageId);
+        assertThat(delta.isHasMore()).isTrue();
+        assertThat(delta.getNextCursor()).isEqualTo(MessageCursor.of(testMessage).encode());
+    }
+
+    @Test
+    @DisplayName("Should reject a message id from another session")
+    void getMessagesSince_UnknownMessage() {
+        UUID sinceId = UUID.randomUUID();
+        when(sessionCache.exists(sessionId)).thenReturn(true);
+        when(archiveService.findArchivedHistory(sessionId)).thenReturn(Optional.empty());
+        when(messageRepository.findCreatedAt(sessionId, sinceId)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> messageService.getMessagesSince(sessionId, sinceId.toString(), 10, MessageFields.ALL))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    @DisplayName("Should reject unknown fields")
+    void getMessages_UnknownField() {
+        assertThatThrownBy(() -> MessageFields.parse("id,embedding"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("embedding");
+    }
+
+    @Test
+    @DisplayName("Should page through archived history without querying the hot table")
+    void getMessagesByCursor_ArchivedSession() {
+        ChatMessage second = ChatMessage.builder()
+                .id(UUID.randomUUID())
+                .session(testSession)
+                .sender(ChatMessage.SenderType.ASSISTANT)
+                .content("Hi there")
+                .createdAt(testMessage.getCreatedAt().plusSeconds(1))
+                .build();
+
+        when(sessionCache.exists(sessionId)).thenReturn(true);
+        when(archiveService.findArchivedHistory(sessionId)).thenReturn(Optional.of(List.of(testMessage, second)));
+
+        String cursor = MessageCursor.of(testMessage).encode();
+        CursorPageResponse<MessageResponse> page = messageService.getMessagesByCursor(
+                sessionId, cursor, MessageCursor.Direction.NEXT, 5, false, MessageFields.ALL);
+
+        assertThat(page.getContent()).extracting(MessageResponse::getContent).containsExactly("Hi there");
+        assertThat(page.isHasNext()).isFalse();
+        assertThat(page.isHasPrevious()).isTrue();
+        verify(messageRepository, never()).findRowPageAfter(any(), any(), any(), any());
     }
 
     @Test
     @DisplayName("Should throw exception when getting messages for non-existent session")
     void getMessages_SessionNotFound() {
-        when(sessionRepository.existsById(sessionId)).thenReturn(false);
+        when(sessionCache.exists(sessionId)).thenReturn(false);
 
-        assertThatThrownBy(() -> messageService.getMessages(sessionId))
+        assertThatThrownBy(() -> messageService.getMessages(sessionId, MessageFields.ALL))
                 .isInstanceOf(ResourceNotFoundException.class);
     }
 
+    @Test
+    @DisplayName("Should return first cursor page with next cursor and no total")
+    void getMessagesByCursor_FirstPage() {
+        ChatMessage second = ChatMessage.builder()
+                .id(UUID.randomUUID())
+                .session(testSession)
+                .sender(ChatMessage.SenderType.ASSISTANT)
+                .content("Hi there")
+                .createdAt(testMessage.getCreatedAt().plusSeconds(1))
+                .build();
+
+        when(sessionCache.exists(sessionId)).thenReturn(true);
+        when(messageRepository.findBySessionIdOrderByCreatedAtAscIdAsc(sessionId, Limit.of(2), MessageRow.class))
+                .thenReturn(List.of(row(testMessage), row(second)));
+
+        CursorPageResponse<MessageResponse> page =
+                messageService.getMessagesByCursor(sessionId, null, MessageCursor.Direction.NEXT, 1, false, MessageFields.ALL);
+
+        assertThat(page.getContent()).extracting(MessageResponse::getId).containsExactly(messageId);
+        assertThat(page.isHasNext()).isTrue();
+        assertThat(page.isHasPrevious()).isFalse();
+        assertThat(page.getPrevCursor()).isNull();
+        assertThat(page.getTotalElements()).isNull();
+        assertThat(MessageCursor.decode(page.getNextCursor())).isEqualTo(MessageCursor.of(testMessage));
+        verify(messageRepository, never()).countBySessionId(any());
+    }
+
+    @Test
+    @DisplayName("Should seek backwards from a cursor and return messages in ascending order")
+    void getMessagesByCursor_Previous() {
+        ChatMessage older = ChatMessage.builder()
+                .id(UUID.randomUUID())
+                .session(testSession)
+                .sender(ChatMessage.SenderType.USER)
+                .content("Earlier")
+                .createdAt(testMessage.getCreatedAt().minusSeconds(1))
+                .build();
+        MessageCursor cursor = new MessageCursor(testMessage.getCreatedAt().plusSeconds(1), UUID.randomUUID());
+
+        when(sessionCache.exists(sessionId)).thenReturn(true);
+        when(messageRepository.findRowPageBefore(eq(sessionId), eq(cursor.createdAt()), eq(cursor.id()), eq(Limit.of(3))))
+                .thenReturn(List.of(row(testMessage), row(older)));
+        when(statsService.getMessageCount(sessionId)).thenReturn(Optional.of(3L));
+
+        CursorPageResponse<MessageResponse> page =
+                messageService.getMessagesByCursor(sessionId, cursor.encode(), MessageCursor.Direction.PREV, 2, true,
+                        MessageFields.ALL);
+
+        assertThat(page.getContent()).extracting(MessageResponse::getContent).containsExactly("Earlier", "Hello, world!");
+        assertThat(page.isHasNext()).isTrue();
+        assertThat(page.isHasPrevious()).isFalse();
+        assertThat(page.getTotalElements()).isEqualTo(3L);
+    }
+
+    @Test
+    @DisplayName("Should load a session's tail newest first and return it in ascending order")
+    void getRecentMessages_LoadsTailOnMiss() {
+        ChatMessage older = ChatMessage.builder()
+                .id(UUID.randomUUID())
+                .session(testSession)
+                .sender(ChatMessage.SenderType.USER)
+                .content("Earlier")
+                .createdAt(testMessage.getCreatedAt().minusSeconds(1))
+                .build();
+
+        when(sessionCache.exists(sessionId)).thenReturn(true);
+        when(tailCache.getTail(eq(sessionId), eq(2), any()))
+                .thenAnswer(invocation -> invocation.<IntFunction<List<MessageResponse>>>getArgument(2).apply(50));
+        when(messageRepository.findBySessionIdOrderByCreatedAtDescIdDesc(sessionId, Limit.of(50), MessageRow.class))
+                .thenReturn(List.of(row(testMessage), row(older)));
+
+        List<MessageResponse> messages = messageService.getRecentMessages(sessionId, 2, MessageFields.parse("content"));
+
+        assertThat(messages).extracting(MessageResponse::getContent).containsExactly("Earlier", "Hello, world!");
+        assertThat(messages).extracting(MessageResponse::getId).containsOnlyNulls();
+    }
+
+    @Test
+    @DisplayName("Should reject a tail limit outside the allowed range")
+    void getRecentMessages_InvalidLimit() {
+        assertThatThrownBy(() -> messageService.getRecentMessages(sessionId, 0, MessageFields.ALL))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(tailCache);
+    }
+
+    @Test
+    @DisplayName("Should return the newest messages that fit the token budget, read after the first one left out")
+    void getContextWindow_StopsAtBudget() {
+        LocalDateTime now = LocalDateTime.now();
+        List<MessageTokens> newestFirst = List.of(tokens(ChatMessage.SenderType.ASSISTANT, 10, now),
+                tokens(ChatMessage.SenderType.USER, 20, now.minusSeconds(1)),
+                tokens(ChatMessage.SenderType.ASSISTANT, 30, now.minusSeconds(2)),
+                tokens(ChatMessage.SenderType.USER, 40, now.minusSeconds(3)));
+        MessageTokens boundary = newestFirst.get(2);
+        List<MessageSummary> fitting = List.of(summary(newestFirst.get(1)), summary(newestFirst.get(0)));
+
+        when(sessionCache.exists(sessionId)).thenReturn(true);
+        when(messageRepository.findNewestTokens(sessionId, Limit.of(50))).thenReturn(newestFirst);
+        when(messageRepository.findSummaryPageAfter(sessionId, boundary.createdAt(), boundary.id(), Limit.of(2)))
+                .thenReturn(fitting);
+
+        ContextWindowResponse window = messageService.getContextWindow(sessionId, 35, false, MessageFields.parse("id,sender,content"));
+
+        assertThat(window.getContent()).extracting(MessageResponse::getId)
+                .containsExactly(newestFirst.get(1).id(), newestFirst.get(0).id());
+        assertThat(window.getTotalTokens()).isEqualTo(30);
+        assertThat(window.isTruncated()).isTrue();
+        verify(messageRepository, never()).findOldestTokens(any(), any());
+    }
+
+    @Test
+    @DisplayName("Should count the opening system message first and return it ahead of the newest messages")
+    void getContextWindow_KeepsFirstSystemMessage() {
+        LocalDateTime now = LocalDateTime.now();
+        MessageTokens system = tokens(ChatMessage.SenderType.SYSTEM, 5, now.minusSeconds(1));
+        MessageTokens latest = tokens(ChatMessage.SenderType.USER, 10, now);
+
+        when(sessionCache.exists(sessionId)).thenReturn(true);
+        when(messageRepository.findOldestTokens(sessionId, Limit.of(1))).thenReturn(List.of(system));
+        when(messageRepository.findNewestTokens(sessionId, Limit.of(50))).thenReturn(List.of(latest, system));
+        when(messageRepository.findBySessionIdOrderByCreatedAtAscIdAsc(sessionId, Limit.of(1), MessageSummary.class))
+                .thenReturn(List.of(summary(system)));
+        when(messageRepository.findSummaryPageAfter(sessionId, system.createdAt(), system.id(), Limit.of(1)))
+                .thenReturn(List.of(summary(latest)));
+
+        ContextWindowResponse window = messageService.getContextWindow(sessionId, 100, true, MessageFields.parse("id,sender,content"));
+
+        assertThat(window.getContent()).extracting(MessageResponse::getSender)
+                .containsExactly(ChatMessage.SenderType.SYSTEM, ChatMessage.SenderType.USER);
+        assertThat(window.getTotalTokens()).isEqualTo(15);
+        assertThat(window.isTruncated()).isFalse();
+
+        assertThatThrownBy(() -> messageService.getContextWindow(sessionId, 4, true, MessageFields.ALL))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("system message");
+    }
+
+    @Test
+    @DisplayName("Should reject malformed cursors")
+    void getMessagesByCursor_InvalidCursor() {
+        when(sessionCache.exists(sessionId)).thenReturn(true);
+
+        assertThatThrownBy(() -> messageService.getMessagesByCursor(
+                sessionId, "not-a-cursor", MessageCursor.Direction.NEXT, 20, false, MessageFields.ALL))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
     @Test
     @DisplayName("Should get message by ID successfully")
     void getMessage_Success() {
-        when(messageRepository.findById(messageId)).thenReturn(Optional.of(testMessage));
+        when(messageRepository.findActiveById(messageId)).thenReturn(Optional.of(testMessage));
 
         MessageResponse response = messageService.getMessage(messageId);
 
@@ -137,10 +539,22 @@ class ChatMessageServiceTest {
         assertThat(response.getContent()).isEqualTo("Hello, world!");
     }
 
+    @Test
+    @DisplayName("Should read a message of an archived session from its block")
+    void getMessage_Archived() {
+        when(messageRepository.findActiveById(messageId)).thenReturn(Optional.empty());
+        when(archiveService.findArchivedMessage(messageId)).thenReturn(Optional.of(testMessage));
+
+        MessageResponse response = messageService.getMessage(messageId);
+
+        assertThat(response.getId()).isEqualTo(messageId);
+        assertThat(response.getSessionId()).isEqualTo(sessionId);
+    }
+
     @Test
     @DisplayName("Should throw exception when message not found")
     void getMessage_NotFound() {
-        when(messageRepository.findById(messageId)).thenReturn(Optional.empty());
+        when(messageRepository.findActiveById(messageId)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> messageService.getMessage(messageId))
                 .isInstanceOf(ResourceNotFoundException.class)
@@ -150,17 +564,33 @@ class ChatMessageServiceTest {
     @Test
     @DisplayName("Should delete message successfully")
     void deleteMessage_Success() {
-        when(messageRepository.findById(messageId)).thenReturn(Optional.of(testMessage));
+        when(messageRepository.findActiveById(messageId)).thenReturn(Optional.of(testMessage));
 
         messageService.deleteMessage(messageId);
 
         verify(messageRepository, times(1)).delete(testMessage);
+        verify(statsService, times(1)).recordMessageRemoved(sessionId, testMessage);
+        verify(tailCache, times(1)).evict(sessionId);
+    }
+
+    @Test
+    @DisplayName("Should rehydrate an archived session before deleting one of its messages")
+    void deleteMessage_Archived_RehydratesSession() {
+        when(messageRepository.findActiveById(messageId)).thenReturn(Optional.empty(), Optional.of(testMessage));
+        when(archiveService.findArchivedMessage(messageId)).thenReturn(Optional.of(testMessage));
+
+        messageService.deleteMessage(messageId);
+
+        InOrder inOrder = inOrder(archiveService, messageRepository);
+        inOrder.verify(archiveService).rehydrateIfArchived(sessionId);
+        inOrder.verify(messageRepository).delete(testMessage);
+        verify(statsService, times(1)).recordMessageRemoved(sessionId, testMessage);
     }
 
     @Test
     @DisplayName("Should throw exception when deleting non-existent message")
     void deleteMessage_NotFound() {
-        when(messageRepository.findById(messageId)).thenReturn(Optional.empty());
+        when(messageRepository.findActiveById(messageId)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> messageService.deleteMessage(messageId))
                 .isInstanceOf(ResourceNotFoundException.class);
@@ -169,11 +599,28 @@ class ChatMessageServiceTest {
     @Test
     @DisplayName("Should get message count for session")
     void getMessageCount_Success() {
-        when(sessionRepository.existsById(sessionId)).thenReturn(true);
+        when(sessionCache.exists(sessionId)).thenReturn(true);
         when(messageRepository.countBySessionId(sessionId)).thenReturn(10L);
 
         long count = messageService.getMessageCount(sessionId);
 
         assertThat(count).isEqualTo(10L);
     }
+
+    private static MessageTokens tokens(ChatMessage.SenderType sender, int count, LocalDateTime createdAt) {
+        return new MessageTokens(UUID.randomUUID(), sender, count, null, createdAt);
+    }
+
+    private static MessageSummary summary(MessageTokens message) {
+        return new MessageSummary(message.id(), message.sender(), "content", message.createdAt());
+    }
+
+    private static MessageRow row(ChatMessage message) {
+        return new MessageRow(message.getId(), message.getSender(), message.getContent(), message.getContext(),
+                null, null, message.getCreatedAt());
+    }
+
+    private static MessageSummary summary(ChatMessage message) {
+        return new MessageSummary(message.getId(), message.getSender(), message.getContent(), message.getCreatedAt());
+    }
 }
@@ -4,8 +4,8 @@ import com.ragchat.dto.CreateSessionRequest;
 import com.ragchat.dto.SessionResponse;
 import com.ragchat.dto.UpdateSessionRequest;
 import com.ragchat.entity.ChatSession;
+import com.ragchat.entity.ChatSessionStats;
 import com.ragchat.exception.ResourceNotFoundException;
-import com.ragchat.repository.ChatMessageRepository;
 import com.ragchat.repository.ChatSessionRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -32,7 +32,7 @@ class ChatSessionServiceTest {
     private ChatSessionRepository sessionRepository;
 
     @Mock
-    private ChatMessageRepository messageRepository;
+    private SessionCacheService sessionCache;
 
     @InjectMocks
     private ChatSessionService sessionService;
@@ -66,29 +66,36 @@ class ChatSessionServiceTest {
         assertThat(response.getUserId()).isEqualTo("user-123");
         assertThat(response.getTitle()).isEqualTo("Test Session");
         assertThat(response.getIsFavorite()).isFalse();
+        assertThat(response.getMessageCount()).isZero();
 
-        verify(sessionRepository, times(1)).save(any(ChatSession.class));
+        verify(sessionRepository, times(1)).save(argThat(session -> session.getStats() != null));
     }
 
     @Test
     @DisplayName("Should get session by ID successfully")
     void getSession_Success() {
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(testSession));
-        when(messageRepository.countBySessionId(sessionId)).thenReturn(5L);
+        testSession.setStats(ChatSessionStats.builder()
+                .sessionId(sessionId)
+                .session(testSession)
+                .messageCount(5L)
+                .totalContentBytes(120L)
+                .build());
+        when(sessionCache.findSession(sessionId)).thenReturn(Optional.of(SessionResponse.fromEntity(testSession)));
 
         SessionResponse response = sessionService.getSession(sessionId);
 
         assertThat(response).isNotNull();
         assertThat(response.getId()).isEqualTo(sessionId);
         assertThat(response.getMessageCount()).isEqualTo(5);
+        assertThat(response.getTotalContentBytes()).isEqualTo(120L);
 
-        verify(sessionRepository, times(1)).findById(sessionId);
+        verify(sessionCache, times(1)).findSession(sessionId);
     }
 
     @Test
     @DisplayName("Should throw exception when session not found")
     void getSession_NotFound() {
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.empty());
+        when(sessionCache.findSession(sessionId)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> sessionService.getSession(sessionId))
                 .isInstanceOf(ResourceNotFoundException.class)
@@ -98,15 +105,15 @@ class ChatSessionServiceTest {
     @Test
     @DisplayName("Should get all sessions for a user")
     void getSessionsByUser_Success() {
-        List<ChatSession> sessions = List.of(testSession);
+        List<SessionResponse> sessions = List.of(SessionResponse.fromEntity(testSession));
 
-        when(sessionRepository.findByUserIdOrderByUpdatedAtDesc("user-123")).thenReturn(sessions);
-        when(messageRepository.countBySessionId(any())).thenReturn(3L);
+        when(sessionCache.findUserSessions("user-123")).thenReturn(sessions);
 
         List<SessionResponse> responses = sessionService.getSessionsByUser("user-123");
 
         assertThat(responses).hasSize(1);
         assertThat(responses.get(0).getUserId()).isEqualTo("user-123");
+        assertThat(responses.get(0).getMessageCount()).isZero();
     }
 
     @Test
@@ -119,7 +126,6 @@ class ChatSessionServiceTest {
 
         when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(testSession));
         when(sessionRepository.save(any(ChatSession.class))).thenReturn(testSession);
-        when(messageRepository.countBySessionId(sessionId)).thenReturn(0L);
 
         SessionResponse response = sessionService.updateSession(sessionId, request);
 
@@ -132,7 +138,6 @@ class ChatSessionServiceTest {
     void renameSession_Success() {
         when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(testSession));
         when(sessionRepository.save(any(ChatSession.class))).thenReturn(testSession);
-        when(messageRepository.countBySessionId(sessionId)).thenReturn(0L);
 
         SessionResponse response = sessionService.renameSession(sessionId, "New Title");
 
@@ -153,30 +158,45 @@ class ChatSessionServiceTest {
     void toggleFavorite_Success() {
         when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(testSession));
         when(sessionRepository.save(any(ChatSession.class))).thenReturn(testSession);
-        when(messageRepository.countBySessionId(sessionId)).thenReturn(0L);
 
         SessionResponse response = sessionService.toggleFavorite(sessionId);
 
         assertThat(response).isNotNull();
         verify(sessionRepository, times(1)).save(any(ChatSession.class));
+        verify(sessionCache, times(1)).evictSession(sessionId, "user-123");
     }
 
     @Test
     @DisplayName("Should delete session successfully")
     void deleteSession_Success() {
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(testSession));
+        when(sessionRepository.markDeleted(eq(sessionId), any(LocalDateTime.class))).thenReturn(1);
 
         sessionService.deleteSession(sessionId);
 
-        verify(sessionRepository, times(1)).delete(testSession);
+        verify(sessionRepository, times(1)).markDeleted(eq(sessionId), any(LocalDateTime.class));
+        verify(sessionRepository, never()).delete(any(ChatSession.class));
+        verify(sessionCache, times(1)).evictSession(sessionId);
     }
 
     @Test
     @DisplayName("Should throw exception when deleting non-existent session")
     void deleteSession_NotFound() {
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.empty());
+        when(sessionRepository.markDeleted(eq(sessionId), any(LocalDateTime.class))).thenReturn(0);
 
         assertThatThrownBy(() -> sessionService.deleteSession(sessionId))
                 .isInstanceOf(ResourceNotFoundException.class);
     }
+
+    @Test
+    @DisplayName("Should delete only stale sessions for a user when olderThan is given")
+    void deleteSessionsByUser_OlderThan() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(30);
+        when(sessionRepository.markDeletedByUserIdAndUpdatedAtBefore(eq("user123"), eq(cutoff), any(LocalDateTime.class)))
+                .thenReturn(3);
+
+        int deleted = sessionService.deleteSessionsByUser("user123", cutoff);
+
+        assertThat(deleted).isEqualTo(3);
+        verify(sessionRepository, never()).markDeletedByUserId(any(), any());
+    }
 }
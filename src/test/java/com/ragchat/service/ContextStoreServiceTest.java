@@ -0,0 +1,93 @@
+package com.ragchat.service;
+
+import com.ragchat.entity.ChatMessage;
+import com.ragchat.repository.ChatContextRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ContextStoreServiceTest {
+
+    private static final String LARGE_CONTEXT = "Retrieved passage about vector databases. ".repeat(20);
+
+    @Mock
+    private ChatContextRepository contextRepository;
+
+    @Mock
+    private MessageCompressionService compressionService;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private ContextStoreService contextStore;
+
+    @BeforeEach
+    void setUp() {
+        contextStore = new ContextStoreService(contextRepository, compressionService, jdbcTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(contextStore, "enabled", true);
+        ReflectionTestUtils.setField(contextStore, "minBytes", 512);
+        ReflectionTestUtils.setField(contextStore, "cacheMaxBytes", 1_000_000L);
+        contextStore.start();
+    }
+
+    @Test
+    @DisplayName("Should store a repeated context once and count every reference")
+    void referenceAll_RepeatedContext_InsertsOnce() {
+        String hash = ContextStoreService.hash(LARGE_CONTEXT);
+        when(contextRepository.adjustReferences(hash, 2)).thenReturn(0);
+        when(contextRepository.adjustReferences(hash, 1)).thenReturn(1);
+
+        List<String> hashes = contextStore.referenceAll(Arrays.asList(LARGE_CONTEXT, "short context", LARGE_CONTEXT, null));
+        contextStore.referenceAll(List.of(LARGE_CONTEXT));
+
+        assertThat(hashes).containsExactly(hash, null, hash, null);
+        assertThat(hash).hasSize(64);
+        verify(jdbcTemplate, times(1)).update(anyString(), eq(hash), eq(LARGE_CONTEXT), isNull(),
+                eq(LARGE_CONTEXT.length()), eq(2L), any());
+    }
+
+    @Test
+    @DisplayName("Should resolve referenced contexts with one query per prefetch")
+    void prefetch_LoadsMissingContextsInBulk() {
+        String hash = ContextStoreService.hash(LARGE_CONTEXT);
+        ChatContextRepository.StoredContext stored = mock(ChatContextRepository.StoredContext.class);
+        when(stored.getHash()).thenReturn(hash);
+        when(stored.getContent()).thenReturn(LARGE_CONTEXT);
+        when(contextRepository.findByHashIn(anyCollection())).thenReturn(List.of(stored));
+
+        ChatMessage referenced = ChatMessage.builder().content("answer").contextHash(hash).build();
+        ChatMessage inline = ChatMessage.builder().content("answer").context("inline context").build();
+        contextStore.prefetch(List.of(referenced, referenced, inline));
+
+        assertThat(contextStore.resolve(referenced)).isEqualTo(LARGE_CONTEXT);
+        assertThat(contextStore.resolve(inline)).isEqualTo("inline context");
+        verify(contextRepository, times(1)).findByHashIn(List.of(hash));
+    }
+
+    @Test
+    @DisplayName("Should release one reference per message, grouped by context")
+    void release_GroupsReferencesByHash() {
+        contextStore.release(Arrays.asList("b", "a", null, "b"));
+
+        verify(contextRepository).adjustReferences("a", -1);
+        verify(contextRepository).adjustReferences("b", -2);
+        verifyNoMoreInteractions(contextRepository);
+    }
+}
@@ -0,0 +1,145 @@
+package com.ragchat.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+
+class HnswGraphTest {
+
+    private static final int DIMENSIONS = 32;
+
+    private final Random random = new Random(42);
+    private final List<UUID> ids = new ArrayList<>();
+    private final List<float[]> vectors = new ArrayList<>();
+
+    @Test
+    @DisplayName("Should find nearly all true nearest neighbours when searching the graph")
+    void search_Graph_MatchesExhaustiveSearch() {
+        UUID sessionId = UUID.randomUUID();
+        HnswGraph graph = graph(2000, sessionId);
+
+        double recall = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomVector();
+            // A threshold of zero forces the graph walk
+            Set<UUID> found = ids(graph.search(query, 10, null, 64, 0));
+            Set<UUID> exact = ids(graph.search(query, 10, null, 64, Integer.MAX_VALUE));
+            found.retainAll(exact);
+            recall += found.size() / 10.0;
+        }
+        assertThat(recall / queries).isGreaterThan(0.9);
+    }
+
+    @Test
+    @DisplayName("Should rank by cosine similarity, whatever the length of the vectors")
+    void search_ReturnsBestFirst() {
+        HnswGraph graph = new HnswGraph(2, 16, 100, 1);
+        UUID sessionId = UUID.randomUUID();
+        UUID same = UUID.randomUUID();
+        UUID close = UUID.randomUUID();
+        UUID opposite = UUID.randomUUID();
+        graph.add(opposite, sessionId, new float[]{-1, 0});
+        graph.add(close, sessionId, new float[]{1, 1});
+        graph.add(same, sessionId, new float[]{10, 0});
+
+        List<HnswGraph.Neighbor> result = graph.search(new float[]{2, 0}, 3, null, 64, 0);
+
+        assertThat(result).extracting(HnswGraph.Neighbor::messageId).containsExactly(same, close, opposite);
+        assertThat(result.get(0).score()).isCloseTo(1f, offset(1e-6f));
+    }
+
+    @Test
+    @DisplayName("Should only return messages of the requested session")
+    void search_SessionFilter() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        HnswGraph graph = graph(1000, first);
+        List<UUID> secondIds = IntStream.range(0, 1000).mapToObj(i -> add(graph, second)).toList();
+
+        List<HnswGraph.Neighbor> result = graph.search(randomVector(), 20, second, 64, 100);
+
+        assertThat(result).hasSize(20).allSatisfy(neighbor -> {
+            assertThat(neighbor.sessionId()).isEqualTo(second);
+            assertThat(secondIds).contains(neighbor.messageId());
+        });
+    }
+
+    @Test
+    @DisplayName("Should not return removed messages, before or after compaction")
+    void remove_HidesMessages() {
+        UUID kept = UUID.randomUUID();
+        UUID dropped = UUID.randomUUID();
+        HnswGraph graph = graph(500, kept);
+        IntStream.range(0, 500).forEach(i -> add(graph, dropped));
+        UUID removedId = ids.get(0);
+        float[] query = vectors.get(0);
+
+        assertThat(graph.remove(removedId)).isTrue();
+        assertThat(graph.removeSession(dropped)).isEqualTo(500);
+        assertThat(graph.liveCount()).isEqualTo(499);
+
+        List<HnswGraph.Neighbor> result = graph.search(query, 10, null, 64, 0);
+        assertThat(result).hasSize(10).allSatisfy(neighbor -> {
+            assertThat(neighbor.messageId()).isNotEqualTo(removedId);
+            assertThat(neighbor.sessionId()).isEqualTo(kept);
+        });
+
+        HnswGraph compacted = graph.compact(7);
+        assertThat(compacted.liveCount()).isEqualTo(499);
+        assertThat(compacted.removedCount()).isZero();
+        assertThat(ids(compacted.search(query, 10, null, 64, 0))).doesNotContain(removedId);
+    }
+
+    @Test
+    @DisplayName("Should reject vectors of another dimension and zero vectors")
+    void add_InvalidVector_Throws() {
+        HnswGraph graph = new HnswGraph(3, 16, 100, 1);
+
+        assertThatThrownBy(() -> graph.add(UUID.randomUUID(), UUID.randomUUID(), new float[]{1, 2}))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> graph.add(UUID.randomUUID(), UUID.randomUUID(), new float[3]))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(graph.liveCount()).isZero();
+    }
+
+    private HnswGraph graph(int count, UUID sessionId) {
+        HnswGraph graph = new HnswGraph(DIMENSIONS, 16, 100, 1);
+        for (int i = 0; i < count; i++) {
+            add(graph, sessionId);
+        }
+        return graph;
+    }
+
+    private UUID add(HnswGraph graph, UUID sessionId) {
+        UUID id = UUID.randomUUID();
+        float[] vector = randomVector();
+        graph.add(id, sessionId, vector);
+        ids.add(id);
+        vectors.add(vector);
+        return id;
+    }
+
+    private float[] randomVector() {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static Set<UUID> ids(List<HnswGraph.Neighbor> neighbors) {
+        return new HashSet<>(neighbors.stream().map(HnswGraph.Neighbor::messageId).toList());
+    }
+}
@@ -0,0 +1,79 @@
+package com.ragchat.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.ragchat.dto.PendingMessage;
+import com.ragchat.entity.ChatMessage;
+import com.ragchat.entity.id.UuidV7;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IngestionJournalTest {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+    @TempDir
+    Path directory;
+
+    private PendingMessage message(String content) {
+        return new PendingMessage(UuidV7.randomUuid(), UUID.randomUUID(), ChatMessage.SenderType.USER,
+                content, null, null, LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+    }
+
+    @Test
+    @DisplayName("Should recover unacknowledged entries after a restart")
+    void recover_ReturnsJournaledMessages() throws Exception {
+        PendingMessage first = message("first");
+        PendingMessage second = message("second");
+
+        try (IngestionJournal journal = new IngestionJournal(directory, objectMapper, false, 100)) {
+            journal.recover();
+            journal.append(first);
+            journal.append(second);
+        }
+
+        try (IngestionJournal restarted = new IngestionJournal(directory, objectMapper, false, 100)) {
+            List<PendingMessage> recovered = restarted.recover();
+            assertThat(recovered).containsExactly(first, second);
+
+            restarted.discardRecovered();
+            assertThat(segmentCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    @DisplayName("Should delete rotated segments once every entry is acknowledged")
+    void acknowledge_DeletesRotatedSegments() throws Exception {
+        try (IngestionJournal journal = new IngestionJournal(directory, objectMapper, false, 2)) {
+            journal.recover();
+            long firstSegment = journal.append(message("a"));
+            journal.append(message("b"));
+            long currentSegment = journal.append(message("c"));
+
+            assertThat(currentSegment).isGreaterThan(firstSegment);
+            assertThat(segmentCount()).isEqualTo(2);
+
+            journal.acknowledge(firstSegment);
+            journal.acknowledge(firstSegment);
+
+            assertThat(segmentCount()).isEqualTo(1);
+        }
+    }
+
+    private long segmentCount() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.ragchat.service;
+
+import com.ragchat.entity.ChatMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MessageCompressionServiceTest {
+
+    private static final String LARGE_CONTEXT = "Retrieved passage about vector databases. ".repeat(200);
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private MessageCompressionService compressionService;
+
+    @BeforeEach
+    void setUp() {
+        compressionService = new MessageCompressionService(jdbcTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(compressionService, "enabled", true);
+        ReflectionTestUtils.setField(compressionService, "minBytes", 2048);
+        ReflectionTestUtils.setField(compressionService, "backfillBatchSize", 2);
+        compressionService.start();
+    }
+
+    @Test
+    @DisplayName("Should store large contexts compressed and decompress them on read")
+    void compress_LargeContext_RoundTrips() {
+        ChatMessage message = ChatMessage.builder().content("answer").context(LARGE_CONTEXT).build();
+
+        compressionService.compress(message);
+
+        assertThat(message.isContextCompressed()).isTrue();
+        assertThat(message.getContext()).isEqualTo(LARGE_CONTEXT);
+        assertThat(compressionService.compressionRatio()).isGreaterThan(10.0);
+    }
+
+    @Test
+    @DisplayName("Should keep small contexts and disabled compression as plain text")
+    void compressContext_BelowThresholdOrDisabled_ReturnsNull() {
+        assertThat(compressionService.compressContext("short context")).isNull();
+        assertThat(compressionService.compressContext(null)).isNull();
+
+        ReflectionTestUtils.setField(compressionService, "enabled", false);
+        assertThat(compressionService.compressContext(LARGE_CONTEXT)).isNull();
+    }
+
+    @Test
+    @DisplayName("Should compress eligible rows in bounded id windows until the table is exhausted")
+    void backfillBatch_CompressesEligibleRowsAndAdvancesCursor() {
+        UUID large = UUID.randomUUID();
+        UUID small = UUID.randomUUID();
+        Map<String, Object> largeRow = new HashMap<>(Map.of("id", large, "context", LARGE_CONTEXT));
+        Map<String, Object> smallRow = new HashMap<>();
+        smallRow.put("id", small);
+        smallRow.put("context", null);
+        when(jdbcTemplate.queryForList(anyString(), eq(2048), any(UUID.class), eq(2)))
+                .thenReturn(List.of(largeRow, smallRow))
+                .thenReturn(List.of());
+
+        assertThat(compressionService.backfillBatch()).isEqualTo(1);
+        verify(jdbcTemplate).batchUpdate(anyString(), anyList());
+        verify(jdbcTemplate).queryForList(anyString(), eq(2048), eq(new UUID(0, 0)), eq(2));
+
+        assertThat(compressionService.backfillBatch()).isZero();
+        verify(jdbcTemplate).queryForList(anyString(), eq(2048), eq(small), eq(2));
+
+        compressionService.backfill();
+        verifyNoMoreInteractions(jdbcTemplate);
+    }
+}
@@ -0,0 +1,82 @@
+package com.ragchat.service;
+
+import com.ragchat.entity.EmbeddingVector;
+import com.ragchat.repository.ChatMessageRepository;
+import com.ragchat.repository.ChatMessageRepository.EmbeddingRow;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MessageEmbeddingIndexTest {
+
+    @Mock
+    private ChatMessageRepository messageRepository;
+
+    @Mock
+    private SessionCacheService sessionCache;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private MessageEmbeddingIndex index;
+    private final Random random = new Random(7);
+
+    @BeforeEach
+    void setUp() {
+        index = new MessageEmbeddingIndex(messageRepository, sessionCache, transactionManager, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(index, "maxLinks", 16);
+        ReflectionTestUtils.setField(index, "efConstruction", 100);
+        ReflectionTestUtils.setField(index, "efSearch", 64);
+        ReflectionTestUtils.setField(index, "exactSearchThreshold", 0);
+        ReflectionTestUtils.setField(index, "rebuildThreads", 3);
+    }
+
+    @Test
+    @DisplayName("Should build every user's graph from the stored embeddings on several threads")
+    void load_BuildsGraphsPerUser() throws InterruptedException {
+        List<EmbeddingRow> rows = new ArrayList<>();
+        List<UUID> sessions = new ArrayList<>();
+        for (int user = 0; user < 5; user++) {
+            UUID sessionId = UUID.randomUUID();
+            sessions.add(sessionId);
+            for (int i = 0; i < 200; i++) {
+                rows.add(new EmbeddingRow(UUID.randomUUID(), sessionId, "user-" + user, EmbeddingVector.encode(randomVector(8))));
+            }
+        }
+        // Another dimension than the user's graph: skipped, not fatal
+        rows.add(new EmbeddingRow(UUID.randomUUID(), sessions.get(0), "user-0", EmbeddingVector.encode(randomVector(4))));
+        when(messageRepository.streamActiveEmbeddings()).thenReturn(rows.stream());
+
+        assertThat(index.load()).isEqualTo(1000);
+
+        for (int user = 0; user < 5; user++) {
+            UUID sessionId = sessions.get(user);
+            assertThat(index.search("user-" + user, randomVector(8), 10, null))
+                    .hasSize(10)
+                    .allSatisfy(neighbor -> assertThat(neighbor.sessionId()).isEqualTo(sessionId));
+        }
+    }
+
+    private float[] randomVector(int dimensions) {
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,118 @@
+package com.ragchat.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.ragchat.dto.ExportFormat;
+import com.ragchat.entity.ChatMessage;
+import com.ragchat.entity.ChatSession;
+import com.ragchat.exception.ResourceNotFoundException;
+import com.ragchat.repository.ChatMessageRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MessageExportServiceTest {
+
+    @Mock
+    private SessionArchiveService archiveService;
+
+    @Mock
+    private ChatMessageRepository messageRepository;
+
+    @Mock
+    private SessionCacheService sessionCache;
+
+    @Mock
+    private ContextStoreService contextStore;
+
+    @Mock
+    private EntityManager entityManager;
+
+    private MessageExportService exportService;
+
+    private UUID sessionId;
+    private ChatSession testSession;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+        exportService = new MessageExportService(messageRepository, sessionCache, archiveService, contextStore,
+                entityManager, objectMapper);
+
+        sessionId = UUID.randomUUID();
+        testSession = ChatSession.builder()
+                .id(sessionId)
+                .userId("user-123")
+                .title("Test Session")
+                .build();
+    }
+
+    private ChatMessage message(String content) {
+        return ChatMessage.builder()
+                .id(UUID.randomUUID())
+                .session(testSession)
+                .sender(ChatMessage.SenderType.USER)
+                .content(content)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    @Test
+    @DisplayName("Should write one JSON object per line and detach each row")
+    void exportMessages_Ndjson() throws Exception {
+        when(messageRepository.streamBySessionIdOrderByCreatedAtAscIdAsc(sessionId))
+                .thenReturn(Stream.of(message("first"), message("second")));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long count = exportService.exportMessages(sessionId, ExportFormat.NDJSON, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(count).isEqualTo(2);
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).startsWith("{").contains("\"content\":\"first\"");
+        assertThat(lines[1]).contains("\"content\":\"second\"");
+        verify(entityManager, times(2)).detach(any(ChatMessage.class));
+    }
+
+    @Test
+    @DisplayName("Should gzip-compress the export when requested")
+    void exportMessages_NdjsonGzip() throws Exception {
+        when(messageRepository.streamBySessionIdOrderByCreatedAtAscIdAsc(sessionId))
+                .thenReturn(Stream.of(message("compressed")));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.exportMessages(sessionId, ExportFormat.NDJSON_GZIP, out);
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            assertThat(body).contains("\"content\":\"compressed\"").endsWith("\n");
+        }
+    }
+
+    @Test
+    @DisplayName("Should throw exception when exporting a non-existent session")
+    void verifySessionExists_NotFound() {
+        when(sessionCache.exists(sessionId)).thenReturn(false);
+
+        assertThatThrownBy(() -> exportService.verifySessionExists(sessionId))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+}
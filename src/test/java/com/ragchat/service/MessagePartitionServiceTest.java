@@ -0,0 +1,87 @@
+package com.ragchat.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MessagePartitionServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private ObjectProvider<MessageTailCacheService> tailCache;
+
+    @Mock
+    private ObjectProvider<SessionCacheService> sessionCache;
+
+    private MessagePartitionService partitionService;
+
+    @BeforeEach
+    void setUp() {
+        partitionService = new MessagePartitionService(jdbcTemplate, tailCache, sessionCache);
+        ReflectionTestUtils.setField(partitionService, "strategy", MessagePartitionService.Strategy.MONTHLY);
+        ReflectionTestUtils.setField(partitionService, "premakeMonths", 2);
+    }
+
+    @Test
+    @DisplayName("Should create the current and upcoming monthly partitions")
+    void maintainPartitions_CreatesFuturePartitions() {
+        partitionService.maintainPartitions(LocalDate.of(2025, 12, 15));
+
+        verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS chat_messages_p2025_12 PARTITION OF chat_messages " +
+                "FOR VALUES FROM ('2025-12-01') TO ('2026-01-01')");
+        verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS chat_messages_p2026_01 PARTITION OF chat_messages " +
+                "FOR VALUES FROM ('2026-01-01') TO ('2026-02-01')");
+        verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS chat_messages_p2026_02 PARTITION OF chat_messages " +
+                "FOR VALUES FROM ('2026-02-01') TO ('2026-03-01')");
+        verify(jdbcTemplate, never()).queryForList(anyString(), eq(String.class), any());
+    }
+
+    @Test
+    @DisplayName("Should not create monthly partitions over the legacy partition of a converted table")
+    void maintainPartitions_SkipsLegacyMonths() {
+        ReflectionTestUtils.setField(partitionService, "legacyUntil", LocalDate.of(2026, 1, 1));
+
+        partitionService.maintainPartitions(LocalDate.of(2025, 12, 15));
+
+        verify(jdbcTemplate, never()).execute(contains("chat_messages_p2025_12"));
+        verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS chat_messages_p2026_01 PARTITION OF chat_messages " +
+                "FOR VALUES FROM ('2026-01-01') TO ('2026-02-01')");
+    }
+
+    @Test
+    @DisplayName("Should detach and drop only monthly partitions past retention")
+    void maintainPartitions_DropsExpiredPartitions() {
+        ReflectionTestUtils.setField(partitionService, "retentionMonths", 3);
+        ReflectionTestUtils.setField(partitionService, "retentionAction", MessagePartitionService.RetentionAction.DROP);
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq("chat_messages")))
+                .thenReturn(List.of("chat_messages_default", "chat_messages_p2025_08",
+                        "chat_messages_p2025_09", "chat_messages_p2025_10"));
+
+        partitionService.maintainPartitions(LocalDate.of(2025, 12, 15));
+
+        verify(jdbcTemplate).execute("ALTER TABLE chat_messages DETACH PARTITION chat_messages_p2025_08");
+        verify(jdbcTemplate).execute("DROP TABLE chat_messages_p2025_08");
+        verify(jdbcTemplate).update(contains("UPDATE chat_session_stats"));
+        verify(jdbcTemplate, never()).execute("ALTER TABLE chat_messages DETACH PARTITION chat_messages_p2025_09");
+        verify(jdbcTemplate, never()).execute("ALTER TABLE chat_messages DETACH PARTITION chat_messages_default");
+        verify(tailCache).ifAvailable(any());
+        verify(sessionCache).ifAvailable(any());
+    }
+}
@@ -0,0 +1,151 @@
+package com.ragchat.service;
+
+import com.ragchat.dto.CursorPageResponse;
+import com.ragchat.dto.MessageSearchHit;
+import com.ragchat.dto.SearchCursor;
+import com.ragchat.dto.SessionResponse;
+import com.ragchat.dto.SimilarMessage;
+import com.ragchat.dto.SimilarMessagesRequest;
+import com.ragchat.entity.ChatMessage;
+import com.ragchat.exception.ResourceNotFoundException;
+import com.ragchat.repository.ChatMessageRepository;
+import com.ragchat.repository.ChatMessageRepository.MessageSummary;
+import com.ragchat.repository.ChatMessageSearchRepository;
+import com.ragchat.repository.ChatMessageSearchRepository.SearchRow;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MessageSearchServiceTest {
+
+    @Mock
+    private ChatMessageSearchRepository searchRepository;
+
+    @Mock
+    private SessionCacheService sessionCache;
+
+    @Mock
+    private MessageEmbeddingIndex embeddingIndex;
+
+    @Mock
+    private ChatMessageRepository messageRepository;
+
+    @InjectMocks
+    private MessageSearchService searchService;
+
+    private UUID sessionId;
+
+    @BeforeEach
+    void setUp() {
+        sessionId = UUID.randomUUID();
+    }
+
+    @Test
+    @DisplayName("Should return one page of hits and a cursor positioned after its last hit")
+    void search_MoreMatchesThanPageSize_ReturnsNextCursor() {
+        List<SearchRow> rows = List.of(row(0.9f, "first"), row(0.5f, "second"), row(0.5f, "third"));
+        when(searchRepository.search("user-123", "vector index", null, null, 3)).thenReturn(rows);
+
+        CursorPageResponse<MessageSearchHit> page = searchService.search("user-123", "vector index", null, null, 2);
+
+        assertThat(page.getContent()).extracting(MessageSearchHit::getId).containsExactly(rows.get(0).id(), rows.get(1).id());
+        assertThat(page.isHasNext()).isTrue();
+        assertThat(SearchCursor.decode(page.getNextCursor())).isEqualTo(new SearchCursor(0.5f, rows.get(1).id()));
+
+        searchService.search("user-123", "vector index", null, page.getNextCursor(), 2);
+        verify(searchRepository).search("user-123", "vector index", null, new SearchCursor(0.5f, rows.get(1).id()), 3);
+    }
+
+    @Test
+    @DisplayName("Should escape the content of highlights and mark only the matches")
+    void search_EscapesHighlights() {
+        String headline = "<script>" + ChatMessageSearchRepository.START_MATCH + "index" +
+                ChatMessageSearchRepository.STOP_MATCH + " & more";
+        when(searchRepository.search(eq("user-123"), eq("index"), any(), any(), anyInt()))
+                .thenReturn(List.of(row(0.1f, headline)));
+
+        CursorPageResponse<MessageSearchHit> page = searchService.search("user-123", "index", null, null, 20);
+
+        assertThat(page.getContent().get(0).getHighlight()).isEqualTo("&lt;script&gt;<mark>index</mark> &amp; more");
+        assertThat(page.isHasNext()).isFalse();
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should not search another user's session")
+    void search_SessionOfOtherUser_ThrowsNotFound() {
+        SessionResponse session = SessionResponse.builder().id(sessionId).userId("someone-else").build();
+        when(sessionCache.findSession(sessionId)).thenReturn(Optional.of(session));
+
+        assertThatThrownBy(() -> searchService.search("user-123", "index", sessionId, null, 20))
+                .isInstanceOf(ResourceNotFoundException.class);
+        verifyNoInteractions(searchRepository);
+    }
+
+    @Test
+    @DisplayName("Should reject blank queries")
+    void search_BlankQuery_ThrowsIllegalArgument() {
+        assertThatThrownBy(() -> searchService.search("user-123", "  ", null, null, 20))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Should return the k best neighbours that are still stored, best first")
+    void findSimilar_SkipsCandidatesNoLongerStored() {
+        float[] embedding = {0.1f, 0.2f};
+        List<HnswGraph.Neighbor> neighbors = List.of(neighbor(0.9f), neighbor(0.8f), neighbor(0.7f), neighbor(0.6f));
+        when(embeddingIndex.search("user-123", embedding, 4, null)).thenReturn(neighbors);
+        // The second candidate was deleted since it was indexed
+        when(messageRepository.findActiveSummariesByIdIn(any())).thenReturn(List.of(
+                summary(neighbors.get(3)), summary(neighbors.get(0)), summary(neighbors.get(2))));
+
+        List<SimilarMessage> similar = searchService.findSimilar("user-123",
+                SimilarMessagesRequest.builder().embedding(embedding).k(2).build());
+
+        assertThat(similar).extracting(SimilarMessage::getId)
+                .containsExactly(neighbors.get(0).messageId(), neighbors.get(2).messageId());
+        assertThat(similar).extracting(SimilarMessage::getScore).containsExactly(0.9f, 0.7f);
+    }
+
+    @Test
+    @DisplayName("Should not search the embeddings of another user's session")
+    void findSimilar_SessionOfOtherUser_ThrowsNotFound() {
+        SessionResponse session = SessionResponse.builder().id(sessionId).userId("someone-else").build();
+        when(sessionCache.findSession(sessionId)).thenReturn(Optional.of(session));
+
+        assertThatThrownBy(() -> searchService.findSimilar("user-123", SimilarMessagesRequest.builder()
+                .embedding(new float[]{1f}).sessionId(sessionId).build()))
+                .isInstanceOf(ResourceNotFoundException.class);
+        verifyNoInteractions(embeddingIndex);
+    }
+
+    private HnswGraph.Neighbor neighbor(float score) {
+        return new HnswGraph.Neighbor(UUID.randomUUID(), sessionId, score);
+    }
+
+    private static MessageSummary summary(HnswGraph.Neighbor neighbor) {
+        return new MessageSummary(neighbor.messageId(), ChatMessage.SenderType.USER, "content", LocalDateTime.now());
+    }
+
+    private SearchRow row(float rank, String headline) {
+        return new SearchRow(UUID.randomUUID(), sessionId, "Test Session", ChatMessage.SenderType.USER,
+                headline, rank, LocalDateTime.now());
+    }
+}
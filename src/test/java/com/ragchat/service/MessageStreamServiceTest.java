@@ -0,0 +1,97 @@
+package com.ragchat.service;
+
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.ragchat.dto.MessageResponse;
+import com.ragchat.entity.ChatMessage;
+import com.ragchat.entity.id.UuidV7;
+import com.ragchat.exception.SubscriberLimitExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MessageStreamServiceTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private MessageStreamService streamService;
+    private UUID sessionId;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        streamService = new MessageStreamService(JsonMapper.builder().findAndAddModules().build(), meterRegistry);
+        ReflectionTestUtils.setField(streamService, "maxSubscribers", 2);
+        ReflectionTestUtils.setField(streamService, "bufferSize", 1);
+        ReflectionTestUtils.setField(streamService, "senderThreads", 1);
+        ReflectionTestUtils.setField(streamService, "timeoutMs", 60_000L);
+        streamService.start();
+        sessionId = UUID.randomUUID();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        streamService.stop();
+    }
+
+    @Test
+    @DisplayName("Should reject subscribers beyond the limit")
+    void subscribe_BeyondLimit_Rejected() {
+        streamService.subscribe(sessionId);
+        streamService.subscribe(UUID.randomUUID());
+
+        assertThatThrownBy(() -> streamService.subscribe(sessionId))
+                .isInstanceOf(SubscriberLimitExceededException.class);
+        assertThat(streamService.getSubscriberCount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should disconnect a subscriber whose buffer overflows")
+    void publish_BufferOverflow_DisconnectsSubscriber() {
+        // Not started yet, so nothing drains its buffer
+        streamService.subscribe(sessionId);
+
+        streamService.publish(sessionId, List.of(message(0), message(1)));
+
+        assertThat(streamService.getSubscriberCount()).isZero();
+        assertThat(meterRegistry.get("ragchat.stream.overflows").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should publish messages only once their transaction commits")
+    void publish_InTransaction_WaitsForCommit() {
+        streamService.subscribe(sessionId);
+        TransactionSynchronizationManager.initSynchronization();
+
+        streamService.publish(sessionId, List.of(message(0), message(1)));
+        assertThat(streamService.getSubscriberCount()).isEqualTo(1);
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+
+        assertThat(streamService.getSubscriberCount()).isZero();
+    }
+
+    private MessageResponse message(int index) {
+        return MessageResponse.builder()
+                .id(UuidV7.randomUuid())
+                .sessionId(sessionId)
+                .sender(ChatMessage.SenderType.USER)
+                .content("message " + index)
+                .createdAt(LocalDateTime.now().plusSeconds(index))
+                .build();
+    }
+}
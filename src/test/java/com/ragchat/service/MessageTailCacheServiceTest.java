@@ -0,0 +1,128 @@
+package com.ragchat.service;
+
+import com.ragchat.dto.MessageResponse;
+import com.ragchat.entity.ChatMessage;
+import com.ragchat.entity.id.UuidV7;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(MockitoExtension.class)
+class MessageTailCacheServiceTest {
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private MessageTailCacheService tailCache;
+    private UUID sessionId;
+    private LocalDateTime start;
+    private List<MessageResponse> history;
+    private AtomicInteger loads;
+    private final AtomicLong ticker = new AtomicLong();
+    private IntFunction<List<MessageResponse>> loader;
+
+    @BeforeEach
+    void setUp() {
+        tailCache = new MessageTailCacheService(transactionManager, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(tailCache, "enabled", true);
+        ReflectionTestUtils.setField(tailCache, "messagesPerSession", 3);
+        ReflectionTestUtils.setField(tailCache, "maxBytes", 1_000_000L);
+        ReflectionTestUtils.setField(tailCache, "expireAfterLoadMs", 30_000L);
+        tailCache.ticker = ticker::get;
+        tailCache.start();
+
+        sessionId = UUID.randomUUID();
+        start = LocalDateTime.now();
+        history = new ArrayList<>(List.of(message(0), message(1), message(2), message(3)));
+        loads = new AtomicInteger();
+        loader = limit -> {
+            loads.incrementAndGet();
+            return history.subList(Math.max(0, history.size() - limit), history.size());
+        };
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("Should load a session's tail once and serve later reads from memory")
+    void getTail_ServesRepeatedReadsFromMemory() {
+        assertThat(tailCache.getTail(sessionId, 2, loader)).containsExactly(history.get(2), history.get(3));
+        assertThat(tailCache.getTail(sessionId, 3, loader)).containsExactly(history.get(1), history.get(2), history.get(3));
+
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Should append committed messages and drop the oldest beyond the capacity")
+    void append_AfterCommit_KeepsNewestMessages() {
+        tailCache.getTail(sessionId, 3, loader);
+        MessageResponse added = message(4);
+        TransactionSynchronizationManager.initSynchronization();
+
+        tailCache.append(sessionId, List.of(added, history.get(3)));
+        assertThat(tailCache.getTail(sessionId, 1, loader)).containsExactly(history.get(3));
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+
+        assertThat(tailCache.getTail(sessionId, 3, loader)).containsExactly(history.get(2), history.get(3), added);
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("Should reload a tail once it expires, however often it was appended to")
+    void getTail_AfterExpiry_Reloads() {
+        tailCache.getTail(sessionId, 3, loader);
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(20));
+        tailCache.append(sessionId, List.of(message(4)));
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(20));
+
+        tailCache.getTail(sessionId, 3, loader);
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    @DisplayName("Should read longer tails than the capacity from the database")
+    void getTail_LimitAboveCapacity_BypassesCache() {
+        assertThat(tailCache.getTail(sessionId, 4, loader)).hasSize(4);
+        assertThat(tailCache.getTail(sessionId, 4, loader)).hasSize(4);
+
+        assertThat(loads).hasValue(2);
+    }
+
+    private MessageResponse message(int index) {
+        return MessageResponse.builder()
+                .id(UuidV7.randomUuid())
+                .sessionId(sessionId)
+                .sender(ChatMessage.SenderType.USER)
+                .content("message " + index)
+                .createdAt(start.plusSeconds(index))
+                .build();
+    }
+}
@@ -0,0 +1,73 @@
+package com.ragchat.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.ragchat.dto.PendingMessage;
+import com.ragchat.entity.ChatMessage;
+import com.ragchat.entity.id.UuidV7;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SessionArchiveStoreTest {
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+    @TempDir
+    Path directory;
+
+    private PendingMessage message(UUID sessionId, String content) {
+        return new PendingMessage(UuidV7.randomUuid(), sessionId, ChatMessage.SenderType.USER,
+                content, "context for " + content, null, LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+    }
+
+    @Test
+    @DisplayName("Should read back each archived block from the mapped segment")
+    void append_ThenRead_ReturnsMessages() throws Exception {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        List<PendingMessage> firstMessages = List.of(message(first, "a"), message(first, "b"));
+        List<PendingMessage> secondMessages = List.of(message(second, "c"));
+
+        try (SessionArchiveStore store = new SessionArchiveStore(directory, objectMapper, 1 << 20)) {
+            SessionArchiveStore.BlockLocation firstLocation = store.append(firstMessages);
+            // Reading maps the segment; a later append must still be readable after it grows
+            assertThat(store.read(firstLocation)).containsExactlyElementsOf(firstMessages);
+
+            SessionArchiveStore.BlockLocation secondLocation = store.append(secondMessages);
+            assertThat(secondLocation.segment()).isEqualTo(firstLocation.segment());
+            assertThat(secondLocation.offset()).isEqualTo(firstLocation.offset() + firstLocation.length());
+            assertThat(store.read(secondLocation)).containsExactlyElementsOf(secondMessages);
+        }
+    }
+
+    @Test
+    @DisplayName("Should roll to a new segment when full and keep appending after a restart")
+    void append_RollsSegments() throws Exception {
+        UUID sessionId = UUID.randomUUID();
+        SessionArchiveStore.BlockLocation first;
+        SessionArchiveStore.BlockLocation second;
+
+        try (SessionArchiveStore store = new SessionArchiveStore(directory, objectMapper, 64)) {
+            first = store.append(List.of(message(sessionId, "x".repeat(100))));
+            second = store.append(List.of(message(sessionId, "y")));
+        }
+        assertThat(second.segment()).isEqualTo(first.segment() + 1);
+        assertThat(second.offset()).isZero();
+
+        try (SessionArchiveStore reopened = new SessionArchiveStore(directory, objectMapper, 1 << 20)) {
+            SessionArchiveStore.BlockLocation third = reopened.append(List.of(message(sessionId, "z")));
+            assertThat(third.segment()).isEqualTo(second.segment());
+            assertThat(reopened.read(first).get(0).content()).isEqualTo("x".repeat(100));
+            assertThat(reopened.read(third).get(0).content()).isEqualTo("z");
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.ragchat.service;
+
+import com.ragchat.dto.SessionResponse;
+import com.ragchat.repository.ChatSessionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SessionCacheServiceTest {
+
+    @Mock
+    private ChatSessionRepository sessionRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+    private SessionCacheService sessionCache;
+    private UUID sessionId;
+    private SessionResponse session;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        sessionCache = new SessionCacheService(sessionRepository, meterRegistry, transactionManager);
+        ReflectionTestUtils.setField(sessionCache, "enabled", true);
+        ReflectionTestUtils.setField(sessionCache, "maxSessions", 100L);
+        ReflectionTestUtils.setField(sessionCache, "maxUserLists", 100L);
+        ReflectionTestUtils.setField(sessionCache, "expireAfterWriteMs", 60_000L);
+        sessionCache.start();
+
+        sessionId = UUID.randomUUID();
+        session = SessionResponse.builder()
+                .id(sessionId)
+                .userId("user-123")
+                .title("Test Session")
+                .isFavorite(false)
+                .messageCount(0)
+                .totalContentBytes(0L)
+                .createdAt(LocalDateTime.now())
+                .updatedAt(LocalDateTime.now())
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+    }
+
+    @Test
+    @DisplayName("Should load a miss in its own read-write transaction when the caller's is read-only")
+    void findSession_ReadOnlyCaller_LoadsOnPrimary() {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        when(sessionRepository.findResponseById(sessionId)).thenReturn(Optional.of(session));
+
+        assertThat(sessionCache.findSession(sessionId)).contains(session);
+
+        verify(transactionManager).getTransaction(argThat(definition -> !definition.isReadOnly()
+                && definition.getPropagationBehavior() == TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+    }
+
+    @Test
+    @DisplayName("Should load a session once and report cache hits")
+    void findSession_CachesLookups() {
+        when(sessionRepository.findResponseById(sessionId)).thenReturn(Optional.of(session));
+
+        assertThat(sessionCache.findSession(sessionId)).contains(session);
+        assertThat(sessionCache.exists(sessionId)).isTrue();
+
+        verify(sessionRepository, times(1)).findResponseById(sessionId);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "sessions").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should not cache a missing session")
+    void findSession_Missing_IsNotCached() {
+        when(sessionRepository.findResponseById(sessionId)).thenReturn(Optional.empty());
+
+        assertThat(sessionCache.exists(sessionId)).isFalse();
+        assertThat(sessionCache.exists(sessionId)).isFalse();
+
+        verify(sessionRepository, times(2)).findResponseById(sessionId);
+    }
+
+    @Test
+    @DisplayName("Should evict the owner's lists when a listed session changes")
+    void evictSession_EvictsOwnerListsWithoutLookup() {
+        when(sessionRepository.findResponsesByUserId("user-123")).thenReturn(List.of(session));
+        sessionCache.findUserSessions("user-123");
+        sessionCache.findUserSessions("user-123");
+
+        sessionCache.evictSession(sessionId);
+        sessionCache.findUserSessions("user-123");
+
+        verify(sessionRepository, times(2)).findResponsesByUserId("user-123");
+        verify(sessionRepository, never()).findUserIdById(any());
+    }
+
+    @Test
+    @DisplayName("Should evict again when the writing transaction completes")
+    void evictSession_InTransaction_EvictsAfterCompletion() {
+        when(sessionRepository.findResponseById(sessionId)).thenReturn(Optional.of(session));
+        TransactionSynchronizationManager.initSynchronization();
+
+        sessionCache.evictSession(sessionId, "user-123");
+        // A concurrent read that still sees the old state caches it again
+        sessionCache.findSession(sessionId);
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+        sessionCache.findSession(sessionId);
+
+        verify(sessionRepository, times(2)).findResponseById(sessionId);
+    }
+}
@@ -0,0 +1,88 @@
+package com.ragchat.service;
+
+import com.ragchat.repository.ChatMessageRepository;
+import com.ragchat.repository.ChatSessionArchiveRepository;
+import com.ragchat.repository.ChatSessionRepository;
+import com.ragchat.repository.ChatSessionStatsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SessionPurgeServiceTest {
+
+    @Mock
+    private ChatSessionRepository sessionRepository;
+
+    @Mock
+    private ChatMessageRepository messageRepository;
+
+    @Mock
+    private ChatSessionStatsRepository statsRepository;
+
+    @Mock
+    private ChatSessionArchiveRepository archiveRepository;
+
+    @Mock
+    private ContextStoreService contextStore;
+
+    @Mock
+    private MessageEmbeddingIndex embeddingIndex;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SessionPurgeService purgeService;
+    private UUID sessionId;
+
+    @BeforeEach
+    void setUp() {
+        sessionId = UUID.randomUUID();
+        purgeService = new SessionPurgeService(sessionRepository, messageRepository, statsRepository, archiveRepository,
+                contextStore, embeddingIndex, transactionManager);
+        ReflectionTestUtils.setField(purgeService, "chunkSize", 2);
+        ReflectionTestUtils.setField(purgeService, "sessionsPerRun", 10);
+    }
+
+    @Test
+    @DisplayName("Should delete messages in chunks before removing the session row")
+    void purgeSession_DeletesInChunks() {
+        when(messageRepository.deleteChunkBySessionId(sessionId, 2)).thenReturn(2, 2, 1, 0);
+
+        long purged = purgeService.purgeSession(sessionId);
+
+        assertThat(purged).isEqualTo(5);
+        InOrder inOrder = inOrder(messageRepository, statsRepository, sessionRepository);
+        inOrder.verify(messageRepository, times(4)).deleteChunkBySessionId(sessionId, 2);
+        inOrder.verify(statsRepository).deleteBySessionId(sessionId);
+        inOrder.verify(sessionRepository).purgeDeleted(sessionId);
+        verify(transactionManager, times(5)).commit(any());
+    }
+
+    @Test
+    @DisplayName("Should keep purging remaining sessions when one fails")
+    void purgeDeletedSessions_ContinuesAfterFailure() {
+        UUID failing = UUID.randomUUID();
+        when(sessionRepository.findDeletedSessionIds(10)).thenReturn(List.of(failing.toString(), sessionId.toString()));
+        when(messageRepository.deleteChunkBySessionId(eq(failing), anyInt())).thenThrow(new IllegalStateException("boom"));
+        when(messageRepository.deleteChunkBySessionId(eq(sessionId), anyInt())).thenReturn(0);
+
+        purgeService.purgeDeletedSessions();
+
+        verify(sessionRepository, never()).purgeDeleted(failing);
+        verify(sessionRepository).purgeDeleted(sessionId);
+    }
+}
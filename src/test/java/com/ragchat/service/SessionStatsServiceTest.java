@@ -0,0 +1,81 @@
+package com.ragchat.service;
+
+import com.ragchat.entity.ChatMessage;
+import com.ragchat.repository.ChatSessionStatsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SessionStatsServiceTest {
+
+    @Mock
+    private ChatSessionStatsRepository statsRepository;
+
+    @Mock
+    private SessionCacheService sessionCache;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private SessionStatsService statsService;
+    private UUID sessionId;
+    private ChatMessage message;
+
+    @BeforeEach
+    void setUp() {
+        statsService = new SessionStatsService(statsRepository, sessionCache, jdbcTemplate);
+        ReflectionTestUtils.setField(statsService, "postgreSql", true);
+        sessionId = UUID.randomUUID();
+        message = ChatMessage.builder()
+                .id(UUID.randomUUID())
+                .sender(ChatMessage.SenderType.USER)
+                .content("Hello")
+                .createdAt(LocalDateTime.of(2025, 6, 1, 12, 0))
+                .build();
+    }
+
+    @Test
+    @DisplayName("Should backfill the stats of a session that has none on its first write")
+    void recordMessageAdded_NoStats_Backfills() {
+        when(statsRepository.incrementStats(sessionId, 1, 5, message.getCreatedAt())).thenReturn(0);
+        when(statsRepository.backfillStatsIfAbsent(sessionId)).thenReturn(1);
+
+        statsService.recordMessageAdded(sessionId, message);
+
+        verify(statsRepository, times(1)).incrementStats(sessionId, 1, 5, message.getCreatedAt());
+        verify(statsRepository, never()).backfillStats(any());
+    }
+
+    @Test
+    @DisplayName("Should count its messages on top of a concurrent first write's backfill")
+    void recordMessageAdded_ConcurrentBackfill_RetriesIncrement() {
+        when(statsRepository.incrementStats(sessionId, 1, 5, message.getCreatedAt())).thenReturn(0, 1);
+        when(statsRepository.backfillStatsIfAbsent(sessionId)).thenReturn(0);
+
+        statsService.recordMessageAdded(sessionId, message);
+
+        verify(statsRepository, times(2)).incrementStats(sessionId, 1, 5, message.getCreatedAt());
+    }
+
+    @Test
+    @DisplayName("Should uncount a removed message after a concurrent first write's backfill")
+    void recordMessageRemoved_ConcurrentBackfill_RetriesDecrement() {
+        when(statsRepository.decrementStats(sessionId, 5)).thenReturn(0, 1);
+        when(statsRepository.backfillStatsIfAbsent(sessionId)).thenReturn(0);
+
+        statsService.recordMessageRemoved(sessionId, message);
+
+        verify(statsRepository, times(2)).decrementStats(sessionId, 5);
+    }
+}
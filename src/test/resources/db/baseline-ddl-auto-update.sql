@@ -0,0 +1,26 @@
+-- The schema Hibernate 6.3 created for the first release with ddl-auto=update on
+-- PostgreSQL, statement for statement, including its generated constraint names
+create table chat_messages (
+    id uuid not null,
+    content TEXT not null,
+    context TEXT,
+    created_at timestamp(6) not null,
+    sender varchar(255) not null check (sender in ('USER','ASSISTANT')),
+    session_id uuid not null,
+    primary key (id)
+);
+
+create table chat_sessions (
+    id uuid not null,
+    created_at timestamp(6) not null,
+    is_favorite boolean not null,
+    title varchar(255) not null,
+    updated_at timestamp(6) not null,
+    user_id varchar(255) not null,
+    primary key (id)
+);
+
+alter table if exists chat_messages
+   add constraint FK3cpkdtwdxndrjhrx3gt9q5ux9
+   foreign key (session_id)
+   references chat_sessions;